@@ -0,0 +1,174 @@
+package com.github.dnbn.submerge.api;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.dnbn.submerge.api.parser.exception.LimitExceededException;
+
+/**
+ * Resources left to an operation, from its <code>Limits</code> and its
+ * <code>CancellationToken</code>. A budget is created when the operation starts, its
+ * deadline is computed then.
+ * 
+ * The clock and the token are only looked at every <code>CHECK_INTERVAL</code> lines or
+ * units of work, so that the checks cost nothing in the loops that call them.
+ */
+public final class Budget {
+
+	/**
+	 * Number of lines or units of work between two checks of the clock and the token
+	 */
+	private static final int CHECK_INTERVAL = 1024;
+
+	private final long maxBytes;
+
+	private final int maxLines;
+
+	private final int maxLineLength;
+
+	/**
+	 * Deadline as a <code>System.nanoTime</code> value, only valid if
+	 * <code>hasDeadline</code>
+	 */
+	private final long deadline;
+
+	private final boolean hasDeadline;
+
+	private final CancellationToken token;
+
+	/**
+	 * Number of lines read so far
+	 */
+	private int lines;
+
+	/**
+	 * Number of units of work done since the last check
+	 */
+	private int work;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param limits: the limits, null for no limit
+	 * @param token: the cancellation token, can be null
+	 */
+	private Budget(Limits limits, CancellationToken token) {
+
+		this.maxBytes = limits == null || limits.getMaxBytes() <= 0 ? Long.MAX_VALUE : limits.getMaxBytes();
+		this.maxLines = limits == null || limits.getMaxLines() <= 0 ? Integer.MAX_VALUE : limits.getMaxLines();
+		this.maxLineLength = limits == null || limits.getMaxLineLength() <= 0 ? Integer.MAX_VALUE
+				: limits.getMaxLineLength();
+		this.hasDeadline = limits != null && limits.getTimeout() > 0;
+		this.deadline = this.hasDeadline ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.getTimeout()) : 0;
+		this.token = token;
+	}
+
+	/**
+	 * Start the budget of an operation
+	 * 
+	 * @param limits: the limits, null for no limit
+	 * @param token: the cancellation token, can be null
+	 * @return the budget
+	 * @throws CancellationException if the token is already cancelled
+	 */
+	public static Budget start(Limits limits, CancellationToken token) {
+
+		Budget budget = new Budget(limits, token);
+		budget.checkpoint();
+		return budget;
+	}
+
+	/**
+	 * Check if anything is limited
+	 * 
+	 * @return false if the budget has no limit and cannot be cancelled
+	 */
+	public boolean isLimited() {
+
+		return this.maxBytes != Long.MAX_VALUE || this.maxLines != Integer.MAX_VALUE
+				|| this.maxLineLength != Integer.MAX_VALUE || this.hasDeadline || this.token != null;
+	}
+
+	/**
+	 * Check the size of a file
+	 * 
+	 * @param bytes: the number of bytes of the file, or read so far
+	 * @throws LimitExceededException if the file is too large
+	 */
+	public void checkBytes(long bytes) {
+
+		if (bytes > this.maxBytes) {
+			throw new LimitExceededException("File too large, the limit is " + this.maxBytes + " bytes");
+		}
+	}
+
+	/**
+	 * Count a line read, and check the clock and the token from time to time
+	 * 
+	 * @param length: the length of the line, in chars
+	 * @throws LimitExceededException if a limit is exceeded
+	 * @throws CancellationException if the operation is cancelled
+	 */
+	public void checkLine(int length) {
+
+		checkLineLength(length);
+		if (++this.lines > this.maxLines) {
+			throw new LimitExceededException("Too many lines, the limit is " + this.maxLines);
+		}
+		if (this.lines % CHECK_INTERVAL == 0) {
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Check the length of a line, possibly before it is fully read
+	 * 
+	 * @param length: the length of the line, in chars
+	 * @throws LimitExceededException if the line is too long
+	 */
+	public void checkLineLength(int length) {
+
+		if (length > this.maxLineLength) {
+			throw new LimitExceededException("Line too long, the limit is " + this.maxLineLength + " chars");
+		}
+	}
+
+	/**
+	 * Count a unit of work of a transformation, and check the clock and the token from
+	 * time to time
+	 * 
+	 * @throws LimitExceededException if the deadline is passed
+	 * @throws CancellationException if the operation is cancelled
+	 */
+	public void tick() {
+
+		if (++this.work == CHECK_INTERVAL) {
+			this.work = 0;
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Check the clock and the token now. Unlike the other methods, this one can be called
+	 * from several threads.
+	 * 
+	 * @throws LimitExceededException if the deadline is passed
+	 * @throws CancellationException if the operation is cancelled
+	 */
+	public void checkpoint() {
+
+		if (this.token != null && this.token.isCancelled()) {
+			throw new CancellationException("Operation cancelled");
+		}
+		if (this.hasDeadline && System.nanoTime() - this.deadline > 0) {
+			throw new LimitExceededException("Time limit exceeded");
+		}
+	}
+
+	// ===================== getter and setter start =====================
+
+	public int getMaxLineLength() {
+		return this.maxLineLength;
+	}
+
+}
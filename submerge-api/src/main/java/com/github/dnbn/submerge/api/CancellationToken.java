@@ -0,0 +1,30 @@
+package com.github.dnbn.submerge.api;
+
+/**
+ * Lets a caller abort a parse or a transformation in progress, from any thread. The
+ * operation stops at its next checkpoint with a
+ * <code>java.util.concurrent.CancellationException</code>.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Request the cancellation of the operations using this token
+	 */
+	public void cancel() {
+
+		this.cancelled = true;
+	}
+
+	/**
+	 * Check if the cancellation has been requested
+	 * 
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+
+		return this.cancelled;
+	}
+
+}
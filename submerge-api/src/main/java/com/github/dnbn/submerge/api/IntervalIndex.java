@@ -0,0 +1,413 @@
+package com.github.dnbn.submerge.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Immutable index of the display intervals of subtitle lines, to find the lines
+ * displayed at a time or during a range of time.
+ * 
+ * A line is displayed from its start time, inclusive, to its end time, exclusive. A line
+ * that ends at or before its start is displayed at its start time only. The lines are
+ * kept sorted by start time in an implicit balanced tree, each node holding the maximum
+ * end time of its subtree. The first match of a query is found in O(log n). A following
+ * match is found in O(1) when it is the next line in start order, and in O(log n)
+ * otherwise, so k matches cost O(k log n) at worst. Queries do not allocate.
+ * 
+ * Matches are read by position, in ascending start time:
+ * 
+ * <pre>
+ * for (int p = index.first(start, end); p &gt;= 0; p = index.next(start, end, p)) {
+ * 	TimedLine line = index.line(p);
+ * }
+ * </pre>
+ */
+public class IntervalIndex {
+
+	/**
+	 * Start time of each position, in milliseconds
+	 */
+	private final long[] starts;
+
+	/**
+	 * End time of each position, in milliseconds
+	 */
+	private final long[] ends;
+
+	/**
+	 * Maximum display end of the subtree rooted at each position
+	 */
+	private final long[] maxEnds;
+
+	/**
+	 * Row of each position in the indexed columns
+	 */
+	private final int[] rows;
+
+	/**
+	 * Line of each position
+	 */
+	private final TimedLine[] lines;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param columns: the columns to index
+	 */
+	private IntervalIndex(TimelineColumns columns) {
+
+		int size = columns.size();
+		this.starts = new long[size];
+		this.ends = new long[size];
+		this.maxEnds = new long[size];
+		this.rows = new int[size];
+		this.lines = new TimedLine[size];
+
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		mergeSort(columns, order, new int[size], 0, size);
+
+		for (int p = 0; p < size; p++) {
+			int row = order[p];
+			this.starts[p] = columns.start(row);
+			this.ends[p] = columns.end(row);
+			this.rows[p] = row;
+			this.lines[p] = columns.line(row);
+		}
+		buildMaxEnds(0, size);
+	}
+
+	/**
+	 * Index the lines of a subtitle
+	 * 
+	 * @param file: the subtitle
+	 * @return the index
+	 */
+	public static IntervalIndex of(TimedTextFile file) {
+
+		return of(TimelineColumns.of(file));
+	}
+
+	/**
+	 * Index some lines, the rows of the index are the positions of the lines in the
+	 * collection
+	 * 
+	 * @param lines: the lines
+	 * @return the index
+	 */
+	public static IntervalIndex of(Collection<? extends TimedLine> lines) {
+
+		return of(TimelineColumns.of(lines));
+	}
+
+	/**
+	 * Index the current times of some columns, later changes of the columns are not seen
+	 * by the index
+	 * 
+	 * @param columns: the columns
+	 * @return the index
+	 */
+	public static IntervalIndex of(TimelineColumns columns) {
+
+		return new IntervalIndex(columns);
+	}
+
+	/**
+	 * Get the number of indexed lines
+	 * 
+	 * @return the number of lines
+	 */
+	public int size() {
+
+		return this.starts.length;
+	}
+
+	/**
+	 * Get the first line displayed at a time
+	 * 
+	 * @param time: the time in milliseconds
+	 * @return the position of the line, or -1 if no line is displayed
+	 */
+	public int first(long time) {
+
+		return first(time, time + 1);
+	}
+
+	/**
+	 * Get the next line displayed at a time
+	 * 
+	 * @param time: the time in milliseconds
+	 * @param position: the position of the previous match
+	 * @return the position of the line, or -1 if there are no more lines
+	 */
+	public int next(long time, int position) {
+
+		return next(time, time + 1, position);
+	}
+
+	/**
+	 * Get the first line displayed during a range of time. A range shorter than 1 ms is
+	 * the instant of its start.
+	 * 
+	 * @param start: the start of the range in milliseconds, inclusive
+	 * @param end: the end of the range in milliseconds, exclusive
+	 * @return the position of the line, or -1 if no line is displayed
+	 */
+	public int first(long start, long end) {
+
+		return next(start, end, -1);
+	}
+
+	/**
+	 * Get the next line displayed during a range of time
+	 * 
+	 * @param start: the start of the range in milliseconds, inclusive
+	 * @param end: the end of the range in milliseconds, exclusive
+	 * @param position: the position of the previous match
+	 * @return the position of the line, or -1 if there are no more lines
+	 */
+	public int next(long start, long end, int position) {
+
+		long rangeEnd = Math.max(end, start + 1);
+		int following = position + 1;
+		if (position >= 0 && following < size() && this.starts[following] < rangeEnd
+				&& displayEnd(following) > start) {
+			// Lines displayed together are usually next to each other
+			return following;
+		}
+		return leftmost(0, size(), following, start, rangeEnd);
+	}
+
+	/**
+	 * Count the lines displayed at a time
+	 * 
+	 * @param time: the time in milliseconds
+	 * @return the number of lines
+	 */
+	public int count(long time) {
+
+		return count(time, time + 1);
+	}
+
+	/**
+	 * Count the lines displayed during a range of time
+	 * 
+	 * @param start: the start of the range in milliseconds, inclusive
+	 * @param end: the end of the range in milliseconds, exclusive
+	 * @return the number of lines
+	 */
+	public int count(long start, long end) {
+
+		int count = 0;
+		for (int p = first(start, end); p >= 0; p = next(start, end, p)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Get the lines displayed at a time
+	 * 
+	 * @param time: the time in milliseconds
+	 * @return the lines, sorted by start time
+	 */
+	public List<TimedLine> linesAt(long time) {
+
+		return linesBetween(time, time + 1);
+	}
+
+	/**
+	 * Get the lines displayed during a range of time
+	 * 
+	 * @param start: the start of the range in milliseconds, inclusive
+	 * @param end: the end of the range in milliseconds, exclusive
+	 * @return the lines, sorted by start time
+	 */
+	public List<TimedLine> linesBetween(long start, long end) {
+
+		List<TimedLine> matches = new ArrayList<>();
+		for (int p = first(start, end); p >= 0; p = next(start, end, p)) {
+			matches.add(this.lines[p]);
+		}
+		return matches;
+	}
+
+	/**
+	 * Get the start time of a position
+	 * 
+	 * @param position: the position
+	 * @return the start time in milliseconds
+	 */
+	public long start(int position) {
+
+		return this.starts[position];
+	}
+
+	/**
+	 * Get the end time of a position
+	 * 
+	 * @param position: the position
+	 * @return the end time in milliseconds
+	 */
+	public long end(int position) {
+
+		return this.ends[position];
+	}
+
+	/**
+	 * Get the row of a position in the indexed columns, which is the position of the line
+	 * in the collection when the index was built from lines
+	 * 
+	 * @param position: the position
+	 * @return the row
+	 */
+	public int row(int position) {
+
+		return this.rows[position];
+	}
+
+	/**
+	 * Get the line of a position
+	 * 
+	 * @param position: the position
+	 * @return the line
+	 */
+	public TimedLine line(int position) {
+
+		return this.lines[position];
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Find the first position of a subtree displayed during a range
+	 * 
+	 * @param low: the first position of the subtree, inclusive
+	 * @param high: the last position of the subtree, exclusive
+	 * @param from: the first position to consider
+	 * @param start: the start of the range, inclusive
+	 * @param end: the end of the range, exclusive
+	 * @return the position, or -1 if not found
+	 */
+	private int leftmost(int low, int high, int from, long start, long end) {
+
+		if (low >= high || high <= from) {
+			return -1;
+		}
+
+		int mid = (low + high) >>> 1;
+		if (this.maxEnds[mid] <= start) {
+			// Nothing in this subtree is displayed after the start of the range
+			return -1;
+		}
+
+		if (from < mid) {
+			int match = leftmost(low, mid, from, start, end);
+			if (match >= 0) {
+				return match;
+			}
+		}
+
+		if (this.starts[mid] >= end) {
+			// The right subtree starts after the range too
+			return -1;
+		}
+
+		if (mid >= from && displayEnd(mid) > start) {
+			return mid;
+		}
+
+		return leftmost(mid + 1, high, from, start, end);
+	}
+
+	/**
+	 * Compute the maximum display end of a subtree
+	 * 
+	 * @param low: the first position of the subtree, inclusive
+	 * @param high: the last position of the subtree, exclusive
+	 * @return the maximum display end, <code>Long.MIN_VALUE</code> if the subtree is
+	 *         empty
+	 */
+	private long buildMaxEnds(int low, int high) {
+
+		if (low >= high) {
+			return Long.MIN_VALUE;
+		}
+
+		int mid = (low + high) >>> 1;
+		long max = Math.max(displayEnd(mid), Math.max(buildMaxEnds(low, mid), buildMaxEnds(mid + 1, high)));
+		this.maxEnds[mid] = max;
+		return max;
+	}
+
+	/**
+	 * Get the end of display of a position: the end time, at least 1 ms after the start
+	 * 
+	 * @param position: the position
+	 * @return the end of display, exclusive
+	 */
+	private long displayEnd(int position) {
+
+		return Math.max(this.ends[position], this.starts[position] + 1);
+	}
+
+	/**
+	 * Stable merge sort of rows by start time, then end time
+	 * 
+	 * @param columns: the columns
+	 * @param order: the rows to sort
+	 * @param buffer: a buffer of the same size
+	 * @param from: the first index, inclusive
+	 * @param to: the last index, exclusive
+	 */
+	private static void mergeSort(TimelineColumns columns, int[] order, int[] buffer, int from, int to) {
+
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(columns, order, buffer, from, middle);
+		mergeSort(columns, order, buffer, middle, to);
+
+		if (compare(columns, order[middle - 1], order[middle]) <= 0) {
+			// Already in order
+			return;
+		}
+
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || left < middle && compare(columns, buffer[left], buffer[right]) <= 0) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+
+	/**
+	 * Compare the times of two rows
+	 * 
+	 * @param columns: the columns
+	 * @param row: a row
+	 * @param other: another row
+	 * @return the comparison result
+	 */
+	private static int compare(TimelineColumns columns, int row, int other) {
+
+		int compare = Long.compare(columns.start(row), columns.start(other));
+		if (compare == 0) {
+			compare = Long.compare(columns.end(row), columns.end(other));
+		}
+		return compare;
+	}
+
+}
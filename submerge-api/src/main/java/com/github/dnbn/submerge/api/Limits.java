@@ -0,0 +1,63 @@
+package com.github.dnbn.submerge.api;
+
+/**
+ * Limits of the resources used to parse or transform a subtitle, to protect a server
+ * from oversized or malicious files. A limit of 0 means no limit.
+ */
+public class Limits {
+
+	/**
+	 * Maximum size of a file, in bytes
+	 */
+	private long maxBytes;
+
+	/**
+	 * Maximum number of lines of a file
+	 */
+	private int maxLines;
+
+	/**
+	 * Maximum length of a line of a file, in chars
+	 */
+	private int maxLineLength;
+
+	/**
+	 * Maximum duration of an operation, in milliseconds of wall-clock time
+	 */
+	private long timeout;
+
+	// ===================== getter and setter start =====================
+
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public int getMaxLines() {
+		return this.maxLines;
+	}
+
+	public void setMaxLines(int maxLines) {
+		this.maxLines = maxLines;
+	}
+
+	public int getMaxLineLength() {
+		return this.maxLineLength;
+	}
+
+	public void setMaxLineLength(int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+}
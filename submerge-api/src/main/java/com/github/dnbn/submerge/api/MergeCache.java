@@ -0,0 +1,289 @@
+package com.github.dnbn.submerge.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
+import com.github.dnbn.submerge.api.writer.ASSWriter;
+
+/**
+ * Cache of the stages of a merge, for merges repeated on the same subtitles with other
+ * styles: the cleaned and single-line subtitles, the adjusted timecodes and the encoded
+ * events of the merged subtitle are kept. A merge whose subtitles and options did not
+ * change only writes its header again.
+ * 
+ * <pre>
+ * TimedTextFile one = cache.prepare(api, subOne, clean, oneLine);
+ * TimedTextFile two = cache.adjust(api, cache.prepare(api, subTwo, clean, oneLine), one, 850);
+ * cache.mergeToAss(api, os, StandardCharsets.UTF_8, configOne, configTwo);
+ * </pre>
+ * 
+ * The subtitles are recognized by identity: they must not be modified in place once
+ * given to the cache, as the versions returned by <code>SubmergeAPI</code>. The stages
+ * returned are shared and must not be modified either. The least recently used stages
+ * are evicted over <code>MAX_ENTRIES</code>. The cache can be shared by several threads.
+ */
+public class MergeCache {
+
+	/**
+	 * Maximum number of cached stages
+	 */
+	public static final int MAX_ENTRIES = 8;
+
+	private static final String PREPARE = "prepare";
+
+	private static final String ADJUST = "adjust";
+
+	private static final String EVENTS = "events";
+
+	/**
+	 * The stages, from the least recently used
+	 */
+	private final Map<Key, Object> entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 2935484719207164658L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private long hitCount;
+
+	private long missCount;
+
+	/**
+	 * Clean the ASS formatting of a subtitle and merge its multi-lines, or get the
+	 * subtitle prepared the same way before
+	 * 
+	 * @param api: the API running the stage if it is not cached
+	 * @param sub: the subtitle
+	 * @param clean: true to convert the subtitle to SRT, see <code>SubmergeAPI.toSRT</code>
+	 * @param oneLine: true to merge the multi-lines, see
+	 *            <code>SubmergeAPI.mergedTextLines</code>
+	 * @return the prepared subtitle, the subtitle itself if there is nothing to do
+	 */
+	public TimedTextFile prepare(SubmergeAPI api, TimedTextFile sub, boolean clean, boolean oneLine) {
+
+		if (!clean && !oneLine) {
+			return sub;
+		}
+
+		Key key = new Key(PREPARE, new Object[] { sub }, Arrays.<Object> asList(clean, oneLine));
+		TimedTextFile prepared = (TimedTextFile) get(key);
+		if (prepared == null) {
+			if (clean) {
+				SubtitlePipeline pipeline = api.pipeline(sub).cleanText();
+				if (oneLine) {
+					pipeline.oneLine();
+				}
+				prepared = pipeline.toSRT();
+			} else {
+				prepared = api.mergedTextLines(sub);
+			}
+			put(key, prepared);
+		}
+		return prepared;
+	}
+
+	/**
+	 * Adjust the timecodes of a subtitle to a reference, or get the subtitle adjusted
+	 * the same way before
+	 * 
+	 * @param api: the API running the stage if it is not cached
+	 * @param sub: the subtitle to adjust
+	 * @param reference: the reference subtitle
+	 * @param delay: the tolerance, see <code>SubmergeAPI.adjustedTimecodes</code>
+	 * @return the adjusted subtitle
+	 */
+	public TimedTextFile adjust(SubmergeAPI api, TimedTextFile sub, TimedTextFile reference, int delay) {
+
+		Key key = new Key(ADJUST, new Object[] { sub, reference }, Arrays.<Object> asList(delay));
+		TimedTextFile adjusted = (TimedTextFile) get(key);
+		if (adjusted == null) {
+			adjusted = api.adjustedTimecodes(sub, reference, delay);
+			put(key, adjusted);
+		}
+		return adjusted;
+	}
+
+	/**
+	 * Merge several subtitles into one ASS written to a stream. The header is written
+	 * each time, the events are encoded once for the same subtitles and style names. The
+	 * stream is flushed, not closed.
+	 * 
+	 * @param api: the API merging the subtitles
+	 * @param os: the output stream
+	 * @param charset: the charset of the subtitle, without byte order mark
+	 * @param configs: configuration object of the subtitles
+	 * @throws IOException
+	 */
+	public void mergeToAss(SubmergeAPI api, OutputStream os, Charset charset, SimpleSubConfig... configs)
+			throws IOException {
+
+		byte[] events = events(api, charset, configs);
+
+		ASSWriter writer = new ASSWriter(os, charset);
+		api.writeMergedHeader(writer, configs);
+		writer.flush();
+		os.write(events);
+		os.flush();
+	}
+
+	/**
+	 * Remove all the stages, the counters are kept
+	 */
+	public synchronized void clear() {
+
+		this.entries.clear();
+	}
+
+	/**
+	 * Get the number of cached stages
+	 * 
+	 * @return the number of stages
+	 */
+	public synchronized int size() {
+
+		return this.entries.size();
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Get the encoded events of a merge, encode them if they are not cached
+	 * 
+	 * @param api: the API merging the subtitles
+	 * @param charset: the charset
+	 * @param configs: configuration object of the subtitles
+	 * @return the encoded events
+	 * @throws IOException
+	 */
+	private byte[] events(SubmergeAPI api, Charset charset, SimpleSubConfig[] configs) throws IOException {
+
+		Object[] subs = new Object[configs.length];
+		Object[] params = new Object[configs.length + 1];
+		for (int i = 0; i < configs.length; i++) {
+			subs[i] = configs[i].getSub();
+			params[i] = configs[i].getStyleName();
+		}
+		params[configs.length] = charset;
+
+		Key key = new Key(EVENTS, subs, Arrays.asList(params));
+		byte[] events = (byte[]) get(key);
+		if (events == null) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			try (ASSWriter writer = new ASSWriter(bos, charset)) {
+				api.writeMergedEvents(writer, configs);
+			}
+			events = bos.toByteArray();
+			put(key, events);
+		}
+		return events;
+	}
+
+	/**
+	 * Get a cached stage and mark it as the most recently used
+	 * 
+	 * @param key: the key
+	 * @return the stage, null if it is not cached
+	 */
+	private synchronized Object get(Key key) {
+
+		Object stage = this.entries.get(key);
+		if (stage == null) {
+			this.missCount++;
+		} else {
+			this.hitCount++;
+		}
+		return stage;
+	}
+
+	/**
+	 * Cache a stage, the least recently used stage is evicted over the maximum
+	 * 
+	 * @param key: the key
+	 * @param stage: the stage
+	 */
+	private synchronized void put(Key key, Object stage) {
+
+		this.entries.put(key, stage);
+	}
+
+	// ===================== getter and setter start =====================
+
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Stage, the subtitles it is computed from and its options
+	 */
+	private static final class Key {
+
+		private final String stage;
+
+		/**
+		 * The subtitles, compared by identity
+		 */
+		private final Object[] inputs;
+
+		/**
+		 * The options, compared by equality
+		 */
+		private final List<Object> params;
+
+		Key(String stage, Object[] inputs, List<Object> params) {
+
+			this.stage = stage;
+			this.inputs = inputs;
+			this.params = params;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (!this.stage.equals(other.stage) || this.inputs.length != other.inputs.length
+					|| !this.params.equals(other.params)) {
+				return false;
+			}
+			for (int i = 0; i < this.inputs.length; i++) {
+				if (this.inputs[i] != other.inputs[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+
+			int hash = this.stage.hashCode() * 31 + this.params.hashCode();
+			for (Object input : this.inputs) {
+				hash = hash * 31 + System.identityHashCode(input);
+			}
+			return hash;
+		}
+	}
+
+}
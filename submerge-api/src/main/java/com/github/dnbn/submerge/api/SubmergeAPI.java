@@ -1,27 +1,43 @@
 package com.github.dnbn.submerge.api;
 
-import java.time.LocalTime;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.github.dnbn.submerge.api.parser.SubtitleReader;
+import com.github.dnbn.submerge.api.parser.TimedTextFileReader;
 import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
 import com.github.dnbn.submerge.api.subtitle.ass.Events;
 import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
 import com.github.dnbn.submerge.api.subtitle.common.TimedObject;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
-import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
-import com.github.dnbn.submerge.api.subtitle.srt.SRTTime;
 import com.github.dnbn.submerge.api.utils.ConvertionUtils;
+import com.github.dnbn.submerge.api.writer.ASSWriter;
 
 /**
- * Service used to manage subtitles
+ * Service used to manage subtitles. The merges and the adjustments stop with a
+ * <code>LimitExceededException</code> once the timeout of the limits is passed, or with a
+ * <code>CancellationException</code> once the token is cancelled.
  */
 public class SubmergeAPI {
 
+	/**
+	 * Limits of the operations, only the timeout applies. Null for no limit.
+	 */
+	private Limits limits;
+
+	/**
+	 * Token to cancel the operations from another thread, can be null
+	 */
+	private CancellationToken cancellationToken;
+
 	/**
 	 * Change the framerate of a subtitle
 	 * 
@@ -34,13 +50,9 @@ public class SubmergeAPI {
 		double ratio = sourceFramerate / targetFramerate;
 
 		for (TimedLine timedLine : timedFile.getTimedLines()) {
-
 			TimedObject time = timedLine.getTime();
-			long s = Math.round(time.getStart().toNanoOfDay() * ratio);
-			long e = Math.round(time.getEnd().toNanoOfDay() * ratio);
-
-			time.setStart(LocalTime.ofNanoOfDay(s));
-			time.setEnd(LocalTime.ofNanoOfDay(e));
+			time.setStartMillis(SubtitlePipeline.convertTime(time.getStartMillis(), ratio));
+			time.setEndMillis(SubtitlePipeline.convertTime(time.getEndMillis(), ratio));
 		}
 	}
 
@@ -52,30 +64,19 @@ public class SubmergeAPI {
 	 */
 	public SRTSub toSRT(TimedTextFile timedFile) {
 
-		SRTSub srt = new SRTSub();
-
-		int i = 0;
-		for (TimedLine timedLine : timedFile.getTimedLines()) {
-
-			int id = ++i;
-			TimedObject time = timedLine.getTime();
-			LocalTime start = time.getStart();
-			LocalTime end = time.getEnd();
-			SRTTime srtTime = new SRTTime(start, end);
-
-			List<String> textLines = timedLine.getTextLines();
-			List<String> newLines = new ArrayList<>();
-
-			for (String textLine : textLines) {
-				newLines.add(ConvertionUtils.toSRTString(textLine));
-			}
-
-			SRTLine srtLine = new SRTLine(id, srtTime, newLines);
+		return pipeline(timedFile).cleanText().toSRT();
+	}
 
-			srt.add(srtLine);
-		}
+	/**
+	 * Declare transformations of a subtitle, run in a single pass when the result is
+	 * built. The subtitle is not modified.
+	 * 
+	 * @param timedFile the subtitle to transform
+	 * @return the pipeline
+	 */
+	public SubtitlePipeline pipeline(TimedTextFile timedFile) {
 
-		return srt;
+		return new SubtitlePipeline(this, timedFile);
 	}
 
 	/**
@@ -97,18 +98,85 @@ public class SubmergeAPI {
 	 */
 	public ASSSub mergeToAss(SimpleSubConfig... configs) {
 
+		Budget budget = newBudget();
 		ASSSub ass = new ASSSub();
 		Set<Events> ev = ass.getEvents();
 
 		for (SimpleSubConfig config : configs) {
 			ass.getStyle().add(ConvertionUtils.createV4Style(config));
 			TimedTextFile sub = config.getSub();
-			sub.getTimedLines().forEach(line -> ev.add(ConvertionUtils.createEvent(line, config.getStyleName())));
+			for (TimedLine line : sub.getTimedLines()) {
+				budget.tick();
+				ev.add(ConvertionUtils.createEvent(line, config.getStyleName()));
+			}
 		}
 
 		return ass;
 	}
 
+	/**
+	 * Merge several subtitles into one ASS written on the fly. The events are written
+	 * one by one and never kept in memory.
+	 * 
+	 * @param writer: the writer of the merged subtitle
+	 * @param configs: configuration object of the subtitles
+	 * @throws IOException
+	 */
+	public void mergeToAss(ASSWriter writer, SimpleSubConfig... configs) throws IOException {
+
+		mergeToAss(writer, configs, readers(configs));
+	}
+
+	/**
+	 * Merge several streamed subtitles into one ASS written on the fly. Each reader is
+	 * read with a cursor and the events are interleaved by start time, so the memory used
+	 * only depends on the number of lines at the same time. The lines of each reader must
+	 * be sorted.
+	 * 
+	 * @param writer: the writer of the merged subtitle
+	 * @param configs: configuration object of the subtitles, the subtitle they hold is
+	 *            ignored
+	 * @param readers: the readers of the subtitles, in the same order as the
+	 *            configurations
+	 * @throws IOException
+	 */
+	public void mergeToAss(ASSWriter writer, SimpleSubConfig[] configs,
+			List<? extends SubtitleReader<? extends TimedLine>> readers) throws IOException {
+
+		writeMergedHeader(writer, configs);
+		writeEvents(writer, configs, readers);
+	}
+
+	/**
+	 * Write the header of the ASS merging several subtitles: its script info, the style
+	 * of each subtitle and the events format line. The subtitles are not read.
+	 * 
+	 * @param writer: the writer of the merged subtitle
+	 * @param configs: configuration object of the subtitles
+	 * @throws IOException
+	 */
+	public void writeMergedHeader(ASSWriter writer, SimpleSubConfig... configs) throws IOException {
+
+		ASSSub header = new ASSSub();
+		for (SimpleSubConfig config : configs) {
+			header.getStyle().add(ConvertionUtils.createV4Style(config));
+		}
+		writer.writeHeader(header);
+	}
+
+	/**
+	 * Write the events of the ASS merging several subtitles, after its header. They only
+	 * depend on the subtitles and the style names of the configurations.
+	 * 
+	 * @param writer: the writer of the merged subtitle
+	 * @param configs: configuration object of the subtitles
+	 * @throws IOException
+	 */
+	public void writeMergedEvents(ASSWriter writer, SimpleSubConfig... configs) throws IOException {
+
+		writeEvents(writer, configs, readers(configs));
+	}
+
 	/**
 	 * Transform all multi-lines subtitles to single-line
 	 * 
@@ -125,6 +193,25 @@ public class SubmergeAPI {
 		}
 	}
 
+	/**
+	 * Transform all multi-lines subtitles to single-line, in a new version of the
+	 * subtitle. The subtitle is not modified: the new version shares its single-line
+	 * lines, see <code>SubtitlePipeline.toSubtitle</code>.
+	 * 
+	 * @param timedFile the TimedTextFile
+	 * @return the new version
+	 */
+	public TimedTextFile mergedTextLines(TimedTextFile timedFile) {
+
+		if (!isVersioned(timedFile)) {
+			TimedTextFile version = timedFile.copy();
+			mergeTextLines(version);
+			return version;
+		}
+
+		return pipeline(timedFile).oneLine().toSubtitle();
+	}
+
 	/**
 	 * Synchronise the timecodes of a subtitle from another one
 	 * 
@@ -134,79 +221,402 @@ public class SubmergeAPI {
 	 */
 	public void adjustTimecodes(TimedTextFile fileToAdjust, TimedTextFile referenceFile, int delay) {
 
-		TimedLinesAPI linesAPI = new TimedLinesAPI();
-		List<? extends TimedLine> timedLines = new ArrayList<>(fileToAdjust.getTimedLines());
-		List<? extends TimedLine> referenceLines = new ArrayList<>(referenceFile.getTimedLines());
+		adjust(fileToAdjust.getTimedLines(), referenceFile.getTimedLines(), delay).writeBack();
+	}
+
+	/**
+	 * Synchronise the timecodes of a subtitle from another one, in a new version of the
+	 * subtitle. The subtitles are not modified: the new version shares the lines whose
+	 * timecodes are kept, see <code>SubtitlePipeline.toSubtitle</code>.
+	 * 
+	 * @param fileToAdjust the subtitle to adjust
+	 * @param referenceFile the subtitle to take the timecodes from
+	 * @param delay the number of milliseconds allowed to differ
+	 * @return the new version of the adjusted subtitle
+	 */
+	public TimedTextFile adjustedTimecodes(TimedTextFile fileToAdjust, TimedTextFile referenceFile, int delay) {
+
+		if (!isVersioned(fileToAdjust)) {
+			TimedTextFile version = fileToAdjust.copy();
+			adjustTimecodes(version, referenceFile, delay);
+			return version;
+		}
+
+		return pipeline(fileToAdjust).align(referenceFile, delay).toSubtitle();
+	}
+
+	/**
+	 * Start the budget of an operation
+	 * 
+	 * @return the budget
+	 */
+	private Budget newBudget() {
+
+		return Budget.start(this.limits, this.cancellationToken);
+	}
+
+	/**
+	 * Compute the synchronised timecodes of lines, without modifying them
+	 * 
+	 * @param linesToAdjust the lines to adjust, sorted
+	 * @param referenceLines the lines to take the timecodes from, sorted
+	 * @param delay the number of milliseconds allowed to differ
+	 * @return the adjusted times, in the order of the lines
+	 */
+	TimelineColumns adjust(Collection<? extends TimedLine> linesToAdjust,
+			Collection<? extends TimedLine> referenceLines, int delay) {
 
-		for (TimedLine lineToAdjust : timedLines) {
+		Budget budget = newBudget();
+		TimelineColumns adjusted = TimelineColumns.of(linesToAdjust);
+		TimelineColumns reference = TimelineColumns.of(referenceLines);
 
-			TimedObject originalTime = lineToAdjust.getTime();
-			LocalTime originalStart = originalTime.getStart();
+		// The index holds the times before adjustment: queries are widened by the largest
+		// move so far, and the matches are checked against the current times
+		IntervalIndex index = IntervalIndex.of(adjusted);
+		long moved = 0;
 
-			TimedLine referenceLine = linesAPI.closestByStart(referenceLines, originalStart, delay);
+		// Both files are sorted: the reference is swept along the lines to adjust
+		int lowerBound = 0;
 
-			if (referenceLine != null) {
-				LocalTime targetStart = referenceLine.getTime().getStart();
-				LocalTime targetEnd = referenceLine.getTime().getEnd();
+		for (int i = 0; i < adjusted.size(); i++) {
 
-				TimedLine fullIntersect = linesAPI.intersected(timedLines, targetStart, targetEnd);
+			budget.tick();
+			lowerBound = reference.lowerBound(adjusted.start(i), Long.MIN_VALUE, lowerBound);
+			int referenceRow = reference.closestByStart(adjusted.start(i), delay, lowerBound);
 
-				if (fullIntersect != null && !lineToAdjust.equals(fullIntersect)) {
+			if (referenceRow >= 0) {
+				long targetStart = reference.start(referenceRow);
+				long targetEnd = reference.end(referenceRow);
+
+				if (hasLineWithin(adjusted, index, moved, i, targetStart, targetEnd)) {
 					continue;
 				}
 
-				TimedLine startIntersect = linesAPI.intersected(timedLines, targetStart);
-				TimedLine endIntersect = linesAPI.intersected(timedLines, targetEnd);
+				long start = adjusted.start(i);
+				long end = adjusted.end(i);
 
-				if (startIntersect == null || originalTime.equals(startIntersect.getTime())) {
-					originalTime.setStart(targetStart);
-				} else {
-					originalTime.setStart(startIntersect.getTime().getEnd());
-				}
+				// Start after the line already displayed, end before the line displayed next
+				long after = latestEndAt(adjusted, index, moved, i, targetStart);
+				adjusted.setStart(i, after == Long.MIN_VALUE ? targetStart : after);
 
-				if (endIntersect == null || originalTime.getStart().equals(endIntersect.getTime().getStart())) {
-					originalTime.setEnd(targetEnd);
-				} else {
-					originalTime.setEnd(endIntersect.getTime().getStart());
-				}
+				long before = earliestStartAt(adjusted, index, moved, i, targetEnd);
+				adjusted.setEnd(i, before == Long.MAX_VALUE ? targetEnd : before);
+
+				moved = Math.max(moved, Math.max(Math.abs(adjusted.start(i) - start), Math.abs(adjusted.end(i) - end)));
 			}
 		}
 
-		expandLongLines(timedLines, referenceLines, 1500);
+		expandLongLines(adjusted, reference, 1500, budget);
+		return adjusted;
+	}
+
+	/**
+	 * Check if new versions of a subtitle can share its lines, other subtitles are copied,
+	 * see <code>SubtitlePipeline.toSubtitle</code>
+	 * 
+	 * @param file: the subtitle
+	 * @return true for a SRT or ASS subtitle
+	 */
+	private static boolean isVersioned(TimedTextFile file) {
+
+		return file instanceof SRTSub || file instanceof ASSSub;
 	}
 
 	/**
 	 * Expand lines in the adjusted file that should be displayed during 2 lines of the
 	 * reference file
 	 * 
-	 * @param adjustedLines the adjusted lines (ascending sort)
-	 * @param referenceLines the reference lines (ascending sort)
+	 * @param adjusted the adjusted lines (ascending sort)
+	 * @param reference the reference lines (ascending sort)
+	 * @param budget the budget of the adjustment
 	 */
-	private static void expandLongLines(List<? extends TimedLine> adjustedLines,
-			List<? extends TimedLine> referenceLines, int delay) {
+	private static void expandLongLines(TimelineColumns adjusted, TimelineColumns reference, int delay,
+			Budget budget) {
+
+		int lowerBound = 0;
 
-		TimedLinesAPI linesAPI = new TimedLinesAPI();
-		for (int i = 0; i < adjustedLines.size(); i++) {
+		for (int i = 0; i < adjusted.size(); i++) {
 
-			TimedObject currentElement = adjustedLines.get(i).getTime();
+			budget.tick();
 
-			int index = linesAPI.findByTime(referenceLines, currentElement);
-			if (index >= 0) {
+			long start = adjusted.start(i);
+			long end = adjusted.end(i);
+
+			lowerBound = reference.lowerBound(start, end, lowerBound);
+			int index = lowerBound;
+			if (index < reference.size() && reference.start(index) == start && reference.end(index) == end) {
+
+				if (index + 1 < reference.size() && reference.hasSameTime(index, index + 1)) {
+					// Several reference lines at this time, the expansion depends on which one
+					// is found: keep the binary search
+					index = reference.findByTime(start, end);
+				}
 
-				int nextReferenceIndex = index + 1;
-				if (nextReferenceIndex < referenceLines.size() && i + 1 < adjustedLines.size()) {
+				int nextReference = index + 1;
+				if (nextReference < reference.size() && i + 1 < adjusted.size()) {
 
-					TimedObject nextReference = referenceLines.get(nextReferenceIndex).getTime();
-					TimedObject nextElement = adjustedLines.get(i + 1).getTime();
+					long nextReferenceStart = reference.start(nextReference);
 
-					if (linesAPI.isEqualsOrAfter(currentElement, nextReference)
-							&& linesAPI.getDelay(currentElement.getEnd(), nextReference.getStart()) < delay
-							&& linesAPI.isEqualsOrAfter(nextReference, nextElement)) {
+					if (nextReferenceStart >= end && Math.abs(nextReferenceStart - end) < delay
+							&& adjusted.start(i + 1) >= reference.end(nextReference)) {
 
-						currentElement.setEnd(nextReference.getEnd());
+						adjusted.setEnd(i, reference.end(nextReference));
 					}
 				}
 			}
 		}
 	}
+
+	/**
+	 * Check if a line other than a row lies strictly within a range of time, a line that
+	 * ends before its start lies at its start
+	 * 
+	 * @param adjusted: the adjusted lines
+	 * @param index: the index of the adjusted lines, before adjustment
+	 * @param moved: the largest move of a line since the index was built
+	 * @param row: the row to adjust
+	 * @param start: the start of the range
+	 * @param end: the end of the range
+	 * @return true if another line is within the range
+	 */
+	private static boolean hasLineWithin(TimelineColumns adjusted, IntervalIndex index, long moved, int row,
+			long start, long end) {
+
+		for (int p = index.first(start - moved, end + moved); p >= 0; p = index.next(start - moved, end + moved, p)) {
+			int other = index.row(p);
+			long otherStart = adjusted.start(other);
+			long otherEnd = Math.max(otherStart, adjusted.end(other));
+			if (start < otherStart && end > otherEnd && !adjusted.isSameLine(row, other)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the latest end of the lines displayed at a time, ignoring the lines with the
+	 * same time as a row
+	 * 
+	 * @param adjusted: the adjusted lines
+	 * @param index: the index of the adjusted lines, before adjustment
+	 * @param moved: the largest move of a line since the index was built
+	 * @param row: the row to adjust
+	 * @param time: the time
+	 * @return the latest end, <code>Long.MIN_VALUE</code> if there is no such line
+	 */
+	private static long latestEndAt(TimelineColumns adjusted, IntervalIndex index, long moved, int row, long time) {
+
+		long latest = Long.MIN_VALUE;
+		for (int p = index.first(time - moved, time + moved + 1); p >= 0; p = index.next(time - moved,
+				time + moved + 1, p)) {
+			int other = index.row(p);
+			if (isDisplayedAt(adjusted, other, time) && !adjusted.hasSameTime(row, other)) {
+				latest = Math.max(latest, adjusted.end(other));
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Get the earliest start of the lines displayed at a time, ignoring the lines
+	 * starting with a row
+	 * 
+	 * @param adjusted: the adjusted lines
+	 * @param index: the index of the adjusted lines, before adjustment
+	 * @param moved: the largest move of a line since the index was built
+	 * @param row: the row to adjust
+	 * @param time: the time
+	 * @return the earliest start, <code>Long.MAX_VALUE</code> if there is no such line
+	 */
+	private static long earliestStartAt(TimelineColumns adjusted, IntervalIndex index, long moved, int row,
+			long time) {
+
+		long earliest = Long.MAX_VALUE;
+		for (int p = index.first(time - moved, time + moved + 1); p >= 0; p = index.next(time - moved,
+				time + moved + 1, p)) {
+			int other = index.row(p);
+			if (isDisplayedAt(adjusted, other, time) && adjusted.start(row) != adjusted.start(other)) {
+				earliest = Math.min(earliest, adjusted.start(other));
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * Check if a row is displayed at a time, a line that does not last is displayed at
+	 * its start
+	 * 
+	 * @param columns: the columns
+	 * @param row: the row
+	 * @param time: the time
+	 * @return true if the row is displayed
+	 */
+	private static boolean isDisplayedAt(TimelineColumns columns, int row, long time) {
+
+		long start = columns.start(row);
+		return start <= time && (columns.end(row) > time || start == time);
+	}
+
+	/**
+	 * Check if lines are sorted in ascending order
+	 * 
+	 * @param lines: the lines to check
+	 * @return true if the lines are sorted
+	 */
+	private static boolean isSorted(Iterable<? extends TimedLine> lines) {
+
+		TimedLine previous = null;
+		for (TimedLine line : lines) {
+			if (previous != null && previous.compareTo(line) > 0) {
+				return false;
+			}
+			previous = line;
+		}
+		return true;
+	}
+
+	/**
+	 * Create the readers of the subtitles of configurations, in start time order
+	 * 
+	 * @param configs: the configurations
+	 * @return the readers
+	 */
+	private static List<SubtitleReader<? extends TimedLine>> readers(SimpleSubConfig[] configs) {
+
+		List<SubtitleReader<? extends TimedLine>> readers = new ArrayList<>();
+		for (SimpleSubConfig config : configs) {
+			Set<? extends TimedLine> lines = config.getSub().getTimedLines();
+			if (isSorted(lines)) {
+				readers.add(new TimedTextFileReader(lines));
+			} else {
+				// Lines whose timecodes have been modified may not be sorted anymore
+				List<TimedLine> sorted = new ArrayList<>(lines);
+				Collections.sort(sorted);
+				readers.add(new TimedTextFileReader(sorted));
+			}
+		}
+		return readers;
+	}
+
+	/**
+	 * Write the events of several streamed subtitles, interleaved by start time. The
+	 * events are the same as in <code>mergeToAss(SimpleSubConfig...)</code>.
+	 * 
+	 * @param writer: the writer of the merged subtitle
+	 * @param configs: configuration object of the subtitles
+	 * @param readers: the readers of the subtitles, in the same order as the
+	 *            configurations
+	 * @throws IOException
+	 */
+	private void writeEvents(ASSWriter writer, SimpleSubConfig[] configs,
+			List<? extends SubtitleReader<? extends TimedLine>> readers) throws IOException {
+
+		Budget budget = newBudget();
+		EventCursor[] cursors = new EventCursor[configs.length];
+		for (int i = 0; i < configs.length; i++) {
+			cursors[i] = new EventCursor(readers.get(i), configs[i].getStyleName());
+		}
+
+		// The events at the same time are sorted as in the events of an ASSSub, where the
+		// events equal to a previous one (same time and text) are not kept
+		TimedLineSet<Events> sameTime = new TimedLineSet<>();
+
+		EventCursor first;
+		while ((first = first(cursors)) != null) {
+			TimedObject time = first.current.getTime();
+			for (EventCursor cursor : cursors) {
+				while (cursor.current != null && cursor.current.getTime().compareTo(time) == 0) {
+					budget.tick();
+					sameTime.add(cursor.current);
+					cursor.advance();
+				}
+			}
+			for (Events event : sameTime) {
+				writer.writeEvent(event);
+			}
+			sameTime.clear();
+		}
+	}
+
+	/**
+	 * Find the cursor positioned on the first event, ties are resolved in the order of the
+	 * cursors
+	 * 
+	 * @param cursors: the cursors
+	 * @return the first cursor, null if all the cursors are exhausted
+	 */
+	private static EventCursor first(EventCursor[] cursors) {
+
+		EventCursor first = null;
+		for (EventCursor cursor : cursors) {
+			if (cursor.current != null && (first == null || cursor.current.compareTo(first.current) < 0)) {
+				first = cursor;
+			}
+		}
+		return first;
+	}
+
+	// ===================== getter and setter start =====================
+
+	public Limits getLimits() {
+		return this.limits;
+	}
+
+	public void setLimits(Limits limits) {
+		this.limits = limits;
+	}
+
+	public CancellationToken getCancellationToken() {
+		return this.cancellationToken;
+	}
+
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	/**
+	 * Cursor on the events created from a streamed subtitle
+	 */
+	private static class EventCursor {
+
+		/**
+		 * The subtitle reader
+		 */
+		private final SubtitleReader<? extends TimedLine> reader;
+
+		/**
+		 * The style applied to the events
+		 */
+		private final String styleName;
+
+		/**
+		 * The current event, null once the reader is exhausted
+		 */
+		private Events current;
+
+		/**
+		 * Constructor, the cursor is positioned on the first event
+		 * 
+		 * @param reader: the subtitle reader
+		 * @param styleName: the style applied to the events
+		 * @throws IOException
+		 */
+		EventCursor(SubtitleReader<? extends TimedLine> reader, String styleName) throws IOException {
+
+			this.reader = reader;
+			this.styleName = styleName;
+			advance();
+		}
+
+		/**
+		 * Move the cursor to the next event
+		 * 
+		 * @throws IOException
+		 */
+		void advance() throws IOException {
+
+			TimedLine line = this.reader.next();
+			this.current = line == null ? null : ConvertionUtils.createEvent(line, this.styleName);
+		}
+	}
 }
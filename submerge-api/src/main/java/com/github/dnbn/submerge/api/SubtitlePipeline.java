@@ -0,0 +1,499 @@
+package com.github.dnbn.submerge.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import org.apache.commons.lang.NotImplementedException;
+
+import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+import com.github.dnbn.submerge.api.subtitle.common.SubtitleLine;
+import com.github.dnbn.submerge.api.subtitle.common.SubtitleTime;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTTime;
+import com.github.dnbn.submerge.api.utils.ConvertionUtils;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
+import com.github.dnbn.submerge.api.writer.ASSWriter;
+import com.github.dnbn.submerge.api.writer.SRTWriter;
+
+/**
+ * Transformations of a subtitle run in a single pass: the stages are only declared, then
+ * applied one after the other to each line when the result is built. No intermediate
+ * subtitle is created and the source subtitle is not modified.
+ * 
+ * <pre>
+ * SRTSub srt = api.pipeline(sub).cleanText().oneLine().align(reference, 850).toSRT();
+ * </pre>
+ * 
+ * The text and time stages change a view of each line, the source lines are copied only
+ * if they change and only when the result is built. An alignment needs the timecodes of
+ * all the lines: the lines are collected before it, sorted as in a subtitle, then the
+ * next stages go on from them.
+ */
+public class SubtitlePipeline {
+
+	/**
+	 * The API running the alignments, with its limits
+	 */
+	private final SubmergeAPI api;
+
+	private final TimedTextFile source;
+
+	private final List<Stage> stages = new ArrayList<>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param api: the API running the alignments
+	 * @param source: the subtitle to transform
+	 */
+	SubtitlePipeline(SubmergeAPI api, TimedTextFile source) {
+
+		this.api = api;
+		this.source = source;
+	}
+
+	// ======================== Stages ==========================
+
+	/**
+	 * Change the text lines of each line
+	 * 
+	 * @param mapper: return new text lines, or the same to keep them. The text lines given
+	 *            must not be modified.
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline mapText(UnaryOperator<List<String>> mapper) {
+
+		this.stages.add(row -> {
+			row.setTextLines(mapper.apply(row.getTextLines()));
+			return true;
+		});
+		return this;
+	}
+
+	/**
+	 * Change each text line of each line. The text lines are kept when none of them
+	 * changed, so that the line is shared by the versions of the subtitle.
+	 * 
+	 * @param mapper: the change of a text line
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline mapTextLines(UnaryOperator<String> mapper) {
+
+		return mapText(textLines -> {
+			List<String> mapped = null;
+			int index = 0;
+			for (String textLine : textLines) {
+				String changed = mapper.apply(textLine);
+				if (mapped == null && !Objects.equals(changed, textLine)) {
+					// First change: the text lines before it are kept as they are
+					mapped = new ArrayList<>(textLines.size());
+					mapped.addAll(textLines.subList(0, index));
+				}
+				if (mapped != null) {
+					mapped.add(changed);
+				}
+				index++;
+			}
+			return mapped == null ? textLines : mapped;
+		});
+	}
+
+	/**
+	 * Change the start and end times of each line
+	 * 
+	 * @param mapper: the change of a time, in milliseconds
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline mapTime(LongUnaryOperator mapper) {
+
+		this.stages.add(row -> {
+			SubtitleTime time = row.getTime();
+			time.setStartMillis(mapper.applyAsLong(time.getStartMillis()));
+			time.setEndMillis(mapper.applyAsLong(time.getEndMillis()));
+			return true;
+		});
+		return this;
+	}
+
+	/**
+	 * Keep the lines matching a predicate
+	 * 
+	 * @param predicate: the predicate, given a view of the line with the changes of the
+	 *            previous stages. The view must not be kept, it can be reused for the next
+	 *            line.
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline filter(Predicate<TimedLine> predicate) {
+
+		this.stages.add(predicate::test);
+		return this;
+	}
+
+	/**
+	 * Synchronise the timecodes of the lines from another subtitle, see
+	 * <code>SubmergeAPI.adjustTimecodes</code>
+	 * 
+	 * @param reference: the subtitle to take the timecodes from
+	 * @param delay: the number of milliseconds allowed to differ
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline align(TimedTextFile reference, int delay) {
+
+		this.stages.add(new Align(reference, delay));
+		return this;
+	}
+
+	/**
+	 * Clean the ASS formatting of the text, see <code>SubmergeAPI.toSRT</code>
+	 * 
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline cleanText() {
+
+		return mapTextLines(ConvertionUtils::toSRTString);
+	}
+
+	/**
+	 * Transform the multi-lines to single-line, see <code>SubmergeAPI.mergeTextLines</code>
+	 * 
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline oneLine() {
+
+		return mapText(textLines -> {
+			if (textLines.size() <= 1) {
+				return textLines;
+			}
+			List<String> merged = new ArrayList<>(1);
+			merged.add(String.join(" ", textLines));
+			return merged;
+		});
+	}
+
+	/**
+	 * Change the framerate, see <code>SubmergeAPI.convertFramerate</code>
+	 * 
+	 * @param sourceFramerate: the source framerate. Ex: 25.000
+	 * @param targetFramerate: the target framerate. Ex: 23.976
+	 * @return this pipeline
+	 */
+	public SubtitlePipeline convertFramerate(double sourceFramerate, double targetFramerate) {
+
+		double ratio = sourceFramerate / targetFramerate;
+		return mapTime(time -> convertTime(time, ratio));
+	}
+
+	// ======================== Sinks ==========================
+
+	/**
+	 * Build the transformed subtitle, a new version of a SRT or ASS subtitle: it shares
+	 * the lines that did not change, as well as the script info and the styles of an ASS
+	 * subtitle. The versions must not be modified in place.
+	 * 
+	 * @return the new version
+	 * @throws NotImplementedException if the subtitle is not a SRT or ASS subtitle
+	 */
+	public TimedTextFile toSubtitle() {
+
+		if (this.source instanceof SRTSub) {
+			SRTSub version = new SRTSub();
+			version.setFileName(this.source.getFileName());
+			version.setLines(TimedLineSet.emptyLike(this.source.getTimedLines()));
+			run(row -> version.add((SRTLine) line(row)));
+			return version;
+		}
+
+		if (this.source instanceof ASSSub) {
+			ASSSub ass = (ASSSub) this.source;
+			ASSSub version = new ASSSub();
+			version.setFileName(ass.getFileName());
+			version.setScriptInfo(ass.getScriptInfo());
+			version.setStyle(new ArrayList<>(ass.getStyle()));
+			version.setEvents(TimedLineSet.emptyLike(ass.getEvents()));
+			run(row -> version.getEvents().add((Events) line(row)));
+			return version;
+		}
+
+		throw unsupported();
+	}
+
+	/**
+	 * Build the transformed subtitle as a SRT subtitle, numbered from 1. The ASS
+	 * formatting of the text is kept, see <code>cleanText</code>.
+	 * 
+	 * @return the SRT subtitle
+	 */
+	public SRTSub toSRT() {
+
+		SRTSub srt = new SRTSub();
+		srt.setLines(TimedLineSet.emptyLike(this.source.getTimedLines()));
+		int[] id = { 0 };
+		run(row -> {
+			SubtitleTime time = row.getTime();
+			SRTTime srtTime = new SRTTime(time.getStartMillis(), time.getEndMillis());
+			srt.add(new SRTLine(++id[0], srtTime, ownTextLines(row)));
+		});
+		return srt;
+	}
+
+	/**
+	 * Write the transformed subtitle, in the format of the source subtitle. The lines are
+	 * written in the order they come out of the pipeline, without building the subtitle.
+	 * The stream is flushed but not closed.
+	 * 
+	 * @param os: the output stream
+	 * @param charset: the charset used to encode the subtitle
+	 * @throws IOException
+	 * @throws NotImplementedException if the subtitle is not a SRT or ASS subtitle
+	 */
+	public void writeTo(OutputStream os, Charset charset) throws IOException {
+
+		try {
+			if (this.source instanceof ASSSub) {
+				ASSWriter writer = new ASSWriter(os, charset);
+				writer.writeHeader((ASSSub) this.source);
+				run(row -> {
+					try {
+						writer.writeEvent((Events) line(row));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				writer.flush();
+			} else if (this.source instanceof SRTSub) {
+				SRTWriter writer = new SRTWriter(os, charset);
+				run(row -> {
+					try {
+						writer.writeLine((SRTLine) line(row));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				writer.flush();
+			} else {
+				throw unsupported();
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// ======================= package methods =======================
+
+	/**
+	 * Convert a time to another framerate, rounded to the nanosecond then truncated to
+	 * the millisecond
+	 * 
+	 * @param time: the time in milliseconds
+	 * @param ratio: the source framerate divided by the target framerate
+	 * @return the converted time
+	 */
+	static long convertTime(long time, double ratio) {
+
+		return Math.round(time * TimecodeUtils.NANOS_PER_MILLI * ratio) / TimecodeUtils.NANOS_PER_MILLI;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Run the stages on each line. The stages between two alignments are fused: each line
+	 * goes through all of them before the next line is read.
+	 * 
+	 * @param sink: the consumer of the transformed lines
+	 */
+	private void run(Consumer<Row> sink) {
+
+		Budget budget = Budget.start(this.api.getLimits(), this.api.getCancellationToken());
+		Iterable<Row> rows = null;
+		int from = 0;
+
+		for (int i = 0; i <= this.stages.size(); i++) {
+			if (i < this.stages.size() && !(this.stages.get(i) instanceof Align)) {
+				continue;
+			}
+
+			Consumer<Row> target = sink;
+			TimedLineSet<Row> collected = null;
+			if (i < this.stages.size()) {
+				// Sorted and without duplicates unless they are kept, as the lines of the
+				// subtitle
+				collected = TimedLineSet.emptyLike(this.source.getTimedLines());
+				target = collected::add;
+			}
+
+			if (rows == null) {
+				// The sinks do not keep the views: a single one is reused until the lines
+				// are collected
+				Row reused = null;
+				for (TimedLine line : this.source.getTimedLines()) {
+					budget.tick();
+					Row row = collected == null && reused != null ? reused.reset(line) : new Row(line);
+					reused = row;
+					if (apply(row, from, i)) {
+						target.accept(row);
+					}
+				}
+			} else {
+				for (Row row : rows) {
+					budget.tick();
+					if (apply(row, from, i)) {
+						target.accept(row);
+					}
+				}
+			}
+
+			if (collected != null) {
+				Align align = (Align) this.stages.get(i);
+				this.api.adjust(collected, align.reference.getTimedLines(), align.delay).writeBack();
+				rows = collected;
+				from = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Apply stages to a line
+	 * 
+	 * @param row: the view of the line
+	 * @param from: the first stage
+	 * @param to: the stage after the last one
+	 * @return true if the line is kept
+	 */
+	private boolean apply(Row row, int from, int to) {
+
+		for (int i = from; i < to; i++) {
+			if (!this.stages.get(i).apply(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the line of a SRT or ASS subtitle matching a view: the source line if it did
+	 * not change, else a copy with the changes
+	 * 
+	 * @param row: the view
+	 * @return the line
+	 */
+	private static TimedLine line(Row row) {
+
+		TimedLine source = row.source;
+		SubtitleTime time = row.getTime();
+		boolean sameText = row.getTextLines() == source.getTextLines();
+		boolean sameTime = time.getStartMillis() == source.getTime().getStartMillis()
+				&& time.getEndMillis() == source.getTime().getEndMillis();
+		if (sameText && sameTime) {
+			return source;
+		}
+
+		SubtitleLine<?> copy = source instanceof SRTLine ? ((SRTLine) source).copy() : ((Events) source).copy();
+		if (!sameText) {
+			copy.setTextLines(row.getTextLines());
+		}
+		copy.getTime().setStartMillis(time.getStartMillis());
+		copy.getTime().setEndMillis(time.getEndMillis());
+		return copy;
+	}
+
+	/**
+	 * Get text lines of a view that are not shared with the source line
+	 * 
+	 * @param row: the view
+	 * @return the text lines
+	 */
+	private static List<String> ownTextLines(Row row) {
+
+		List<String> textLines = row.getTextLines();
+		return textLines == row.source.getTextLines() ? SubtitleLine.copyText(textLines) : textLines;
+	}
+
+	private NotImplementedException unsupported() {
+
+		return new NotImplementedException(this.source.getClass().getSimpleName() + " format not supported");
+	}
+
+	/**
+	 * Stage of the pipeline
+	 */
+	@FunctionalInterface
+	private interface Stage {
+
+		/**
+		 * Apply the stage to a line
+		 * 
+		 * @param row: the view of the line, changed in place
+		 * @return true to keep the line
+		 */
+		boolean apply(Row row);
+	}
+
+	/**
+	 * Alignment stage, run on all the lines at once
+	 */
+	private static final class Align implements Stage {
+
+		private final TimedTextFile reference;
+
+		private final int delay;
+
+		Align(TimedTextFile reference, int delay) {
+
+			this.reference = reference;
+			this.delay = delay;
+		}
+
+		@Override
+		public boolean apply(Row row) {
+
+			throw new IllegalStateException("An alignment is not applied line by line");
+		}
+	}
+
+	/**
+	 * View of a line going through the pipeline: its text and times with the changes of
+	 * the stages, the source line is not modified
+	 */
+	private static final class Row extends SubtitleLine<SubtitleTime> {
+
+		private static final long serialVersionUID = -4410929012356725331L;
+
+		private transient TimedLine source;
+
+		Row(TimedLine source) {
+
+			super(new SubtitleTime());
+			reset(source);
+		}
+
+		/**
+		 * Reset the view to a source line
+		 * 
+		 * @param source: the line
+		 * @return this view
+		 */
+		Row reset(TimedLine source) {
+
+			this.source = source;
+			this.time.setStartMillis(source.getTime().getStartMillis());
+			this.time.setEndMillis(source.getTime().getEndMillis());
+			this.textLines = source.getTextLines();
+			return this;
+		}
+	}
+
+}
@@ -1,7 +1,6 @@
 package com.github.dnbn.submerge.api;
 
 import java.time.LocalTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -12,6 +11,7 @@ import com.github.dnbn.submerge.api.subtitle.common.SubtitleLine;
 import com.github.dnbn.submerge.api.subtitle.common.SubtitleTime;
 import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
 import com.github.dnbn.submerge.api.subtitle.common.TimedObject;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
 
 public class TimedLinesAPI {
 
@@ -27,21 +27,36 @@ public class TimedLinesAPI {
 	 */
 	public TimedLine closestByStart(List<? extends TimedLine> lines, final LocalTime time, int tolerance) {
 
+		return closestByStart(lines, TimecodeUtils.toMillis(time), tolerance);
+	}
+
+	/**
+	 * Search the line that has the closest start time compared to a specified time. If
+	 * the gap beetween the two start times is greater than the toleranceDelay (in ms) the
+	 * line will be ignored.
+	 * 
+	 * @param tolerance the maximum gap in millis
+	 * @param lines the lines (ascending sort)
+	 * @param time the target start time in milliseconds
+	 * @return
+	 */
+	public TimedLine closestByStart(List<? extends TimedLine> lines, final long time, int tolerance) {
+
 		// Binary search will find the first "random" match
-		int iAnyMatch = Collections.binarySearch(lines, new SubtitleLine<>(new SubtitleTime(time, null)),
+		int iAnyMatch = Collections.binarySearch(lines, new SubtitleLine<>(new SubtitleTime(time, time)),
 				new Comparator<TimedLine>() {
 
 					@Override
 					public int compare(TimedLine compare, TimedLine base) {
 
-						LocalTime search = base.getTime().getStart();
-						LocalTime start = compare.getTime().getStart();
+						long search = base.getTime().getStartMillis();
+						long start = compare.getTime().getStartMillis();
 
 						if (getDelay(search, start) < tolerance) {
 							return 0;
 						}
 
-						return start.compareTo(search);
+						return Long.compare(start, search);
 					}
 				});
 
@@ -56,7 +71,7 @@ public class TimedLinesAPI {
 		int i = iAnyMatch;
 		while (i > 0) {
 			TimedLine previous = lines.get(--i);
-			if (getDelay(time, previous.getTime().getStart()) >= tolerance) {
+			if (getDelay(time, previous.getTime().getStartMillis()) >= tolerance) {
 				break;
 			}
 			matches.add(previous);
@@ -65,7 +80,7 @@ public class TimedLinesAPI {
 		i = iAnyMatch;
 		while (i < lines.size() -1) {
 			TimedLine next = lines.get(++i);
-			if (getDelay(time, next.getTime().getStart()) >= tolerance) {
+			if (getDelay(time, next.getTime().getStartMillis()) >= tolerance) {
 				break;
 			}
 			matches.add(next);
@@ -73,7 +88,8 @@ public class TimedLinesAPI {
 
 		// return the closest match
 		return matches.stream()
-				.sorted((m1, m2) -> getDelay(m1.getTime().getStart(), time) - getDelay(m2.getTime().getStart(), time))
+				.sorted((m1, m2) -> getDelay(m1.getTime().getStartMillis(), time)
+						- getDelay(m2.getTime().getStartMillis(), time))
 				.findFirst().get();
 	}
 
@@ -84,7 +100,17 @@ public class TimedLinesAPI {
 	 */
 	public int getDelay(LocalTime start, LocalTime end) {
 
-		return (int) Math.abs(ChronoUnit.MILLIS.between(start, end));
+		return getDelay(TimecodeUtils.toMillis(start), TimecodeUtils.toMillis(end));
+	}
+
+	/**
+	 * Get the absolute delay beetween 2 times in milliseconds
+	 * 
+	 * @return the absolute delay beetween 2 times
+	 */
+	public int getDelay(long start, long end) {
+
+		return (int) Math.abs(end - start);
 	}
 
 	/**
@@ -96,12 +122,12 @@ public class TimedLinesAPI {
 	 */
 	public boolean isEqualsOrAfter(TimedObject elementToCompare, TimedObject comparedElement) {
 
-		return comparedElement.getStart().isAfter(elementToCompare.getEnd())
-				|| comparedElement.getStart().equals(elementToCompare.getEnd());
+		return comparedElement.getStartMillis() >= elementToCompare.getEndMillis();
 	}
 
 	/**
-	 * Find the line displayed at <code>targetTime</code>
+	 * Find the line displayed at <code>targetTime</code>. This is a binary search: the
+	 * lines must not overlap, use <code>IntervalIndex</code> to query lines that may overlap.
 	 * 
 	 * @param lines the lines (ascending sort)
 	 * @param time the target time
@@ -109,22 +135,34 @@ public class TimedLinesAPI {
 	 */
 	public TimedLine intersected(List<? extends TimedLine> lines, LocalTime time) {
 
-		int index = Collections.binarySearch(lines, new SubtitleLine<>(new SubtitleTime(time, null)),
+		return intersected(lines, TimecodeUtils.toMillis(time));
+	}
+
+	/**
+	 * Find the line displayed at <code>targetTime</code>. This is a binary search: the
+	 * lines must not overlap, use <code>IntervalIndex</code> to query lines that may overlap.
+	 * 
+	 * @param lines the lines (ascending sort)
+	 * @param time the target time in milliseconds
+	 * @return
+	 */
+	public TimedLine intersected(List<? extends TimedLine> lines, long time) {
+
+		int index = Collections.binarySearch(lines, new SubtitleLine<>(new SubtitleTime(time, time)),
 				new Comparator<TimedLine>() {
 
 					@Override
 					public int compare(TimedLine compare, TimedLine base) {
 
-						LocalTime search = base.getTime().getStart();
-						LocalTime start = compare.getTime().getStart();
-						LocalTime end = compare.getTime().getEnd();
+						long search = base.getTime().getStartMillis();
+						long start = compare.getTime().getStartMillis();
+						long end = compare.getTime().getEndMillis();
 
-						if ((start.isBefore(search) || start.equals(search))
-								&& (end.isAfter(search) || start.equals(search))) {
+						if (start <= search && (end > search || start == search)) {
 							return 0;
 						}
 
-						return start.compareTo(search);
+						return Long.compare(start, search);
 					}
 				});
 
@@ -132,7 +170,8 @@ public class TimedLinesAPI {
 	}
 
 	/**
-	 * Find a line displayed between 2 times
+	 * Find a line displayed between 2 times. This is a binary search: the lines must not
+	 * overlap, use <code>IntervalIndex</code> to query lines that may overlap.
 	 * 
 	 * @param lines the lines (ascending sort)
 	 * @param
@@ -141,19 +180,33 @@ public class TimedLinesAPI {
 	 */
 	public TimedLine intersected(List<? extends TimedLine> lines, LocalTime start, LocalTime end) {
 
+		return intersected(lines, TimecodeUtils.toMillis(start), TimecodeUtils.toMillis(end));
+	}
+
+	/**
+	 * Find a line displayed between 2 times in milliseconds. This is a binary search: the
+	 * lines must not overlap, use <code>IntervalIndex</code> to query lines that may overlap.
+	 * 
+	 * @param lines the lines (ascending sort)
+	 * @param
+	 * 
+	 * @return
+	 */
+	public TimedLine intersected(List<? extends TimedLine> lines, long start, long end) {
+
 		int index = Collections.binarySearch(lines, new SubtitleLine<>(new SubtitleTime(start, end)),
 				new Comparator<TimedLine>() {
 
 					@Override
 					public int compare(TimedLine compare, TimedLine base) {
 
-						LocalTime searchStart = base.getTime().getStart();
-						LocalTime searchEnd = base.getTime().getEnd();
+						long searchStart = base.getTime().getStartMillis();
+						long searchEnd = base.getTime().getEndMillis();
 
-						LocalTime start = compare.getTime().getStart();
-						LocalTime end = compare.getTime().getEnd();
+						long start = compare.getTime().getStartMillis();
+						long end = compare.getTime().getEndMillis();
 
-						if (searchStart.isBefore(start) && searchEnd.isAfter(end)) {
+						if (searchStart < start && searchEnd > end) {
 							return 0;
 						}
 
@@ -0,0 +1,547 @@
+package com.github.dnbn.submerge.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import com.github.dnbn.submerge.api.subtitle.common.SubtitleLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
+import com.github.dnbn.submerge.api.subtitle.common.TimedObject;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Columnar view of the timings of a subtitle: the start and end times are copied once
+ * into primitive arrays, so that sorting, searching and shifting do not go through the
+ * object model. Each row keeps the id of its line, changes are written back to the lines
+ * with <code>writeBack</code>. Lines must not be added or removed while the columns are
+ * in use.
+ */
+public class TimelineColumns {
+
+	/**
+	 * Text of a searched line
+	 */
+	private static final List<String> NO_TEXT = Collections.emptyList();
+
+	/**
+	 * The lines, by id
+	 */
+	private final List<TimedLine> lines;
+
+	/**
+	 * Start time of each row, in milliseconds
+	 */
+	private final long[] starts;
+
+	/**
+	 * End time of each row, in milliseconds
+	 */
+	private final long[] ends;
+
+	/**
+	 * Line id of each row
+	 */
+	private final int[] ids;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param lines: the lines, in the order of the rows
+	 */
+	@SuppressWarnings("unchecked")
+	private TimelineColumns(Collection<? extends TimedLine> lines) {
+
+		// The lines of a TimedLineSet can be read by position without copying them
+		this.lines = lines instanceof TimedLineSet ? ((TimedLineSet<TimedLine>) lines).asList()
+				: new ArrayList<>(lines);
+		int size = this.lines.size();
+		this.starts = new long[size];
+		this.ends = new long[size];
+		this.ids = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			TimedObject time = this.lines.get(i).getTime();
+			this.starts[i] = time.getStartMillis();
+			this.ends[i] = time.getEndMillis();
+			this.ids[i] = i;
+		}
+	}
+
+	/**
+	 * Build the columns of a subtitle, the rows follow the order of its lines
+	 * 
+	 * @param file: the subtitle
+	 * @return the columns
+	 */
+	public static TimelineColumns of(TimedTextFile file) {
+
+		return new TimelineColumns(file.getTimedLines());
+	}
+
+	/**
+	 * Build the columns of some lines, the rows follow the order of the lines
+	 * 
+	 * @param lines: the lines
+	 * @return the columns
+	 */
+	public static TimelineColumns of(Collection<? extends TimedLine> lines) {
+
+		return new TimelineColumns(lines);
+	}
+
+	/**
+	 * Get the number of rows
+	 * 
+	 * @return the number of rows
+	 */
+	public int size() {
+
+		return this.ids.length;
+	}
+
+	/**
+	 * Get the start time of a row
+	 * 
+	 * @param row: the row
+	 * @return the start time in milliseconds
+	 */
+	public long start(int row) {
+
+		return this.starts[row];
+	}
+
+	/**
+	 * Get the end time of a row
+	 * 
+	 * @param row: the row
+	 * @return the end time in milliseconds
+	 */
+	public long end(int row) {
+
+		return this.ends[row];
+	}
+
+	/**
+	 * Get the line id of a row, which is the position of the line when the columns were
+	 * built
+	 * 
+	 * @param row: the row
+	 * @return the line id
+	 */
+	public int id(int row) {
+
+		return this.ids[row];
+	}
+
+	/**
+	 * Get the line of a row
+	 * 
+	 * @param row: the row
+	 * @return the line
+	 */
+	public TimedLine line(int row) {
+
+		return this.lines.get(this.ids[row]);
+	}
+
+	/**
+	 * Set the start time of a row
+	 * 
+	 * @param row: the row
+	 * @param start: the start time in milliseconds
+	 */
+	public void setStart(int row, long start) {
+
+		this.starts[row] = start;
+	}
+
+	/**
+	 * Set the end time of a row
+	 * 
+	 * @param row: the row
+	 * @param end: the end time in milliseconds
+	 */
+	public void setEnd(int row, long end) {
+
+		this.ends[row] = end;
+	}
+
+	/**
+	 * Shift the times of all the rows
+	 * 
+	 * @param delta: the shift in milliseconds
+	 */
+	public void shift(long delta) {
+
+		shift(0, size(), delta);
+	}
+
+	/**
+	 * Shift the times of a range of rows
+	 * 
+	 * @param from: the first row, inclusive
+	 * @param to: the last row, exclusive
+	 * @param delta: the shift in milliseconds
+	 */
+	public void shift(int from, int to, long delta) {
+
+		for (int i = from; i < to; i++) {
+			this.starts[i] += delta;
+			this.ends[i] += delta;
+		}
+	}
+
+	/**
+	 * Sort the rows in the order of the lines: by start time, end time, then text. The
+	 * sort is stable.
+	 */
+	public void sort() {
+
+		int size = size();
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, new int[size], 0, size);
+
+		long[] sortedStarts = new long[size];
+		long[] sortedEnds = new long[size];
+		int[] sortedIds = new int[size];
+		for (int i = 0; i < size; i++) {
+			sortedStarts[i] = this.starts[order[i]];
+			sortedEnds[i] = this.ends[order[i]];
+			sortedIds[i] = this.ids[order[i]];
+		}
+		System.arraycopy(sortedStarts, 0, this.starts, 0, size);
+		System.arraycopy(sortedEnds, 0, this.ends, 0, size);
+		System.arraycopy(sortedIds, 0, this.ids, 0, size);
+	}
+
+	/**
+	 * Write the times of the rows back to their lines
+	 */
+	public void writeBack() {
+
+		for (int i = 0; i < size(); i++) {
+			TimedObject time = line(i).getTime();
+			time.setStartMillis(this.starts[i]);
+			time.setEndMillis(this.ends[i]);
+		}
+	}
+
+	// ======================= search =======================
+
+	/**
+	 * Find a row from its times (rows sorted by time)
+	 * 
+	 * @param start: the start time
+	 * @param end: the end time
+	 * @return the row, or a negative value if not found
+	 * @see TimedLinesAPI#findByTime(List, TimedObject)
+	 */
+	public int findByTime(long start, long end) {
+
+		return search(mid -> compareTime(mid, start, end));
+	}
+
+	/**
+	 * Find the row that has the closest start time compared to a specified time. If the
+	 * gap beetween the two start times is greater than the tolerance (in ms) the row is
+	 * ignored. Rows at the same distance are resolved in the order of their lines.
+	 * 
+	 * @param time: the target start time
+	 * @param tolerance: the maximum gap in millis
+	 * @return the row, or -1 if no row is close enough
+	 * @see TimedLinesAPI#closestByStart(List, long, int)
+	 */
+	public int closestByStart(long time, int tolerance) {
+
+		// Binary search will find the first "random" match
+		int anyMatch = search(mid -> delay(time, this.starts[mid]) < tolerance ? 0
+				: Long.compare(this.starts[mid], time));
+
+		if (anyMatch < 0) {
+			return -1;
+		}
+
+		int from = anyMatch;
+		while (from > 0 && delay(time, this.starts[from - 1]) < tolerance) {
+			from--;
+		}
+
+		int to = anyMatch;
+		while (to < size() - 1 && delay(time, this.starts[to + 1]) < tolerance) {
+			to++;
+		}
+
+		int closest = from;
+		for (int i = from + 1; i <= to; i++) {
+			int compare = delay(time, this.starts[i]) - delay(time, this.starts[closest]);
+			if (compare < 0 || compare == 0 && compareRows(i, closest) < 0) {
+				closest = i;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Find the row that has the closest start time compared to a specified time, from the
+	 * first row starting at or after the time. Same result as
+	 * <code>closestByStart(long, int)</code> without searching the rows.
+	 * 
+	 * @param time: the target start time
+	 * @param tolerance: the maximum gap in millis
+	 * @param lowerBound: the first row starting at or after the time
+	 * @return the row, or -1 if no row is close enough
+	 * @see #lowerBound(long, long, int)
+	 */
+	public int closestByStart(long time, int tolerance, int lowerBound) {
+
+		if (tolerance <= 0) {
+			// Only the search finds a row at the exact time
+			return closestByStart(time, tolerance);
+		}
+
+		int closest = -1;
+		if (lowerBound > 0 && delay(time, this.starts[lowerBound - 1]) < tolerance) {
+			// First of the rows starting just before the time
+			closest = lowerBound - 1;
+			while (closest > 0 && this.starts[closest - 1] == this.starts[closest]) {
+				closest--;
+			}
+		}
+
+		if (lowerBound < size() && delay(time, this.starts[lowerBound]) < tolerance
+				&& (closest < 0 || delay(time, this.starts[lowerBound]) < delay(time, this.starts[closest]))) {
+			closest = lowerBound;
+		}
+		return closest;
+	}
+
+	/**
+	 * Find the first row at or after a time (rows sorted by time). The search walks
+	 * forward from the row found for a previous time, so that a sweep over increasing
+	 * times visits each row once. It falls back to a binary search when the time is
+	 * before the previous one.
+	 * 
+	 * @param start: the start time
+	 * @param end: the end time, <code>Long.MIN_VALUE</code> to search by start time only
+	 * @param from: the row found by the previous search, 0 for a first search
+	 * @return the row, or the number of rows if all the rows are before the time
+	 */
+	public int lowerBound(long start, long end, int from) {
+
+		int row = from;
+		if (row > 0 && compareTime(row - 1, start, end) >= 0) {
+			int low = 0;
+			int high = row - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (compareTime(mid, start, end) < 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		while (row < size() && compareTime(row, start, end) < 0) {
+			row++;
+		}
+		return row;
+	}
+
+	/**
+	 * Find the row displayed at a time (rows sorted by time)
+	 * 
+	 * @param time: the target time
+	 * @return the row, or a negative value if not found
+	 * @see TimedLinesAPI#intersected(List, long)
+	 */
+	public int intersected(long time) {
+
+		return search(mid -> {
+			long start = this.starts[mid];
+			if (start <= time && (this.ends[mid] > time || start == time)) {
+				return 0;
+			}
+			return Long.compare(start, time);
+		});
+	}
+
+	/**
+	 * Find a row displayed between 2 times (rows sorted by time)
+	 * 
+	 * @param start: the start time
+	 * @param end: the end time
+	 * @return the row, or a negative value if not found
+	 * @see TimedLinesAPI#intersected(List, long, long)
+	 */
+	public int intersected(long start, long end) {
+
+		return search(mid -> {
+			if (start < this.starts[mid] && end > this.ends[mid]) {
+				return 0;
+			}
+			int compare = compareTime(mid, start, end);
+			if (compare == 0 && SubtitleLine.compareText(line(mid).getTextLines(), NO_TEXT) > 0) {
+				// The searched line has no text
+				compare = 1;
+			}
+			return compare;
+		});
+	}
+
+	/**
+	 * Check if two rows hold the same time
+	 * 
+	 * @param row: a row
+	 * @param other: another row
+	 * @return true if the times are equal
+	 */
+	public boolean hasSameTime(int row, int other) {
+
+		return this.starts[row] == this.starts[other] && this.ends[row] == this.ends[other];
+	}
+
+	/**
+	 * Check if two rows hold equal lines, with the current times of the rows
+	 * 
+	 * @param row: a row
+	 * @param other: another row
+	 * @return true if the lines are equal
+	 */
+	public boolean isSameLine(int row, int other) {
+
+		if (row == other) {
+			return true;
+		}
+		TimedLine line = line(row);
+		TimedLine otherLine = line(other);
+		return hasSameTime(row, other) && line.getClass() == otherLine.getClass()
+				&& compareText(line, otherLine) == 0;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Binary search over the rows, same as <code>Collections.binarySearch</code>
+	 * 
+	 * @param comparator: compare a row to the searched value
+	 * @return the row, or <code>-(insertion point) - 1</code> if not found
+	 */
+	private int search(IntUnaryOperator comparator) {
+
+		int low = 0;
+		int high = size() - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int compare = comparator.applyAsInt(mid);
+
+			if (compare < 0) {
+				low = mid + 1;
+			} else if (compare > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Compare the time of a row to a time
+	 * 
+	 * @param row: the row
+	 * @param start: the start time
+	 * @param end: the end time
+	 * @return the comparison result
+	 */
+	private int compareTime(int row, long start, long end) {
+
+		int compare = Long.compare(this.starts[row], start);
+		if (compare == 0) {
+			compare = Long.compare(this.ends[row], end);
+		}
+		return compare;
+	}
+
+	/**
+	 * Compare two rows in the order of their lines: time then text
+	 * 
+	 * @param row: a row
+	 * @param other: another row
+	 * @return the comparison result
+	 */
+	private int compareRows(int row, int other) {
+
+		int compare = compareTime(row, this.starts[other], this.ends[other]);
+		if (compare == 0) {
+			compare = compareText(line(row), line(other));
+		}
+		return compare;
+	}
+
+	/**
+	 * Compare the texts of two lines
+	 * 
+	 * @param line: a line
+	 * @param other: another line
+	 * @return the comparison result
+	 */
+	private static int compareText(TimedLine line, TimedLine other) {
+
+		return SubtitleLine.compareText(line.getTextLines(), other.getTextLines());
+	}
+
+	/**
+	 * Get the absolute delay beetween 2 times
+	 * 
+	 * @return the absolute delay beetween 2 times
+	 */
+	private static int delay(long time, long other) {
+
+		return (int) Math.abs(other - time);
+	}
+
+	/**
+	 * Stable merge sort of row indexes
+	 * 
+	 * @param order: the row indexes to sort
+	 * @param buffer: a buffer of the same size
+	 * @param from: the first index, inclusive
+	 * @param to: the last index, exclusive
+	 */
+	private void mergeSort(int[] order, int[] buffer, int from, int to) {
+
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(order, buffer, from, middle);
+		mergeSort(order, buffer, middle, to);
+
+		if (compareRows(order[middle - 1], order[middle]) <= 0) {
+			// Already in order
+			return;
+		}
+
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || left < middle && compareRows(buffer[left], buffer[right]) <= 0) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+
+}
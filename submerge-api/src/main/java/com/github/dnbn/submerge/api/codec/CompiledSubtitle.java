@@ -0,0 +1,634 @@
+package com.github.dnbn.submerge.api.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.dnbn.submerge.api.parser.SubtitleReader;
+import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.subtitle.ass.ASSTime;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+import com.github.dnbn.submerge.api.subtitle.ass.ScriptInfo;
+import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
+import com.github.dnbn.submerge.api.subtitle.common.LazyTextLines;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTTime;
+
+/**
+ * Subtitle encoded by <code>SubtitleCodec</code>, read in place from a buffer: only the
+ * header is decoded when it is opened, the lines are decoded when they are read and their
+ * text when it is read. The seek table gives the lines at a time without reading the
+ * lines before.
+ * 
+ * <pre>
+ * CompiledSubtitle compiled = CompiledSubtitle.of(buffer);
+ * for (TimedLine line : compiled.linesAt(position)) {
+ * 	display(line.getTextLines());
+ * }
+ * </pre>
+ * 
+ * The buffer is never modified nor moved, a compiled subtitle can be read by several
+ * threads.
+ */
+public final class CompiledSubtitle {
+
+	private final ByteBuffer buffer;
+
+	private final boolean ass;
+
+	/**
+	 * True if the lines that compare equal are all kept in the decoded subtitle
+	 */
+	private final boolean keepDuplicates;
+
+	private final String fileName;
+
+	private final int size;
+
+	/**
+	 * Longest duration of a line
+	 */
+	private final long maxDuration;
+
+	private final String[] strings;
+
+	/**
+	 * Header of an ASS subtitle, copied for each decoded subtitle
+	 */
+	private final ScriptInfo scriptInfo;
+
+	private final List<V4Style> styles;
+
+	/**
+	 * Offset of the first line
+	 */
+	private final int linesOffset;
+
+	/**
+	 * Seek table: start of the first bucket, duration of a bucket, number of buckets and
+	 * offset of the first entry
+	 */
+	private final long origin;
+
+	private final int bucketMillis;
+
+	private final int bucketCount;
+
+	private final int seekOffset;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param buffer: the encoded subtitle, from its position to its limit
+	 */
+	private CompiledSubtitle(ByteBuffer buffer) {
+
+		this.buffer = buffer;
+		int length = buffer.limit();
+		if (length < 6 + SubtitleCodec.TRAILER_SIZE || buffer.getInt(0) != SubtitleCodec.MAGIC
+				|| buffer.getInt(length - 4) != SubtitleCodec.MAGIC) {
+			throw new InvalidSubException("Not an encoded subtitle");
+		}
+		if (buffer.get(4) != SubtitleCodec.VERSION) {
+			throw new InvalidSubException("Unsupported encoded subtitle version: " + buffer.get(4));
+		}
+
+		Input in = new Input(6);
+		byte type = (byte) (buffer.get(5) & ~SubtitleCodec.KEEP_DUPLICATES);
+		if (type != SubtitleCodec.TYPE_SRT && type != SubtitleCodec.TYPE_ASS) {
+			throw new InvalidSubException("Unknown encoded subtitle type: " + type);
+		}
+		this.ass = type == SubtitleCodec.TYPE_ASS;
+		this.keepDuplicates = (buffer.get(5) & SubtitleCodec.KEEP_DUPLICATES) != 0;
+		this.fileName = in.readString();
+		this.size = (int) in.readVarLong();
+		this.maxDuration = in.readVarLong();
+
+		this.strings = new String[(int) in.readVarLong()];
+		for (int i = 0; i < this.strings.length; i++) {
+			this.strings[i] = in.readString();
+		}
+
+		if (this.ass) {
+			this.scriptInfo = readScriptInfo(in);
+			this.styles = readStyles(in);
+		} else {
+			this.scriptInfo = null;
+			this.styles = Collections.emptyList();
+		}
+		this.linesOffset = in.position;
+
+		int seek = buffer.getInt(length - SubtitleCodec.TRAILER_SIZE);
+		this.origin = buffer.getLong(seek);
+		this.bucketMillis = buffer.getInt(seek + 8);
+		this.bucketCount = buffer.getInt(seek + 12);
+		this.seekOffset = seek + 16;
+	}
+
+	/**
+	 * Open an encoded subtitle, the buffer is not copied
+	 * 
+	 * @param buffer: the encoded subtitle, from its position to its limit
+	 * @return the compiled subtitle
+	 * @throws InvalidSubException if the buffer is not an encoded subtitle
+	 */
+	public static CompiledSubtitle of(ByteBuffer buffer) {
+
+		try {
+			return new CompiledSubtitle(buffer.slice());
+		} catch (IndexOutOfBoundsException e) {
+			throw new InvalidSubException("Truncated encoded subtitle", e);
+		}
+	}
+
+	/**
+	 * Check if the subtitle is an ASS subtitle
+	 * 
+	 * @return true for an ASS subtitle, false for a SRT subtitle
+	 */
+	public boolean isASS() {
+
+		return this.ass;
+	}
+
+	/**
+	 * Get the file name of the subtitle
+	 * 
+	 * @return the file name
+	 */
+	public String getFileName() {
+
+		return this.fileName;
+	}
+
+	/**
+	 * Get the number of lines
+	 * 
+	 * @return the number of lines
+	 */
+	public int size() {
+
+		return this.size;
+	}
+
+	/**
+	 * Read all the lines, in the order of the subtitle
+	 * 
+	 * @return the reader
+	 */
+	public SubtitleReader<TimedLine> reader() {
+
+		return first();
+	}
+
+	/**
+	 * Read the lines from the first one starting at or after a time, in the order of the
+	 * subtitle. The lines before are skipped with the seek table when the lines are sorted
+	 * by start time.
+	 * 
+	 * @param time: the time in milliseconds
+	 * @return the reader
+	 */
+	public SubtitleReader<TimedLine> reader(long time) {
+
+		Reader reader = seek(time);
+		reader.skipBefore(time);
+		return reader;
+	}
+
+	/**
+	 * Get the lines displayed at a time, a line that does not last is displayed at its
+	 * start. All the lines are read if they are not sorted by start time.
+	 * 
+	 * @param time: the time in milliseconds
+	 * @return the lines, in the order of the subtitle
+	 */
+	public List<TimedLine> linesAt(long time) {
+
+		List<TimedLine> lines = new ArrayList<>();
+		// A line displayed at the time starts at most the longest duration before
+		Reader reader = seek(time - this.maxDuration);
+		TimedLine line;
+		while ((line = reader.next()) != null) {
+			long start = line.getTime().getStartMillis();
+			if (start > time && this.bucketCount > 0) {
+				// Sorted lines, the next ones start later
+				break;
+			}
+			if (start <= time && (line.getTime().getEndMillis() > time || start == time)) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Decode the whole subtitle, the text lines are decoded when they are read
+	 * 
+	 * @return a <code>SRTSub</code> or an <code>ASSSub</code>
+	 */
+	public TimedTextFile toSubtitle() {
+
+		Reader reader = first();
+		if (this.ass) {
+			ASSSub sub = new ASSSub();
+			sub.setFileName(this.fileName);
+			sub.setScriptInfo(copy(this.scriptInfo));
+			List<V4Style> styles = new ArrayList<>(this.styles.size());
+			this.styles.forEach(style -> styles.add(copy(style)));
+			sub.setStyle(styles);
+			sub.setEvents(new TimedLineSet<>(this.keepDuplicates));
+			for (TimedLine line; (line = reader.next()) != null;) {
+				sub.getEvents().add((Events) line);
+			}
+			return sub;
+		}
+
+		SRTSub sub = new SRTSub();
+		sub.setFileName(this.fileName);
+		sub.setLines(new TimedLineSet<>(this.keepDuplicates));
+		for (TimedLine line; (line = reader.next()) != null;) {
+			sub.add((SRTLine) line);
+		}
+		return sub;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Position a reader on the first line of the bucket of a time, or on the first line if
+	 * the subtitle has no seek table
+	 * 
+	 * @param time: the time
+	 * @return the reader
+	 */
+	private Reader seek(long time) {
+
+		if (this.bucketCount == 0 || time <= this.origin) {
+			return first();
+		}
+
+		long bucket = (time - this.origin) / this.bucketMillis;
+		if (bucket >= this.bucketCount) {
+			bucket = this.bucketCount - 1;
+		}
+		int entry = this.seekOffset + (int) bucket * SubtitleCodec.SEEK_ENTRY_SIZE;
+		return new Reader(this.buffer.getInt(entry + 4), this.buffer.getInt(entry),
+				this.buffer.getLong(entry + 8), this.buffer.getInt(entry + 16));
+	}
+
+	/**
+	 * Position a reader on the first line
+	 * 
+	 * @return the reader
+	 */
+	private Reader first() {
+
+		return new Reader(this.linesOffset, 0, 0, 0);
+	}
+
+	private ScriptInfo readScriptInfo(Input in) {
+
+		ScriptInfo info = new ScriptInfo();
+		String[] values = new String[SubtitleCodec.scriptInfoStrings(info).length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = string(in.readVarLong());
+		}
+		SubtitleCodec.setScriptInfoStrings(info, values);
+
+		int collisions = (int) in.readVarLong();
+		info.setCollisions(collisions == 0 ? null : ScriptInfo.Collision.values()[collisions - 1]);
+		info.setPlayResY((int) SubtitleCodec.unzigzag(in.readVarLong()));
+		info.setPlayResX((int) SubtitleCodec.unzigzag(in.readVarLong()));
+		info.setPlayDepth((int) SubtitleCodec.unzigzag(in.readVarLong()));
+		info.setTimer(Double.longBitsToDouble(in.readLong()));
+		return info;
+	}
+
+	private List<V4Style> readStyles(Input in) {
+
+		int count = (int) in.readVarLong();
+		List<V4Style> styles = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			V4Style style = new V4Style();
+			style.setName(string(in.readVarLong()));
+			style.setFontname(string(in.readVarLong()));
+
+			int[] values = new int[SubtitleCodec.styleValues(style).length];
+			for (int v = 0; v < values.length; v++) {
+				values[v] = (int) SubtitleCodec.unzigzag(in.readVarLong());
+			}
+			SubtitleCodec.setStyleValues(style, values);
+
+			int flags = in.readByte();
+			style.setBold((flags & 1) != 0);
+			style.setItalic((flags & 2) != 0);
+			style.setUnderline((flags & 4) != 0);
+			style.setStrikeOut((flags & 8) != 0);
+			style.setAngle(Double.longBitsToDouble(in.readLong()));
+			styles.add(style);
+		}
+		return styles;
+	}
+
+	/**
+	 * Get a string of the table
+	 * 
+	 * @param index: the index plus one, 0 for null
+	 * @return the string
+	 */
+	private String string(long index) {
+
+		return index == 0 ? null : this.strings[(int) index - 1];
+	}
+
+	/**
+	 * Get an encoded margin as written in the script
+	 * 
+	 * @param encoded: the value, or the index of a margin kept as written, see
+	 *            <code>SubtitleCodec</code>
+	 * @return the margin
+	 */
+	private String margin(long encoded) {
+
+		return (encoded & 1) == 0 ? Long.toString(SubtitleCodec.unzigzag(encoded >>> 1)) : string(encoded >>> 1);
+	}
+
+	private static ScriptInfo copy(ScriptInfo info) {
+
+		ScriptInfo copy = new ScriptInfo();
+		SubtitleCodec.setScriptInfoStrings(copy, SubtitleCodec.scriptInfoStrings(info));
+		copy.setCollisions(info.getCollisions());
+		copy.setPlayResY(info.getPlayResY());
+		copy.setPlayResX(info.getPlayResX());
+		copy.setPlayDepth(info.getPlayDepth());
+		copy.setTimer(info.getTimer());
+		return copy;
+	}
+
+	private static V4Style copy(V4Style style) {
+
+		V4Style copy = new V4Style();
+		copy.setName(style.getName());
+		copy.setFontname(style.getFontname());
+		SubtitleCodec.setStyleValues(copy, SubtitleCodec.styleValues(style));
+		copy.setBold(style.isBold());
+		copy.setItalic(style.isItalic());
+		copy.setUnderline(style.isUnderline());
+		copy.setStrikeOut(style.isStrikeOut());
+		copy.setAngle(style.getAngle());
+		return copy;
+	}
+
+	/**
+	 * Cursor reading the buffer with absolute gets
+	 */
+	private final class Input {
+
+		private int position;
+
+		Input(int position) {
+
+			this.position = position;
+		}
+
+		int readByte() {
+
+			return CompiledSubtitle.this.buffer.get(this.position++);
+		}
+
+		long readLong() {
+
+			long value = CompiledSubtitle.this.buffer.getLong(this.position);
+			this.position += 8;
+			return value;
+		}
+
+		long readVarLong() {
+
+			long value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = CompiledSubtitle.this.buffer.get(this.position++);
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+
+		String readString() {
+
+			int length = (int) readVarLong() - 1;
+			if (length < 0) {
+				return null;
+			}
+			String string = decode(CompiledSubtitle.this.buffer, this.position, length);
+			this.position += length;
+			return string;
+		}
+
+		/**
+		 * Skip a string
+		 * 
+		 * @return the offset of the string, its length prefix included
+		 */
+		int skipString() {
+
+			int offset = this.position;
+			int length = (int) readVarLong() - 1;
+			this.position += Math.max(0, length);
+			return offset;
+		}
+	}
+
+	/**
+	 * Decode UTF-8 bytes of a buffer
+	 * 
+	 * @param buffer: the buffer
+	 * @param offset: the offset of the bytes
+	 * @param length: the number of bytes
+	 * @return the string
+	 */
+	private static String decode(ByteBuffer buffer, int offset, int length) {
+
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reader of the lines from a position, in the order of the subtitle
+	 */
+	private final class Reader implements SubtitleReader<TimedLine> {
+
+		private final Input in;
+
+		/**
+		 * Index of the next line
+		 */
+		private int index;
+
+		private long previousStart;
+
+		private int previousId;
+
+		Reader(int offset, int index, long previousStart, int previousId) {
+
+			this.in = new Input(offset);
+			this.index = index;
+			this.previousStart = previousStart;
+			this.previousId = previousId;
+		}
+
+		@Override
+		public TimedLine next() {
+
+			if (this.index >= CompiledSubtitle.this.size) {
+				return null;
+			}
+			this.index++;
+
+			if (CompiledSubtitle.this.ass) {
+				int layer = (int) SubtitleCodec.unzigzag(this.in.readVarLong());
+				String style = string(this.in.readVarLong());
+				String name = string(this.in.readVarLong());
+				String effect = string(this.in.readVarLong());
+				long marginL = this.in.readVarLong();
+				long marginR = this.in.readVarLong();
+				long marginV = this.in.readVarLong();
+
+				long start = readStart();
+				long end = start + SubtitleCodec.unzigzag(this.in.readVarLong());
+				Events event = new Events(style, new ASSTime(start, end), readText());
+				event.setLayer(layer);
+				event.setName(name);
+				event.setEffect(effect);
+				if (((marginL | marginR | marginV) & 1) == 0) {
+					event.setMarginLValue((int) SubtitleCodec.unzigzag(marginL >>> 1));
+					event.setMarginRValue((int) SubtitleCodec.unzigzag(marginR >>> 1));
+					event.setMarginVValue((int) SubtitleCodec.unzigzag(marginV >>> 1));
+				} else {
+					event.setMarginL(margin(marginL));
+					event.setMarginR(margin(marginR));
+					event.setMarginV(margin(marginV));
+				}
+				return event;
+			}
+
+			int id = (int) (this.previousId + 1 + SubtitleCodec.unzigzag(this.in.readVarLong()));
+			this.previousId = id;
+			long start = readStart();
+			long end = start + SubtitleCodec.unzigzag(this.in.readVarLong());
+			return new SRTLine(id, new SRTTime(start, end), readText());
+		}
+
+		@Override
+		public void close() {
+
+			// Nothing to release, the buffer belongs to the compiled subtitle
+		}
+
+		/**
+		 * Skip the lines until the first one starting at or after a time
+		 * 
+		 * @param time: the time
+		 */
+		void skipBefore(long time) {
+
+			while (this.index < CompiledSubtitle.this.size) {
+				int offset = this.in.position;
+				int index = this.index;
+				long previousStart = this.previousStart;
+				int previousId = this.previousId;
+
+				TimedLine line = next();
+				if (line.getTime().getStartMillis() >= time) {
+					// Back to the line
+					this.in.position = offset;
+					this.index = index;
+					this.previousStart = previousStart;
+					this.previousId = previousId;
+					return;
+				}
+			}
+		}
+
+		private long readStart() {
+
+			long start = this.previousStart + SubtitleCodec.unzigzag(this.in.readVarLong());
+			this.previousStart = start;
+			return start;
+		}
+
+		/**
+		 * Skip the text lines of a line, they are decoded when they are read
+		 * 
+		 * @return the text lines
+		 */
+		private List<String> readText() {
+
+			int count = (int) this.in.readVarLong();
+			if (count == 0) {
+				return new ArrayList<>();
+			}
+			int offset = this.in.position;
+			for (int i = 0; i < count; i++) {
+				this.in.skipString();
+			}
+			return new Text(CompiledSubtitle.this, offset, count);
+		}
+	}
+
+	/**
+	 * Text lines of a line, decoded from the buffer when they are read
+	 */
+	private static final class Text extends LazyTextLines {
+
+		private static final long serialVersionUID = 4425829162207938551L;
+
+		private final transient CompiledSubtitle compiled;
+
+		/**
+		 * Offset of the first text line
+		 */
+		private final int offset;
+
+		private final int count;
+
+		Text(CompiledSubtitle compiled, int offset, int count) {
+
+			this.compiled = compiled;
+			this.offset = offset;
+			this.count = count;
+		}
+
+		@Override
+		protected int lineCount() {
+
+			return this.count;
+		}
+
+		@Override
+		protected String line(int index) {
+
+			Input in = this.compiled.new Input(this.offset);
+			for (int i = 0; i < index; i++) {
+				in.skipString();
+			}
+			return in.readString();
+		}
+	}
+
+}
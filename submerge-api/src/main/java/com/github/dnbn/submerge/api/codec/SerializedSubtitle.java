@@ -0,0 +1,43 @@
+package com.github.dnbn.submerge.api.codec;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Serialized form of the SRT and ASS subtitles: the subtitle encoded by
+ * <code>SubtitleCodec</code>, far smaller and faster to write than the object graph. The
+ * subtitle is decoded when it is read back.
+ */
+public final class SerializedSubtitle implements Serializable {
+
+	private static final long serialVersionUID = -6181548735407283305L;
+
+	/**
+	 * The encoded subtitle
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param sub: the subtitle to serialize
+	 */
+	public SerializedSubtitle(TimedTextFile sub) {
+
+		this.bytes = SubtitleCodec.encode(sub);
+	}
+
+	/**
+	 * Decode the subtitle once deserialized
+	 * 
+	 * @return the subtitle
+	 * @throws ObjectStreamException
+	 */
+	private Object readResolve() throws ObjectStreamException {
+
+		return SubtitleCodec.decode(this.bytes);
+	}
+
+}
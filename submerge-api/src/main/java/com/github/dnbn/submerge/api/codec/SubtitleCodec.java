@@ -0,0 +1,603 @@
+package com.github.dnbn.submerge.api.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+import com.github.dnbn.submerge.api.subtitle.ass.ScriptInfo;
+import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+
+/**
+ * Compact binary format of the SRT and ASS subtitles, faster and smaller than the Java
+ * serialization and stable across versions of the model.
+ * 
+ * <pre>
+ * byte[] bytes = SubtitleCodec.encode(subtitle);
+ * TimedTextFile copy = SubtitleCodec.decode(bytes);
+ * CompiledSubtitle compiled = CompiledSubtitle.of(ByteBuffer.wrap(bytes));
+ * </pre>
+ * 
+ * The format starts with a magic number, a version and the type of subtitle, flagged when
+ * the lines that compare equal are all kept (see <code>TimedLineSet</code>), then a table
+ * of the strings that repeat (style names, character names, effects, fonts and script
+ * info). Each line follows: its timecodes are varints, the start as a delta from the
+ * previous start and the end as a delta from the start, and its text lines are UTF-8
+ * blocks. A seek table ends the file: it maps buckets of time to the first line starting
+ * in each bucket, so that a <code>CompiledSubtitle</code> can start reading anywhere.
+ */
+public final class SubtitleCodec {
+
+	/**
+	 * Version of the format, increased when the format changes
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * "SUBC", first and last 4 bytes of the format
+	 */
+	static final int MAGIC = 0x53554243;
+
+	static final byte TYPE_SRT = 1;
+
+	static final byte TYPE_ASS = 2;
+
+	/**
+	 * Flag of the type: the lines that compare equal are all kept
+	 */
+	static final byte KEEP_DUPLICATES = 0x10;
+
+	/**
+	 * Offset of the seek table followed by the magic number
+	 */
+	static final int TRAILER_SIZE = 8;
+
+	/**
+	 * Size of an entry of the seek table: line index, line offset, previous start and
+	 * previous id
+	 */
+	static final int SEEK_ENTRY_SIZE = 20;
+
+	/**
+	 * Number of lines aimed at in a bucket of the seek table
+	 */
+	private static final int LINES_PER_BUCKET = 16;
+
+	/**
+	 * Minimum duration of a bucket of the seek table, in milliseconds
+	 */
+	private static final int MIN_BUCKET_MILLIS = 1000;
+
+	/**
+	 * Encode a subtitle
+	 * 
+	 * @param sub: a SRT or ASS subtitle
+	 * @return the bytes
+	 * @throws IllegalArgumentException if the subtitle is of another type
+	 */
+	public static byte[] encode(TimedTextFile sub) {
+
+		return new Encoder(sub).encode().toByteArray();
+	}
+
+	/**
+	 * Encode a subtitle to a stream
+	 * 
+	 * @param sub: a SRT or ASS subtitle
+	 * @param os: the output stream, not closed
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the subtitle is of another type
+	 */
+	public static void encode(TimedTextFile sub, OutputStream os) throws IOException {
+
+		new Encoder(sub).encode().writeTo(os);
+	}
+
+	/**
+	 * Decode a subtitle, its text lines are decoded when they are read
+	 * 
+	 * @param bytes: the bytes of an encoded subtitle
+	 * @return a <code>SRTSub</code> or an <code>ASSSub</code>
+	 * @throws InvalidSubException if the bytes are not an encoded subtitle
+	 */
+	public static TimedTextFile decode(byte[] bytes) {
+
+		return CompiledSubtitle.of(ByteBuffer.wrap(bytes)).toSubtitle();
+	}
+
+	/**
+	 * Encode a signed value so that small negative values are small varints
+	 * 
+	 * @param value: the value
+	 * @return the zigzag encoded value
+	 */
+	static long zigzag(long value) {
+
+		return value << 1 ^ value >> 63;
+	}
+
+	/**
+	 * Decode a zigzag encoded value
+	 * 
+	 * @param value: the zigzag encoded value
+	 * @return the value
+	 */
+	static long unzigzag(long value) {
+
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	/**
+	 * Encoder of a subtitle
+	 */
+	private static final class Encoder {
+
+		private final TimedTextFile sub;
+
+		private final Output out = new Output();
+
+		/**
+		 * Index of each string of the table
+		 */
+		private final Map<String, Integer> indexes = new HashMap<>();
+
+		private final List<String> strings = new ArrayList<>();
+
+		Encoder(TimedTextFile sub) {
+
+			if (!(sub instanceof SRTSub) && !(sub instanceof ASSSub)) {
+				throw new IllegalArgumentException("Unsupported subtitle: " + sub.getClass().getName());
+			}
+			this.sub = sub;
+		}
+
+		/**
+		 * Encode the subtitle
+		 * 
+		 * @return the output
+		 */
+		Output encode() {
+
+			boolean ass = this.sub instanceof ASSSub;
+			List<TimedLine> lines = new ArrayList<>(this.sub.getTimedLines());
+
+			// The table is written before the lines, its strings are collected first
+			if (ass) {
+				collect((ASSSub) this.sub);
+			}
+
+			long maxDuration = 0;
+			for (TimedLine line : lines) {
+				maxDuration = Math.max(maxDuration, line.getTime().getEndMillis() - line.getTime().getStartMillis());
+			}
+
+			this.out.writeInt(MAGIC);
+			this.out.writeByte(VERSION);
+			boolean keepDuplicates = TimedLineSet.emptyLike(this.sub.getTimedLines()).isKeepDuplicates();
+			this.out.writeByte((ass ? TYPE_ASS : TYPE_SRT) | (keepDuplicates ? KEEP_DUPLICATES : 0));
+			this.out.writeString(this.sub.getFileName());
+			this.out.writeVarLong(lines.size());
+			this.out.writeVarLong(maxDuration);
+
+			this.out.writeVarLong(this.strings.size());
+			for (String string : this.strings) {
+				this.out.writeString(string);
+			}
+
+			if (ass) {
+				writeHeader((ASSSub) this.sub);
+			}
+
+			SeekTable seekTable = new SeekTable(lines);
+			long previousStart = 0;
+			int previousId = 0;
+			for (int i = 0; i < lines.size(); i++) {
+				TimedLine line = lines.get(i);
+				seekTable.add(i, this.out.size(), previousStart, previousId);
+
+				if (ass) {
+					writeEvent((Events) line);
+				} else {
+					int id = ((SRTLine) line).getId();
+					this.out.writeVarLong(zigzag((long) id - previousId - 1));
+					previousId = id;
+				}
+
+				long start = line.getTime().getStartMillis();
+				this.out.writeVarLong(zigzag(start - previousStart));
+				this.out.writeVarLong(zigzag(line.getTime().getEndMillis() - start));
+				previousStart = start;
+
+				List<String> textLines = line.getTextLines();
+				this.out.writeVarLong(textLines.size());
+				for (int t = 0; t < textLines.size(); t++) {
+					this.out.writeString(textLines.get(t));
+				}
+			}
+
+			int seekOffset = this.out.size();
+			seekTable.writeTo(this.out);
+			this.out.writeInt(seekOffset);
+			this.out.writeInt(MAGIC);
+			return this.out;
+		}
+
+		/**
+		 * Collect the strings of the table
+		 * 
+		 * @param ass: the subtitle
+		 */
+		private void collect(ASSSub ass) {
+
+			ScriptInfo info = ass.getScriptInfo();
+			for (String string : scriptInfoStrings(info)) {
+				index(string);
+			}
+			for (V4Style style : ass.getStyle()) {
+				index(style.getName());
+				index(style.getFontname());
+			}
+			for (Events event : ass.getEvents()) {
+				index(event.getStyle());
+				index(event.getName());
+				index(event.getEffect());
+				for (int margin = Events.MARGIN_L; margin <= Events.MARGIN_V; margin++) {
+					index(event.getRawMargin(margin));
+				}
+			}
+		}
+
+		/**
+		 * Write the script info and the styles
+		 * 
+		 * @param ass: the subtitle
+		 */
+		private void writeHeader(ASSSub ass) {
+
+			ScriptInfo info = ass.getScriptInfo();
+			for (String string : scriptInfoStrings(info)) {
+				this.out.writeVarLong(index(string));
+			}
+			this.out.writeVarLong(info.getCollisions() == null ? 0 : info.getCollisions().ordinal() + 1);
+			this.out.writeVarLong(zigzag(info.getPlayResY()));
+			this.out.writeVarLong(zigzag(info.getPlayResX()));
+			this.out.writeVarLong(zigzag(info.getPlayDepth()));
+			this.out.writeLong(Double.doubleToRawLongBits(info.getTimer()));
+
+			this.out.writeVarLong(ass.getStyle().size());
+			for (V4Style style : ass.getStyle()) {
+				this.out.writeVarLong(index(style.getName()));
+				this.out.writeVarLong(index(style.getFontname()));
+				for (int value : styleValues(style)) {
+					this.out.writeVarLong(zigzag(value));
+				}
+				this.out.writeByte((style.isBold() ? 1 : 0) | (style.isItalic() ? 2 : 0)
+						| (style.isUnderline() ? 4 : 0) | (style.isStrikeOut() ? 8 : 0));
+				this.out.writeLong(Double.doubleToRawLongBits(style.getAngle()));
+			}
+		}
+
+		/**
+		 * Write the values of an event before its timecodes
+		 * 
+		 * @param event: the event
+		 */
+		private void writeEvent(Events event) {
+
+			this.out.writeVarLong(zigzag(event.getLayer()));
+			this.out.writeVarLong(index(event.getStyle()));
+			this.out.writeVarLong(index(event.getName()));
+			this.out.writeVarLong(index(event.getEffect()));
+			writeMargin(event.getMarginLValue(), event.getRawMargin(Events.MARGIN_L));
+			writeMargin(event.getMarginRValue(), event.getRawMargin(Events.MARGIN_R));
+			writeMargin(event.getMarginVValue(), event.getRawMargin(Events.MARGIN_V));
+		}
+
+		/**
+		 * Write a margin: the zigzag value shifted left, or the index of a margin kept as
+		 * written shifted left with the low bit set
+		 * 
+		 * @param margin: the margin
+		 * @param raw: the margin as written, null if it is an integer
+		 */
+		private void writeMargin(int margin, String raw) {
+
+			this.out.writeVarLong(raw == null ? zigzag(margin) << 1 : (long) index(raw) << 1 | 1);
+		}
+
+		/**
+		 * Get the index of a string in the table, adding it if needed
+		 * 
+		 * @param string: the string
+		 * @return the index plus one, 0 for null
+		 */
+		private int index(String string) {
+
+			if (string == null) {
+				return 0;
+			}
+			Integer index = this.indexes.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.add(string);
+				this.indexes.put(string, index);
+			}
+			return index + 1;
+		}
+	}
+
+	/**
+	 * Get the strings of a script info, in the order of the format
+	 * 
+	 * @param info: the script info
+	 * @return the strings
+	 */
+	static String[] scriptInfoStrings(ScriptInfo info) {
+
+		return new String[] { info.getTitle(), info.getOriginalScript(), info.getOriginalTranslation(),
+				info.getOriginalEditing(), info.getOriginalTiming(), info.getSynchPoint(),
+				info.getOriginalScriptChecking(), info.getScriptUpdatedBy(), info.getUserDetails(),
+				info.getScriptType() };
+	}
+
+	/**
+	 * Set the strings of a script info, in the order of the format
+	 * 
+	 * @param info: the script info
+	 * @param strings: the strings
+	 */
+	static void setScriptInfoStrings(ScriptInfo info, String[] strings) {
+
+		info.setTitle(strings[0]);
+		info.setOriginalScript(strings[1]);
+		info.setOriginalTranslation(strings[2]);
+		info.setOriginalEditing(strings[3]);
+		info.setOriginalTiming(strings[4]);
+		info.setSynchPoint(strings[5]);
+		info.setOriginalScriptChecking(strings[6]);
+		info.setScriptUpdatedBy(strings[7]);
+		info.setUserDetails(strings[8]);
+		info.setScriptType(strings[9]);
+	}
+
+	/**
+	 * Get the int values of a style, in the order of the format
+	 * 
+	 * @param style: the style
+	 * @return the values
+	 */
+	static int[] styleValues(V4Style style) {
+
+		return new int[] { style.getFontsize(), style.getPrimaryColour(), style.getSecondaryColour(),
+				style.getOutlineColour(), style.getBackColour(), style.getScaleX(), style.getScaleY(),
+				style.getSpacing(), style.getBorderStyle(), style.getOutline(), style.getShadow(),
+				style.getAlignment(), style.getMarginL(), style.getMarginR(), style.getMarginV(),
+				style.getEncoding() };
+	}
+
+	/**
+	 * Set the int values of a style, in the order of the format
+	 * 
+	 * @param style: the style
+	 * @param values: the values
+	 */
+	static void setStyleValues(V4Style style, int[] values) {
+
+		style.setFontsize(values[0]);
+		style.setPrimaryColour(values[1]);
+		style.setSecondaryColour(values[2]);
+		style.setOutlineColour(values[3]);
+		style.setBackColour(values[4]);
+		style.setScaleX(values[5]);
+		style.setScaleY(values[6]);
+		style.setSpacing(values[7]);
+		style.setBorderStyle(values[8]);
+		style.setOutline(values[9]);
+		style.setShadow(values[10]);
+		style.setAlignment(values[11]);
+		style.setMarginL(values[12]);
+		style.setMarginR(values[13]);
+		style.setMarginV(values[14]);
+		style.setEncoding(values[15]);
+	}
+
+	/**
+	 * Seek table: the lines are split in buckets of time from the start of the first line,
+	 * each bucket points to the first line starting in or after it. The table is empty if
+	 * the lines are not sorted by start time.
+	 */
+	private static final class SeekTable {
+
+		private final long origin;
+
+		private final int bucketMillis;
+
+		/**
+		 * Start time of each line
+		 */
+		private final long[] starts;
+
+		/**
+		 * Entries in the order of the lines: index, offset, previous start and previous id
+		 */
+		private final int[] lineIndexes;
+
+		private final int[] offsets;
+
+		private final long[] previousStarts;
+
+		private final int[] previousIds;
+
+		SeekTable(List<TimedLine> lines) {
+
+			int size = lines.size();
+			this.starts = new long[size];
+			boolean sorted = true;
+			for (int i = 0; i < size; i++) {
+				this.starts[i] = lines.get(i).getTime().getStartMillis();
+				sorted &= i == 0 || this.starts[i] >= this.starts[i - 1];
+			}
+
+			long span = size == 0 || !sorted ? 0 : this.starts[size - 1] - this.starts[0];
+			this.origin = size == 0 ? 0 : this.starts[0];
+			this.bucketMillis = (int) Math.min(Integer.MAX_VALUE,
+					Math.max(MIN_BUCKET_MILLIS, span * LINES_PER_BUCKET / Math.max(1, size)));
+
+			int bucketCount = sorted && size > 0 ? (int) (span / this.bucketMillis) + 1 : 0;
+			this.lineIndexes = new int[bucketCount];
+			this.offsets = new int[bucketCount];
+			this.previousStarts = new long[bucketCount];
+			this.previousIds = new int[bucketCount];
+			Arrays.fill(this.lineIndexes, -1);
+		}
+
+		/**
+		 * Record the position of a line in the buckets it is the first of
+		 * 
+		 * @param index: the index of the line
+		 * @param offset: the offset of the line
+		 * @param previousStart: the start of the previous line
+		 * @param previousId: the id of the previous line
+		 */
+		void add(int index, int offset, long previousStart, int previousId) {
+
+			if (this.lineIndexes.length == 0) {
+				return;
+			}
+			int last = (int) ((this.starts[index] - this.origin) / this.bucketMillis);
+			for (int bucket = last; bucket >= 0 && this.lineIndexes[bucket] < 0; bucket--) {
+				this.lineIndexes[bucket] = index;
+				this.offsets[bucket] = offset;
+				this.previousStarts[bucket] = previousStart;
+				this.previousIds[bucket] = previousId;
+			}
+		}
+
+		/**
+		 * Write the table
+		 * 
+		 * @param out: the output
+		 */
+		void writeTo(Output out) {
+
+			out.writeLong(this.origin);
+			out.writeInt(this.bucketMillis);
+			out.writeInt(this.lineIndexes.length);
+			for (int i = 0; i < this.lineIndexes.length; i++) {
+				out.writeInt(this.lineIndexes[i]);
+				out.writeInt(this.offsets[i]);
+				out.writeLong(this.previousStarts[i]);
+				out.writeInt(this.previousIds[i]);
+			}
+		}
+	}
+
+	/**
+	 * Growable array of bytes, the fixed size values are big-endian as in a
+	 * <code>ByteBuffer</code>
+	 */
+	private static final class Output {
+
+		private byte[] bytes = new byte[4096];
+
+		private int size;
+
+		int size() {
+
+			return this.size;
+		}
+
+		void writeByte(int value) {
+
+			ensureCapacity(1);
+			this.bytes[this.size++] = (byte) value;
+		}
+
+		void writeInt(int value) {
+
+			ensureCapacity(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				this.bytes[this.size++] = (byte) (value >>> shift);
+			}
+		}
+
+		void writeLong(long value) {
+
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		/**
+		 * Write an unsigned varint, 7 bits per byte, lowest bits first
+		 * 
+		 * @param value: the value, written as unsigned
+		 */
+		void writeVarLong(long value) {
+
+			ensureCapacity(10);
+			long v = value;
+			while ((v & ~0x7FL) != 0) {
+				this.bytes[this.size++] = (byte) (v & 0x7F | 0x80);
+				v >>>= 7;
+			}
+			this.bytes[this.size++] = (byte) v;
+		}
+
+		/**
+		 * Write a string as its UTF-8 length plus one, 0 for null, then its UTF-8 bytes
+		 * 
+		 * @param string: the string
+		 */
+		void writeString(String string) {
+
+			if (string == null) {
+				writeVarLong(0);
+				return;
+			}
+			byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(utf8.length + 1L);
+			ensureCapacity(utf8.length);
+			System.arraycopy(utf8, 0, this.bytes, this.size, utf8.length);
+			this.size += utf8.length;
+		}
+
+		byte[] toByteArray() {
+
+			return Arrays.copyOf(this.bytes, this.size);
+		}
+
+		void writeTo(OutputStream os) throws IOException {
+
+			os.write(this.bytes, 0, this.size);
+		}
+
+		private void ensureCapacity(int count) {
+
+			if (this.size + count > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + count));
+			}
+		}
+	}
+
+	/**
+	 * Private constructor
+	 */
+	private SubtitleCodec() {
+
+		throw new AssertionError();
+	}
+
+}
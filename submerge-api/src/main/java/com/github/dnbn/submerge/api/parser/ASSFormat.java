@@ -0,0 +1,672 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+import com.github.dnbn.submerge.api.parser.exception.InvalidAssSubException;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+import com.github.dnbn.submerge.api.subtitle.ass.ScriptInfo;
+import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
+import com.github.dnbn.submerge.api.subtitle.common.LazyTextLines;
+import com.github.dnbn.submerge.api.subtitle.common.TextArena;
+import com.github.dnbn.submerge.api.utils.ColorUtils;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
+
+/**
+ * A 'Format:' line compiled into a table of setters, one per column. The format is
+ * resolved once per section, so that the lines of the section are bound without any
+ * lookup. Instances are immutable and can be shared between threads.
+ * 
+ * @param <T> the type of object described by the format
+ */
+final class ASSFormat<T> {
+
+	/**
+	 * Returned by parseInt when the value is not an integer
+	 */
+	private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+	/**
+	 * Line break in the text field
+	 */
+	private static final String ESCAPED_RETURN = "\\N";
+
+	/**
+	 * Setters of the events fields, by property name
+	 */
+	private static final Map<String, FieldSetter<Events>> EVENTS_FIELDS = new HashMap<>();
+
+	/**
+	 * Setters of the style fields, by property name
+	 */
+	private static final Map<String, FieldSetter<V4Style>> STYLE_FIELDS = new HashMap<>();
+
+	/**
+	 * Setters of the script info fields, by property name
+	 */
+	private static final Map<String, FieldSetter<ScriptInfo>> SCRIPT_INFO_FIELDS = new HashMap<>();
+
+	static {
+		EVENTS_FIELDS.put("layer", integer(Events::setLayer));
+		EVENTS_FIELDS.put("start", time("start", (e, millis) -> e.getTime().setStartMillis(millis)));
+		EVENTS_FIELDS.put("end", time("end", (e, millis) -> e.getTime().setEndMillis(millis)));
+		EVENTS_FIELDS.put("style", string(Events::setStyle));
+		EVENTS_FIELDS.put("name", string(Events::setName));
+		EVENTS_FIELDS.put("marginL", margin(Events::setMarginLValue, Events::setMarginL));
+		EVENTS_FIELDS.put("marginR", margin(Events::setMarginRValue, Events::setMarginR));
+		EVENTS_FIELDS.put("marginV", margin(Events::setMarginVValue, Events::setMarginV));
+		EVENTS_FIELDS.put("effect", string(Events::setEffect));
+		EVENTS_FIELDS.put("text", (TextSetter<Events>) ASSFormat::setText);
+
+		STYLE_FIELDS.put("name", string(V4Style::setName));
+		STYLE_FIELDS.put("fontname", string(V4Style::setFontname));
+		STYLE_FIELDS.put("fontsize", integer(V4Style::setFontsize));
+		STYLE_FIELDS.put("primaryColour", colour(V4Style::setPrimaryColour));
+		STYLE_FIELDS.put("secondaryColour", colour(V4Style::setSecondaryColour));
+		STYLE_FIELDS.put("outlineColour", colour(V4Style::setOutlineColour));
+		STYLE_FIELDS.put("backColour", colour(V4Style::setBackColour));
+		STYLE_FIELDS.put("bold", (s, l, b, n) -> s.setBold(toBoolean(l, b, n)));
+		STYLE_FIELDS.put("italic", (s, l, b, n) -> s.setItalic(toBoolean(l, b, n)));
+		STYLE_FIELDS.put("underline", (s, l, b, n) -> s.setUnderline(toBoolean(l, b, n)));
+		STYLE_FIELDS.put("strikeOut", (s, l, b, n) -> s.setStrikeOut(toBoolean(l, b, n)));
+		STYLE_FIELDS.put("scaleX", integer(V4Style::setScaleX));
+		STYLE_FIELDS.put("scaleY", integer(V4Style::setScaleY));
+		STYLE_FIELDS.put("spacing", integer(V4Style::setSpacing));
+		STYLE_FIELDS.put("angle", decimal(V4Style::setAngle));
+		STYLE_FIELDS.put("borderStyle", integer(V4Style::setBorderStyle));
+		STYLE_FIELDS.put("outline", integer(V4Style::setOutline));
+		STYLE_FIELDS.put("shadow", integer(V4Style::setShadow));
+		STYLE_FIELDS.put("alignment", integer(V4Style::setAlignment));
+		STYLE_FIELDS.put("marginL", integer(V4Style::setMarginL));
+		STYLE_FIELDS.put("marginR", integer(V4Style::setMarginR));
+		STYLE_FIELDS.put("marginV", integer(V4Style::setMarginV));
+		STYLE_FIELDS.put("encoding", integer(V4Style::setEncoding));
+
+		SCRIPT_INFO_FIELDS.put("title", string(ScriptInfo::setTitle));
+		SCRIPT_INFO_FIELDS.put("originalScript", string(ScriptInfo::setOriginalScript));
+		SCRIPT_INFO_FIELDS.put("originalTranslation", string(ScriptInfo::setOriginalTranslation));
+		SCRIPT_INFO_FIELDS.put("originalEditing", string(ScriptInfo::setOriginalEditing));
+		SCRIPT_INFO_FIELDS.put("originalTiming", string(ScriptInfo::setOriginalTiming));
+		SCRIPT_INFO_FIELDS.put("synchPoint", string(ScriptInfo::setSynchPoint));
+		SCRIPT_INFO_FIELDS.put("originalScriptChecking", string(ScriptInfo::setOriginalScriptChecking));
+		SCRIPT_INFO_FIELDS.put("scriptUpdatedBy", string(ScriptInfo::setScriptUpdatedBy));
+		SCRIPT_INFO_FIELDS.put("userDetails", string(ScriptInfo::setUserDetails));
+		SCRIPT_INFO_FIELDS.put("scriptType", string(ScriptInfo::setScriptType));
+		SCRIPT_INFO_FIELDS.put("playResX", integer(ScriptInfo::setPlayResX));
+		SCRIPT_INFO_FIELDS.put("playResY", integer(ScriptInfo::setPlayResY));
+		SCRIPT_INFO_FIELDS.put("playDepth", integer(ScriptInfo::setPlayDepth));
+		SCRIPT_INFO_FIELDS.put("timer", decimal(ScriptInfo::setTimer));
+	}
+
+	/**
+	 * Setter of each column, null if the column is not supported
+	 */
+	private final FieldSetter<T>[] setters;
+
+	/**
+	 * Options of the parse, for the storage of the text values. Null to create a string
+	 * for each value.
+	 */
+	private final ParseOptions options;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param format: the columns of the format line
+	 * @param fields: the supported fields
+	 * @param options: the parse options, can be null
+	 */
+	@SuppressWarnings("unchecked")
+	private ASSFormat(String[] format, Map<String, FieldSetter<T>> fields, ParseOptions options) {
+
+		this.options = options;
+		this.setters = (FieldSetter<T>[]) new FieldSetter<?>[format.length];
+		for (int i = 0; i < format.length; i++) {
+			this.setters[i] = fields.get(StringUtils.uncapitalize(format[i].trim()));
+		}
+	}
+
+	/**
+	 * Compile the format line of an events section
+	 * 
+	 * @param format: the columns of the format line
+	 * @param options: the parse options, for the storage of the text values
+	 * @return the compiled format
+	 */
+	static ASSFormat<Events> events(String[] format, ParseOptions options) {
+
+		return new ASSFormat<>(format, EVENTS_FIELDS, options);
+	}
+
+	/**
+	 * Compile the format line of a styles section
+	 * 
+	 * @param format: the columns of the format line
+	 * @return the compiled format
+	 */
+	static ASSFormat<V4Style> styles(String[] format) {
+
+		return new ASSFormat<>(format, STYLE_FIELDS, null);
+	}
+
+	/**
+	 * Set a property of the script info, unknown properties are ignored
+	 * 
+	 * @param scriptInfo: the script info
+	 * @param property: the property name
+	 * @param value: the value
+	 * @throws InvalidAssSubException
+	 */
+	static void setScriptInfo(ScriptInfo scriptInfo, String property, String value)
+			throws InvalidAssSubException {
+
+		FieldSetter<ScriptInfo> setter = SCRIPT_INFO_FIELDS.get(property);
+		if (setter != null) {
+			setter.set(scriptInfo, value, 0, value.length());
+		}
+	}
+
+	/**
+	 * Get the number of columns
+	 * 
+	 * @return the number of columns
+	 */
+	int size() {
+
+		return this.setters.length;
+	}
+
+	/**
+	 * Set the value of a column from a slice of a line, unsupported columns are ignored.
+	 * The value is trimmed.
+	 * 
+	 * @param object: the object to fill
+	 * @param column: the column index
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @throws InvalidAssSubException
+	 */
+	void set(T object, int column, String line, int begin, int end) throws InvalidAssSubException {
+
+		FieldSetter<T> setter = this.setters[column];
+		if (setter != null) {
+			while (begin < end && line.charAt(begin) <= ' ') {
+				begin++;
+			}
+			while (end > begin && line.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			if (setter instanceof TextSetter) {
+				((TextSetter<T>) setter).set(object, line, begin, end, this.options);
+			} else {
+				setter.set(object, line, begin, end);
+			}
+		}
+	}
+
+	/**
+	 * Check that the value of a column can be set without error: only the time values can
+	 * be invalid
+	 * 
+	 * @param column: the column index
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return true if the value is valid
+	 */
+	boolean isValid(int column, String line, int begin, int end) {
+
+		return !(this.setters[column] instanceof TimeSetter) || TimecodeUtils.tryParseMillis(line, begin, end) >= 0;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Setter of a String field
+	 * 
+	 * @param setter: the bean setter
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> string(BiConsumer<T, String> setter) {
+
+		return (TextSetter<T>) (object, line, begin, end, options) -> {
+			TextArena arena = options == null || options.getTextMode() != TextMode.FULL ? null
+					: options.getTextArena();
+			setter.accept(object, arena == null ? line.substring(begin, end) : arena.intern(line, begin, end));
+		};
+	}
+
+	/**
+	 * Setter of an int field
+	 * 
+	 * @param setter: the bean setter
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> integer(ObjIntConsumer<T> setter) {
+
+		return (object, line, begin, end) -> setter.accept(object, toInt(line, begin, end));
+	}
+
+	/**
+	 * Setter of a margin field, a value that is not an integer is kept as written
+	 * 
+	 * @param setter: the bean setter of the int value
+	 * @param rawSetter: the bean setter of the value as written
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> margin(ObjIntConsumer<T> setter, BiConsumer<T, String> rawSetter) {
+
+		return (object, line, begin, end) -> {
+			long parsed = parseInt(line, begin, end);
+			if (parsed == NOT_AN_INT) {
+				rawSetter.accept(object, line.substring(begin, end));
+			} else {
+				setter.accept(object, (int) parsed);
+			}
+		};
+	}
+
+	/**
+	 * Setter of a colour field
+	 * 
+	 * @param setter: the bean setter
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> colour(ObjIntConsumer<T> setter) {
+
+		return (object, line, begin, end) -> setter.accept(object, toColour(line, begin, end));
+	}
+
+	/**
+	 * Setter of a double field
+	 * 
+	 * @param setter: the bean setter
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> decimal(ObjDoubleConsumer<T> setter) {
+
+		return (object, line, begin, end) -> setter.accept(object, toDouble(line, begin, end));
+	}
+
+	/**
+	 * Setter of a time field
+	 * 
+	 * @param property: the property name, for the error message
+	 * @param setter: the bean setter, taking milliseconds
+	 * @return the field setter
+	 */
+	private static <T> FieldSetter<T> time(String property, ObjLongConsumer<T> setter) {
+
+		return (TimeSetter<T>) (object, line, begin, end) -> setter.accept(object, toTime(property, line, begin, end));
+	}
+
+	/**
+	 * Parse a time value
+	 * 
+	 * @param property: the property name, for the error message
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the time in milliseconds
+	 * @throws InvalidAssSubException
+	 */
+	private static long toTime(String property, String line, int begin, int end) throws InvalidAssSubException {
+
+		try {
+			return TimecodeUtils.parseMillis(line, begin, end);
+		} catch (DateTimeException e) {
+			String value = line.substring(begin, end);
+			throw new InvalidAssSubException("Invalid time for property " + property + " : " + value);
+		}
+	}
+
+	/**
+	 * Set the text lines of an event, as the text mode of the parse requires
+	 * 
+	 * @param event: the event
+	 * @param line: the line holding the text
+	 * @param begin: the index of the first char of the text
+	 * @param end: the index after the last char of the text
+	 * @param options: the parse options, can be null
+	 */
+	private static void setText(Events event, String line, int begin, int end, ParseOptions options) {
+
+		TextMode mode = options == null ? TextMode.FULL : options.getTextMode();
+		if (mode == TextMode.LAZY) {
+			event.setTextLines(new EscapedTextLines(line, begin, end));
+		} else if (mode == TextMode.FULL) {
+			event.setTextLines(toTextLines(line, begin, end, options == null ? null : options.getTextArena()));
+		}
+	}
+
+	/**
+	 * Split the text field on the escaped line breaks, trailing empty lines are dropped
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @param arena: the storage of the text lines, null to create a string for each line
+	 * @return the text lines
+	 */
+	private static List<String> toTextLines(String line, int begin, int end, TextArena arena) {
+
+		// Index of the first char and index after the last char of each text line
+		int[] bounds = new int[4];
+		int count = 0;
+		int from = begin;
+		int found;
+		while ((found = nextBreak(line, from, end)) >= 0) {
+			bounds = addBounds(bounds, count++, from, found);
+			from = found + ESCAPED_RETURN.length();
+		}
+		boolean split = count > 0;
+		bounds = addBounds(bounds, count++, from, end);
+
+		while (split && count > 0 && bounds[2 * count - 2] == bounds[2 * count - 1]) {
+			count--;
+		}
+
+		if (arena != null) {
+			return arena.add(line, bounds, count);
+		}
+
+		List<String> textLines = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			textLines.add(line.substring(bounds[2 * i], bounds[2 * i + 1]));
+		}
+		return textLines;
+	}
+
+	/**
+	 * Find the next escaped line break of the text field
+	 * 
+	 * @param line: the line holding the value
+	 * @param from: the index to search from
+	 * @param end: the index after the last char of the value
+	 * @return the index of the line break, -1 if there is none
+	 */
+	private static int nextBreak(String line, int from, int end) {
+
+		int found = line.indexOf(ESCAPED_RETURN, from);
+		return found >= 0 && found + ESCAPED_RETURN.length() <= end ? found : -1;
+	}
+
+	/**
+	 * Add the bounds of a text line
+	 * 
+	 * @param bounds: the bounds of the lines, in pairs
+	 * @param index: the index of the line
+	 * @param begin: the index of the first char of the line
+	 * @param end: the index after the last char of the line
+	 * @return the bounds, grown if needed
+	 */
+	private static int[] addBounds(int[] bounds, int index, int begin, int end) {
+
+		if (2 * index + 1 >= bounds.length) {
+			bounds = Arrays.copyOf(bounds, bounds.length * 2);
+		}
+		bounds[2 * index] = begin;
+		bounds[2 * index + 1] = end;
+		return bounds;
+	}
+
+	/**
+	 * Convert a value to int
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the int value, 0 if the value is not an integer
+	 */
+	private static int toInt(String line, int begin, int end) {
+
+		long parsed = parseInt(line, begin, end);
+		return parsed == NOT_AN_INT ? 0 : (int) parsed;
+	}
+
+	/**
+	 * Convert a value to boolean, -1 is true
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the boolean value
+	 */
+	private static boolean toBoolean(String line, int begin, int end) {
+
+		return parseInt(line, begin, end) == -1;
+	}
+
+	/**
+	 * Convert a value to double, the decimal separator can be a comma
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the double value, 0 if the value is not a number
+	 */
+	private static double toDouble(String line, int begin, int end) {
+
+		return NumberUtils.toDouble(line.substring(begin, end).replace(',', '.'));
+	}
+
+	/**
+	 * Convert a colour, which can be a number (bgr) or a string (&HBBGGRR or &HAABBGGRR)
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the bgr code, 0 if the value is not a colour
+	 */
+	private static int toColour(String line, int begin, int end) {
+
+		long parsed = parseInt(line, begin, end);
+		if (parsed != NOT_AN_INT) {
+			return (int) parsed;
+		}
+
+		if (!isColourCode(line, begin, end)) {
+			return 0;
+		}
+
+		int length = end - begin;
+		int bgr = -1;
+		if (length == 10) {
+			// From ASS
+			bgr = ColorUtils.HAABBGGRRToBGR(line.substring(begin, end));
+		} else if (length == 8) {
+			// From SSA
+			bgr = ColorUtils.HBBGGRRToBGR(line.substring(begin, end));
+		}
+		return bgr == -1 ? 0 : bgr;
+	}
+
+	/**
+	 * Check the hexadecimal digits of a colour string read by <code>ColorUtils</code>: the
+	 * third, fifth and seventh chars, and the last two
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return true if the digits are valid
+	 */
+	private static boolean isColourCode(String line, int begin, int end) {
+
+		for (int i = begin + 2; i < end; i++) {
+			boolean read = i >= end - 2 || (i - begin) % 2 == 0 && i - begin <= 6;
+			if (read && Character.digit(line.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a signed decimal integer without throwing on invalid values
+	 * 
+	 * @param line: the line holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the integer, NOT_AN_INT if the value is not a valid int
+	 */
+	private static long parseInt(String line, int begin, int end) {
+
+		int i = begin;
+		boolean negative = false;
+
+		if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+			negative = line.charAt(i) == '-';
+			i++;
+		}
+
+		if (i == end) {
+			return NOT_AN_INT;
+		}
+
+		long result = 0;
+		for (; i < end; i++) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9') {
+				return NOT_AN_INT;
+			}
+			result = result * 10 + (c - '0');
+			if (result > -(long) Integer.MIN_VALUE) {
+				return NOT_AN_INT;
+			}
+		}
+
+		result = negative ? -result : result;
+		return result > Integer.MAX_VALUE ? NOT_AN_INT : result;
+	}
+
+	/**
+	 * Set a field of an object from a slice of a text line
+	 * 
+	 * @param <T> the type of object
+	 */
+	@FunctionalInterface
+	interface FieldSetter<T> {
+
+		/**
+		 * Set the field
+		 * 
+		 * @param object: the object to fill
+		 * @param line: the line holding the value
+		 * @param begin: the index of the first char of the value
+		 * @param end: the index after the last char of the value
+		 * @throws InvalidAssSubException
+		 */
+		void set(T object, String line, int begin, int end) throws InvalidAssSubException;
+	}
+
+	/**
+	 * Setter of a time field, the only kind of value that can be invalid
+	 * 
+	 * @param <T> the type of object to fill
+	 */
+	interface TimeSetter<T> extends FieldSetter<T> {
+	}
+
+	/**
+	 * Setter of a text field, whose value is stored as the parse options require
+	 * 
+	 * @param <T> the type of object to fill
+	 */
+	@FunctionalInterface
+	interface TextSetter<T> extends FieldSetter<T> {
+
+		/**
+		 * Set the field
+		 * 
+		 * @param object: the object to fill
+		 * @param line: the line holding the value
+		 * @param begin: the index of the first char of the value
+		 * @param end: the index after the last char of the value
+		 * @param options: the parse options, null to create a string for each value
+		 * @throws InvalidAssSubException
+		 */
+		void set(T object, String line, int begin, int end, ParseOptions options) throws InvalidAssSubException;
+
+		@Override
+		default void set(T object, String line, int begin, int end) throws InvalidAssSubException {
+
+			set(object, line, begin, end, null);
+		}
+	}
+
+	/**
+	 * Text lines of an event, split on the escaped line breaks only when they are read.
+	 * The lines are slices of the event line.
+	 */
+	private static final class EscapedTextLines extends LazyTextLines {
+
+		private static final long serialVersionUID = 2957395614408421170L;
+
+		/**
+		 * The event line holding the text
+		 */
+		private final String line;
+
+		private final int begin;
+
+		private final int end;
+
+		/**
+		 * Number of text lines, trailing empty lines excluded as in <code>toTextLines</code>
+		 */
+		private final int count;
+
+		EscapedTextLines(String line, int begin, int end) {
+
+			this.line = line;
+			this.begin = begin;
+			this.end = end;
+
+			int lines = 0;
+			int nonEmpty = 0;
+			int from = begin;
+			int found;
+			while ((found = nextBreak(line, from, end)) >= 0) {
+				lines++;
+				if (found > from) {
+					nonEmpty = lines;
+				}
+				from = found + ESCAPED_RETURN.length();
+			}
+			if (end > from) {
+				nonEmpty = lines + 1;
+			}
+			this.count = lines == 0 ? 1 : nonEmpty;
+		}
+
+		@Override
+		protected int lineCount() {
+
+			return this.count;
+		}
+
+		@Override
+		protected String line(int index) {
+
+			int from = this.begin;
+			for (int i = 0; i < index; i++) {
+				from = nextBreak(this.line, from, this.end) + ESCAPED_RETURN.length();
+			}
+			int found = nextBreak(this.line, from, this.end);
+			return this.line.substring(from, found < 0 ? this.end : found);
+		}
+	}
+
+}
@@ -1,28 +1,23 @@
 package com.github.dnbn.submerge.api.parser;
 
-import java.beans.PropertyDescriptor;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.time.DateTimeException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.StringJoiner;
-import java.util.TreeSet;
 
-import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.math.NumberUtils;
 
+import com.github.dnbn.submerge.api.parser.ParseDiagnostics.Reason;
 import com.github.dnbn.submerge.api.parser.exception.InvalidAssSubException;
+import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
 import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
-import com.github.dnbn.submerge.api.subtitle.ass.ASSTime;
 import com.github.dnbn.submerge.api.subtitle.ass.Events;
 import com.github.dnbn.submerge.api.subtitle.ass.ScriptInfo;
 import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
-import com.github.dnbn.submerge.api.utils.ColorUtils;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
 
 /**
  * Parse SSA/ASS subtitles
@@ -34,28 +29,37 @@ public class ASSParser extends BaseParser<ASSSub> {
 	 */
 	private static final String COMMENTS_MARK = ";";
 
+	/**
+	 * Constructor
+	 */
+	public ASSParser() {
+		super(ASSSub::new);
+	}
+
 	@Override
-	protected void parse(BufferedReader br, ASSSub sub) throws IOException, InvalidAssSubException {
+	protected void parse(BufferedReader br, ASSSub sub, ParseOptions options) throws IOException,
+			InvalidAssSubException {
 
-		String line = readFirstTextLine(br);
+		ASSReader reader = new ASSReader(br, options);
 
-		if (line != null && !("[script info]").equalsIgnoreCase(line.trim())) {
-			throw new InvalidAssSubException("The line that says “[Script Info]” must be the first line in the script.");
+		if (options.getTextMode() == TextMode.NONE) {
+			// Without text, the events that share the same times compare equal: all are kept
+			sub.setEvents(new TimedLineSet<>(true));
 		}
-
-		// [Script Info]
-		sub.setScriptInfo(parseScriptInfo(br));
-
-		while ((line = readFirstTextLine(br)) != null) {
-			if (line.matches("(?i:^\\[v.*styles\\+?]$)")) {
-				// [V4+ Styles]
-				sub.setStyle(parseStyle(br));
-			} else if (line.equalsIgnoreCase("[events]")) {
-				// [Events]
-				sub.setEvents(parseEvents(br));
+		Set<Events> events = sub.getEvents();
+		if (options.isParallel() && options.getDiagnostics() == null) {
+			// A lenient parse checks the events as they are read, to locate the invalid ones
+			reader.readAll(events);
+		} else {
+			Events event;
+			while ((event = reader.next()) != null) {
+				events.add(event);
 			}
 		}
 
+		sub.setScriptInfo(reader.getScriptInfo());
+		sub.setStyle(reader.getStyles());
+
 		if (sub.getStyle().isEmpty()) {
 			throw new InvalidAssSubException("Missing style definition");
 		}
@@ -65,8 +69,59 @@ public class ASSParser extends BaseParser<ASSSub> {
 		}
 	}
 
+	@Override
+	public ASSReader reader(InputStream is) {
+
+		try {
+			return new ASSReader(openReader(is));
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
+		}
+	}
+
+	/**
+	 * Check if a line is the header of the script info section
+	 * 
+	 * @param line: the line
+	 * @return true if the line starts the script info section
+	 */
+	static boolean isScriptInfoSection(String line) {
+
+		return ("[script info]").equalsIgnoreCase(line.trim());
+	}
+
+	/**
+	 * Check if a line is the header of the styles section
+	 * 
+	 * @param line: the line
+	 * @return true if the line starts the styles section
+	 */
+	static boolean isStylesSection(String line) {
+
+		// Same as (?i:^\[v.*styles\+?]$)
+		int end = line.length() - 1;
+		if (end < 8 || !line.regionMatches(true, 0, "[v", 0, 2) || line.charAt(end) != ']') {
+			return false;
+		}
+		if (line.charAt(end - 1) == '+') {
+			end--;
+		}
+		return end - 6 >= 2 && line.regionMatches(true, end - 6, "styles", 0, 6);
+	}
+
 	/**
-	 * Parse the events section from the reader. <br/>
+	 * Check if a line is the header of the events section
+	 * 
+	 * @param line: the line
+	 * @return true if the line starts the events section
+	 */
+	static boolean isEventsSection(String line) {
+
+		return line.equalsIgnoreCase("[events]");
+	}
+
+	/**
+	 * Parse a line of the events section. <br/>
 	 * 
 	 * Example of events section:
 	 * 
@@ -77,52 +132,69 @@ public class ASSParser extends BaseParser<ASSSub> {
 	 * Dialogue: 0,0:02:34.92,0:02:37.54,StyleTwo,,0000,0000,0000,,Another text line
 	 * </pre>
 	 * 
-	 * @param br: the buffered reader
-	 * @throws IOException
+	 * @param eventsFormat: the format definition
+	 * @param line: the line to parse
+	 * @return the Events object, null if the line is not a dialogue line
 	 * @throws InvalidAssSubException
-	 * @throws IOException
 	 */
-	private static Set<Events> parseEvents(BufferedReader br) throws IOException, InvalidAssSubException {
-		String[] eventsFormat = findFormat(br, "events");
+	static Events parseEvent(ASSFormat<Events> eventsFormat, String line) throws InvalidAssSubException {
 
-		Set<Events> events = new TreeSet<>();
-		String line = readFirstTextLine(br);
+		if (!line.startsWith(Events.DIALOGUE)) {
+			return null;
+		}
 
-		while (line != null && !line.startsWith("[")) {
+		int begin = Events.DIALOGUE.length();
+		int end = line.length();
+		int columns = eventsFormat.size();
+
+		// The last field will always be the Text field, so that it can contain
+		// commas: only the first columns - 1 commas separate fields.
+		int comma = begin - 1;
+		for (int i = 1; i < columns; i++) {
+			comma = line.indexOf(Events.SEP, comma + 1);
+			if (comma < 0) {
+				throw new InvalidAssSubException("Incorrect dialog line : " + line.substring(begin).trim());
+			}
+		}
 
-			if (line.startsWith(Events.DIALOGUE) && !line.startsWith(COMMENTS_MARK)) {
-				String info = findInfo(line, Events.DIALOGUE);
-				String[] dialogLine = StringUtils.splitByWholeSeparatorPreserveAllTokens(info, Events.SEP);
+		Events events = new Events();
+		for (int i = 0; i < columns - 1; i++) {
+			comma = line.indexOf(Events.SEP, begin);
+			eventsFormat.set(events, i, line, begin, comma);
+			begin = comma + 1;
+		}
+		eventsFormat.set(events, columns - 1, line, begin, end);
 
-				// The last field will always be the Text field, so that it can contain
-				// commas.
-				int lengthDialog = dialogLine.length;
-				int lengthFormat = eventsFormat.length;
+		return events;
+	}
 
-				if (lengthDialog < lengthFormat) {
-					throw new InvalidAssSubException("Incorrect dialog line : " + info);
-				}
+	/**
+	 * Check a line of the events section without throwing an exception
+	 * 
+	 * @param eventsFormat: the format definition
+	 * @param line: the line to check
+	 * @return the reason why <code>parseEvent</code> would fail, null if it would not
+	 */
+	static Reason checkEvent(ASSFormat<Events> eventsFormat, String line) {
 
-				if (lengthDialog > lengthFormat) {
-					// The text field contains commas
-					StringJoiner joiner = new StringJoiner(Events.SEP);
-					for (int i = lengthFormat - 1; i < lengthDialog; i++) {
-						joiner.add(dialogLine[i]);
-					}
-					dialogLine[lengthFormat - 1] = joiner.toString();
-					dialogLine = Arrays.copyOfRange(dialogLine, 0, lengthFormat);
-				}
+		if (!line.startsWith(Events.DIALOGUE)) {
+			return null;
+		}
 
-				events.add(parseDialog(eventsFormat, dialogLine));
+		int begin = Events.DIALOGUE.length();
+		int columns = eventsFormat.size();
+		for (int i = 0; i < columns - 1; i++) {
+			int comma = line.indexOf(Events.SEP, begin);
+			if (comma < 0) {
+				return Reason.INVALID_EVENT;
 			}
-
-			line = markAndRead(br);
-
+			if (!eventsFormat.isValid(i, line, begin, comma)) {
+				return Reason.INVALID_TIME;
+			}
+			begin = comma + 1;
 		}
 
-		reset(br, line);
-
-		return events;
+		return eventsFormat.isValid(columns - 1, line, begin, line.length()) ? null : Reason.INVALID_TIME;
 	}
 
 	/**
@@ -138,23 +210,43 @@ public class ASSParser extends BaseParser<ASSSub> {
 	 * </pre>
 	 * 
 	 * @param br: the buffered reader
+	 * @param diagnostics: the problems found by a lenient parse, null for a strict parse
 	 * @throws IOException
 	 * @throws InvalidAssSubException
 	 */
-	private static List<V4Style> parseStyle(BufferedReader br) throws IOException, InvalidAssSubException {
-		String[] styleFormat = findFormat(br, "styles");
+	static List<V4Style> parseStyle(BufferedReader br, ParseDiagnostics diagnostics) throws IOException,
+			InvalidAssSubException {
 
 		List<V4Style> styles = new ArrayList<>();
+
+		String[] format = findFormat(br, "styles", diagnostics);
+		if (format == null) {
+			return styles;
+		}
+		ASSFormat<V4Style> styleFormat = ASSFormat.styles(format);
+
 		String line = readFirstTextLine(br);
 		int index = 1;
 		while (line != null && !line.startsWith("[")) {
-			if (line.startsWith(V4Style.STYLE) && !line.startsWith(COMMENTS_MARK)) {
-				String[] textLine = line.split(":");
-				if (textLine.length > 1) {
-					String[] styleLine = textLine[1].split(V4Style.SEP);
-					styles.add(parseV4Style(styleFormat, styleLine, index));
-					index++;
+			if (line.startsWith(V4Style.STYLE)) {
+				// The values end at the next colon, if any
+				int begin = V4Style.STYLE.length();
+				int end = line.indexOf(':', begin);
+				end = end < 0 ? line.length() : end;
+
+				if (diagnostics == null) {
+					styles.add(parseV4Style(styleFormat, line, begin, end, index));
+				} else if (styleFormat.size() != countValues(line, begin, end)) {
+					diagnostics.add(Reason.INVALID_STYLE, br);
+				} else {
+					V4Style style = toV4Style(styleFormat, line, begin, end);
+					if (StringUtils.isEmpty(style.getName())) {
+						diagnostics.add(Reason.INVALID_STYLE, br);
+					} else {
+						styles.add(style);
+					}
 				}
+				index++;
 			}
 
 			line = markAndRead(br);
@@ -165,91 +257,27 @@ public class ASSParser extends BaseParser<ASSSub> {
 		return styles;
 	}
 
-	/**
-	 * Return the Events object from text dialog line
-	 * 
-	 * @param eventsFormat: the format definition
-	 * @param dialogLine: the dialog line
-	 * @return the Events object
-	 * @throws InvalidAssSubException
-	 */
-	private static Events parseDialog(String[] eventsFormat, String[] dialogLine) throws InvalidAssSubException {
-
-		Events events = new Events();
-
-		for (int i = 0; i < eventsFormat.length; i++) {
-			String property = StringUtils.uncapitalize(eventsFormat[i].trim());
-			String value = dialogLine[i].trim();
-
-			try {
-				switch (property) {
-				case "start":
-					events.getTime().setStart(ASSTime.fromString(value));
-					break;
-				case "end":
-					events.getTime().setEnd(ASSTime.fromString(value));
-					break;
-				case "text":
-					List<String> textLines = Arrays.asList(value.split("\\\\N"));
-					events.setTextLines(new ArrayList<>(textLines));
-					break;
-				default:
-					String error = callProperty(events, property, value);
-					if (error != null) {
-						throw new InvalidAssSubException("Invalid property (" + property + ") " + value);
-					}
-					break;
-				}
-			} catch (DateTimeException e) {
-				throw new InvalidAssSubException("Invalid time for property " + property + " : " + value);
-			}
-
-		}
-
-		return events;
-	}
-
 	/**
 	 * Return the V4Style object from text style line
 	 * 
 	 * @param styleFormat: format line
-	 * @param styleLine: the style line
+	 * @param line: the style line
+	 * @param begin: the index of the first value
+	 * @param end: the index after the last value
 	 * @param lineIndex: the line index
 	 * @return the style object
 	 * @throws InvalidAssSubException
 	 */
-	private static V4Style parseV4Style(String[] styleFormat, String[] styleLine, int lineIndex)
-			throws InvalidAssSubException {
+	private static V4Style parseV4Style(ASSFormat<V4Style> styleFormat, String line, int begin, int end,
+			int lineIndex) throws InvalidAssSubException {
 
 		String message = "Style at index " + lineIndex + ": ";
 
-		if (styleFormat.length != styleLine.length) {
+		if (styleFormat.size() != countValues(line, begin, end)) {
 			throw new InvalidAssSubException(message + "does not match style definition");
 		}
 
-		V4Style style = new V4Style();
-		for (int i = 0; i < styleFormat.length; i++) {
-			String property = StringUtils.uncapitalize(styleFormat[i].trim());
-			String value = styleLine[i].trim();
-
-			if (property.toLowerCase().indexOf("colour") > -1) {
-				// Colors can be number (bgr) or string (&HBBGGRR or &HAABBGGRR)
-				try {
-					Integer.parseInt(value);
-				} catch (NumberFormatException e) {
-					int bgr = getBGR(value);
-					if (bgr != -1) {
-						value = Integer.toString(bgr);
-					}
-				}
-			}
-
-			String error = callProperty(style, property, value);
-
-			if (error != null) {
-				throw new InvalidAssSubException(message + error);
-			}
-		}
+		V4Style style = toV4Style(styleFormat, line, begin, end);
 
 		if (StringUtils.isEmpty(style.getName())) {
 			throw new InvalidAssSubException(message + " missing name");
@@ -259,23 +287,56 @@ public class ASSParser extends BaseParser<ASSSub> {
 	}
 
 	/**
-	 * Get the BGR code from the &HBBGGRR or &HAABBGGRR pattern
+	 * Fill a V4Style object from the values of a style line, without checking them
+	 * 
+	 * @param styleFormat: format line
+	 * @param line: the style line
+	 * @param begin: the index of the first value
+	 * @param end: the index after the last value
+	 * @return the style object
+	 */
+	private static V4Style toV4Style(ASSFormat<V4Style> styleFormat, String line, int begin, int end) {
+
+		V4Style style = new V4Style();
+		for (int i = 0; i < styleFormat.size(); i++) {
+			int comma = line.indexOf(V4Style.SEP, begin);
+			int valueEnd = comma < 0 || comma >= end ? end : comma;
+			styleFormat.set(style, i, line, begin, valueEnd);
+			begin = valueEnd + 1;
+		}
+		return style;
+	}
+
+	/**
+	 * Count the comma separated values of a style line, empty trailing values are not
+	 * counted
 	 * 
-	 * @param value: the value to convert
-	 * @return the bgr code
+	 * @param line: the style line
+	 * @param begin: the index of the first value
+	 * @param end: the index after the last value
+	 * @return the number of values
 	 */
-	private static int getBGR(String value) {
-
-		int length = value.length();
-		int bgr = -1;
-		if (length == 10) {
-			// From ASS
-			bgr = ColorUtils.HAABBGGRRToBGR(value);
-		} else if (length == 8) {
-			// From SSA
-			bgr = ColorUtils.HBBGGRRToBGR(value);
+	private static int countValues(String line, int begin, int end) {
+
+		int count = 1;
+		for (int i = begin; i < end; i++) {
+			if (line.charAt(i) == ',') {
+				count++;
+			}
 		}
-		return bgr;
+
+		if (count > 1) {
+			int last = end;
+			while (last > begin && line.charAt(last - 1) == ',') {
+				last--;
+				count--;
+			}
+			if (last == begin) {
+				count--;
+			}
+		}
+
+		return count;
 	}
 
 	/**
@@ -295,7 +356,7 @@ public class ASSParser extends BaseParser<ASSSub> {
 	 * @throws IOException
 	 * @throws InvalidAssSubException
 	 */
-	private static ScriptInfo parseScriptInfo(BufferedReader br) throws IOException, InvalidAssSubException {
+	static ScriptInfo parseScriptInfo(BufferedReader br) throws IOException, InvalidAssSubException {
 
 		ScriptInfo scriptInfo = new ScriptInfo();
 		String line = readFirstTextLine(br);
@@ -315,11 +376,7 @@ public class ASSParser extends BaseParser<ASSSub> {
 					}
 					String value = joiner.toString().trim();
 
-					String error = callProperty(scriptInfo, property, value);
-
-					if (error != null) {
-						throw new InvalidAssSubException("Script info : " + error);
-					}
+					ASSFormat.setScriptInfo(scriptInfo, property, value);
 
 				}
 
@@ -333,49 +390,6 @@ public class ASSParser extends BaseParser<ASSSub> {
 		return scriptInfo;
 	}
 
-	/**
-	 * Call a specific property of an object with reflection
-	 * 
-	 * @param object: the object to set a property
-	 * @param property: the property to define
-	 * @param value: the value to set
-	 * @return the error message if an error has occured, null otherwise
-	 */
-	private static String callProperty(Object object, String property, String value) {
-
-		String error = null;
-		try {
-			PropertyDescriptor descriptor = PropertyUtils.getPropertyDescriptor(object, property);
-
-			if (descriptor != null) {
-				String type = descriptor.getPropertyType().getSimpleName();
-				switch (type) {
-				case "String":
-					PropertyUtils.setProperty(object, property, value);
-					break;
-				case "int":
-					PropertyUtils.setProperty(object, property, NumberUtils.toInt(value));
-					break;
-				case "boolean":
-					boolean boolValue = NumberUtils.toInt(value) == -1;
-					PropertyUtils.setProperty(object, property, boolValue);
-					break;
-				case "double":
-					double doubleValue = NumberUtils.toDouble(value.replace(",", ".").trim());
-					PropertyUtils.setProperty(object, property, doubleValue);
-					break;
-				default:
-					break;
-				}
-			}
-
-		} catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-			// Property not supported, do nothing
-		}
-
-		return error;
-	}
-
 	/**
 	 * Get the format string definition
 	 * 
@@ -385,7 +399,7 @@ public class ASSParser extends BaseParser<ASSSub> {
 	 * @throws IOException
 	 * @throws InvalidAssSubException
 	 */
-	private static String[] findFormat(BufferedReader br, String sectionName) throws IOException,
+	static String[] findFormat(BufferedReader br, String sectionName) throws IOException,
 			InvalidAssSubException {
 
 		String line = readFirstTextLine(br);
@@ -399,6 +413,35 @@ public class ASSParser extends BaseParser<ASSSub> {
 		return findInfo(line, ASSSub.FORMAT).split(V4Style.SEP);
 	}
 
+	/**
+	 * Get the format string definition. A lenient parse records a missing or invalid
+	 * format line instead of failing, the line is left to be read if it is a section
+	 * header.
+	 * 
+	 * @param br: the buffered reader
+	 * @param sectionName: the name of the section to parse
+	 * @param diagnostics: the problems found by a lenient parse, null for a strict parse
+	 * @return the format string definition, null if a lenient parse found no valid format
+	 * @throws IOException
+	 * @throws InvalidAssSubException
+	 */
+	static String[] findFormat(BufferedReader br, String sectionName, ParseDiagnostics diagnostics)
+			throws IOException, InvalidAssSubException {
+
+		if (diagnostics == null) {
+			return findFormat(br, sectionName);
+		}
+
+		String line = markAndRead(br);
+		String info = line != null && line.trim().startsWith(ASSSub.FORMAT) ? findInfo(line, ASSSub.FORMAT) : null;
+		if (info == null) {
+			diagnostics.add(Reason.INVALID_FORMAT, br);
+			reset(br, line);
+			return null;
+		}
+		return info.split(V4Style.SEP);
+	}
+
 	/**
 	 * Find the information after ":" in a text line
 	 * 
@@ -0,0 +1,332 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.dnbn.submerge.api.Budget;
+import com.github.dnbn.submerge.api.parser.ParseDiagnostics.Reason;
+import com.github.dnbn.submerge.api.parser.exception.InvalidAssSubException;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+import com.github.dnbn.submerge.api.subtitle.ass.ScriptInfo;
+import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
+
+/**
+ * Read SSA/ASS subtitles event by event. The script info and the styles are read when
+ * the reader is created, the events are read on demand.
+ */
+public class ASSReader implements SubtitleReader<Events> {
+
+	/**
+	 * Number of event lines parsed by a task when parsing in parallel
+	 */
+	private static final int CHUNK_SIZE = 2048;
+
+	/**
+	 * The underlying reader
+	 */
+	private final BufferedReader br;
+
+	/**
+	 * Headers and general information about the script
+	 */
+	private final ScriptInfo scriptInfo;
+
+	/**
+	 * Style definitions found so far
+	 */
+	private final List<V4Style> styles = new ArrayList<>();
+
+	/**
+	 * Canonical instance of each style name, shared by the styles and the events
+	 */
+	private final Map<String, String> styleNames = new HashMap<>();
+
+	/**
+	 * Format of the current events section, null outside of an events section
+	 */
+	private ASSFormat<Events> eventsFormat;
+
+	/**
+	 * Problems found by a lenient parse, null for a strict parse
+	 */
+	private final ParseDiagnostics diagnostics;
+
+	/**
+	 * The parse options, for the storage of the text of the events
+	 */
+	private final ParseOptions options;
+
+	/**
+	 * Constructor. Read the script info and the styles, up to the first events.
+	 * 
+	 * @param br: the buffered reader, positioned at the beginning of the subtitle
+	 * @throws IOException
+	 * @throws InvalidAssSubException if the script header is not valid
+	 */
+	ASSReader(BufferedReader br) throws IOException, InvalidAssSubException {
+
+		this(br, new ParseOptions());
+	}
+
+	/**
+	 * Constructor. Read the script info and the styles, up to the first events.
+	 * 
+	 * @param br: the buffered reader, positioned at the beginning of the subtitle
+	 * @param options: the parse options
+	 * @throws IOException
+	 * @throws InvalidAssSubException if the script header is not valid
+	 */
+	ASSReader(BufferedReader br, ParseOptions options) throws IOException, InvalidAssSubException {
+
+		ParseDiagnostics diagnostics = options.getDiagnostics();
+		this.br = br;
+		this.diagnostics = diagnostics;
+		this.options = options;
+
+		String line = BaseParser.readFirstTextLine(br);
+
+		if (line != null && !ASSParser.isScriptInfoSection(line)) {
+			if (diagnostics == null) {
+				throw new InvalidAssSubException("The line that says “[Script Info]” must be the first line in the script.");
+			}
+			diagnostics.add(Reason.MISSING_HEADER, br);
+		}
+
+		if (line == null || ASSParser.isScriptInfoSection(line) || !line.startsWith("[")) {
+			// [Script Info]
+			this.scriptInfo = ASSParser.parseScriptInfo(br);
+		} else {
+			// The script info is missing, the first line is already another section
+			this.scriptInfo = new ScriptInfo();
+			readSection(line);
+		}
+
+		while (this.eventsFormat == null && (line = BaseParser.readFirstTextLine(br)) != null) {
+			readSection(line);
+		}
+	}
+
+	@Override
+	public Events next() throws IOException, InvalidAssSubException {
+
+		String line;
+		while ((line = BaseParser.readFirstTextLine(this.br)) != null) {
+			if (line.startsWith("[")) {
+				readSection(line);
+			} else if (this.eventsFormat != null) {
+				if (this.diagnostics != null) {
+					Reason reason = ASSParser.checkEvent(this.eventsFormat, line);
+					if (reason != null) {
+						this.diagnostics.add(reason, this.br);
+						continue;
+					}
+				}
+				Events event = ASSParser.parseEvent(this.eventsFormat, line);
+				if (event != null) {
+					event.setStyle(canonicalStyleName(event.getStyle()));
+					return event;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Read all the remaining events. The lines of each events section are read first,
+	 * then parsed in chunks on the common fork-join pool; the events are added in the
+	 * order of the file.
+	 * 
+	 * @param events: the collection to add the events to
+	 * @throws IOException
+	 * @throws InvalidAssSubException if an event line is not valid, the first invalid line
+	 *             of the file is reported
+	 */
+	void readAll(Collection<? super Events> events) throws IOException, InvalidAssSubException {
+
+		String line = null;
+		List<String> lines = new ArrayList<>();
+
+		do {
+			if (line != null && line.startsWith("[")) {
+				readSection(line);
+			} else if (line != null && this.eventsFormat != null) {
+				lines.add(line);
+			}
+
+			line = BaseParser.readFirstTextLine(this.br);
+
+			if ((line == null || line.startsWith("[")) && !lines.isEmpty()) {
+				// End of the events section
+				parseAll(lines, events);
+				lines.clear();
+			}
+		} while (line != null);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		this.br.close();
+	}
+
+	/**
+	 * Handle a section header: styles are read immediately, events are read on demand and
+	 * other sections are ignored
+	 * 
+	 * @param line: the section header
+	 * @throws IOException
+	 * @throws InvalidAssSubException
+	 */
+	private void readSection(String line) throws IOException, InvalidAssSubException {
+
+		this.eventsFormat = null;
+
+		if (ASSParser.isStylesSection(line)) {
+			// [V4+ Styles]
+			for (V4Style style : ASSParser.parseStyle(this.br, this.diagnostics)) {
+				this.styles.add(style);
+				this.styleNames.putIfAbsent(style.getName(), style.getName());
+			}
+		} else if (ASSParser.isEventsSection(line)) {
+			// [Events]
+			String[] format = ASSParser.findFormat(this.br, "events", this.diagnostics);
+			this.eventsFormat = format == null ? null : ASSFormat.events(format, this.options);
+		}
+	}
+
+	/**
+	 * Parse the lines of an events section
+	 * 
+	 * @param lines: the lines of the section
+	 * @param events: the collection to add the events to
+	 * @throws InvalidAssSubException if an event line is not valid
+	 */
+	private void parseAll(List<String> lines, Collection<? super Events> events) throws InvalidAssSubException {
+
+		Events[] parsed = new Events[lines.size()];
+		AtomicInteger firstError = new AtomicInteger(lines.size());
+		Budget budget = LineTrackingReader.budgetOf(this.br);
+		ParseTask task = new ParseTask(this.eventsFormat, lines, parsed, firstError, budget, 0, lines.size());
+
+		if (lines.size() > CHUNK_SIZE) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.compute();
+		}
+
+		if (firstError.get() < lines.size()) {
+			// Parse the line again to throw its exception from this thread
+			ASSParser.parseEvent(this.eventsFormat, lines.get(firstError.get()));
+		}
+
+		for (Events event : parsed) {
+			if (event != null) {
+				event.setStyle(canonicalStyleName(event.getStyle()));
+				events.add(event);
+			}
+		}
+	}
+
+	/**
+	 * Get the shared instance of a style name, so that the events do not each hold a copy
+	 * 
+	 * @param name: the style name
+	 * @return the canonical instance of the name
+	 */
+	private String canonicalStyleName(String name) {
+
+		String canonical = this.styleNames.putIfAbsent(name, name);
+		return canonical == null ? name : canonical;
+	}
+
+	/**
+	 * Parse a range of event lines, split in chunks
+	 */
+	private static class ParseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2404164012637536263L;
+
+		/**
+		 * Format of the events section, shared by all the tasks
+		 */
+		private final ASSFormat<Events> format;
+
+		private final List<String> lines;
+
+		/**
+		 * The parsed events, by line index
+		 */
+		private final Events[] parsed;
+
+		/**
+		 * Index of the first invalid line found so far
+		 */
+		private final AtomicInteger firstError;
+
+		/**
+		 * Budget of the parse, checked before each chunk, null if not limited
+		 */
+		private final Budget budget;
+
+		private final int from;
+
+		private final int to;
+
+		ParseTask(ASSFormat<Events> format, List<String> lines, Events[] parsed, AtomicInteger firstError,
+				Budget budget, int from, int to) {
+
+			this.format = format;
+			this.lines = lines;
+			this.parsed = parsed;
+			this.firstError = firstError;
+			this.budget = budget;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (this.to - this.from > CHUNK_SIZE) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new ParseTask(this.format, this.lines, this.parsed, this.firstError, this.budget, this.from,
+						middle), new ParseTask(this.format, this.lines, this.parsed, this.firstError, this.budget,
+						middle, this.to));
+				return;
+			}
+
+			if (this.budget != null) {
+				this.budget.checkpoint();
+			}
+
+			for (int i = this.from; i < this.to && i < this.firstError.get(); i++) {
+				try {
+					this.parsed[i] = ASSParser.parseEvent(this.format, this.lines.get(i));
+				} catch (RuntimeException e) {
+					this.firstError.accumulateAndGet(i, Math::min);
+					return;
+				}
+			}
+		}
+	}
+
+	// ===================== getter and setter start =====================
+
+	public ScriptInfo getScriptInfo() {
+		return this.scriptInfo;
+	}
+
+	public List<V4Style> getStyles() {
+		return this.styles;
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.github.dnbn.submerge.api.parser;
+
+/**
+ * SSA/ASS subtitle format: the first text line is <code>[Script Info]</code>
+ */
+public final class ASSSubtitleFormat implements SubtitleFormat {
+
+	/**
+	 * Header of the first section
+	 */
+	private static final String SCRIPT_INFO = "[Script Info]";
+
+	/**
+	 * Parser, stateless
+	 */
+	private static final ASSParser PARSER = new ASSParser();
+
+	@Override
+	public String getName() {
+
+		return "ass";
+	}
+
+	@Override
+	public boolean hasExtension(String extension) {
+
+		return "ass".equals(extension) || "ssa".equals(extension);
+	}
+
+	@Override
+	public boolean matches(CharSequence head) {
+
+		int start = FormatSniffer.skipBlank(head, 0);
+		int end = FormatSniffer.lineEnd(head, start);
+		String line = head.subSequence(start, end).toString().trim();
+
+		return SCRIPT_INFO.equalsIgnoreCase(line);
+	}
+
+	@Override
+	public SubtitleParser getParser() {
+
+		return PARSER;
+	}
+
+}
@@ -2,17 +2,22 @@ package com.github.dnbn.submerge.api.parser;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.github.dnbn.submerge.api.Budget;
 import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
 import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
@@ -25,45 +30,100 @@ public abstract class BaseParser<T extends TimedTextFile> implements SubtitlePar
 	 */
 	private static final char BOM_MARKER = '\ufeff';
 
+	/**
+	 * Files larger than this size are mapped in memory, smaller files are read
+	 */
+	private static final long MAP_THRESHOLD = 16 * 1024 * 1024;
+
+	/**
+	 * Number of bytes read at once from a stream
+	 */
+	private static final int READ_CHUNK_SIZE = 8192;
+
+	/**
+	 * Creates the empty subtitles filled by the parser
+	 */
+	private final Supplier<T> subtitleFactory;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param subtitleFactory: creates an empty subtitle of the type handled by the parser,
+	 *            usually a constructor reference
+	 */
+	protected BaseParser(Supplier<T> subtitleFactory) {
+		this.subtitleFactory = subtitleFactory;
+	}
+
 	@Override
 	public T parse(File file) {
 
+		return parse(file, new ParseOptions());
+	}
+
+	@Override
+	public T parse(File file, ParseOptions options) {
+
 		if (!file.isFile()) {
 			throw new InvalidFileException("File " + file.getName() + " is invalid");
 		}
 
-		try (FileInputStream fis = new FileInputStream(file)) {
-			return parse(fis, file.getName());
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			long size = channel.size();
+			newBudget(options).checkBytes(size);
+			if (size > Integer.MAX_VALUE) {
+				// Too large to be mapped or read at once
+				throw new InvalidFileException("File " + file.getName() + " is too large to be parsed: " + size + " bytes");
+			}
+
+			T sub = newSubtitle();
+			sub.setFileName(file.getName());
+			parse(size > MAP_THRESHOLD ? channel.map(MapMode.READ_ONLY, 0, size) : read(channel, (int) size), sub,
+					options);
+			return sub;
+
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public T parse(InputStream is, String fileName) {
 
+		return parse(is, fileName, new ParseOptions());
+	}
+
+	@Override
+	public T parse(InputStream is, String fileName, ParseOptions options) {
+
 		try {
-			Type type = this.getClass().getGenericSuperclass();
-			T sub = ((Class<T>) ((ParameterizedType) type).getActualTypeArguments()[0]).newInstance();
+			T sub = newSubtitle();
 
-			byte[] bytes = IOUtils.toByteArray(is);
+			Budget budget = newBudget(options);
+			byte[] bytes = readAll(is, budget);
+
+			String encoding = FileUtils.guessEncoding(bytes);
+			sub.setFileName(fileName);
+
+			if (options.getTextMode() == TextMode.LAZY && Charset.isSupported(encoding)) {
+				// The lazy text lines can keep ranges of the bytes
+				parse(ByteBuffer.wrap(bytes), Charset.forName(encoding), sub, options);
+				return sub;
+			}
 
 			try (InputStream nis = new ByteArrayInputStream(bytes);
-					InputStreamReader isr = new InputStreamReader(nis, FileUtils.guessEncoding(bytes));
-					BufferedReader br = new BufferedReader(isr)) {
+					InputStreamReader isr = new InputStreamReader(nis, encoding);
+					BufferedReader br = newReader(isr, Charset.forName(encoding), options, budget)) {
 
 				skipBom(br);
-				sub.setFileName(fileName);
-				parse(br, sub);
+				parse(br, sub, options);
 			}
 
 			return sub;
 
 		} catch (IOException e) {
 			throw new InvalidFileException(e);
-		} catch (InstantiationException | IllegalAccessException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
@@ -72,10 +132,85 @@ public abstract class BaseParser<T extends TimedTextFile> implements SubtitlePar
 	 * 
 	 * @param br: the buffered reader
 	 * @param sub : the subtitle object to fill
+	 * @param options: the parse options
+	 * @throws IOException
+	 * @throws InvalidSubException if an error has occured when parsing the subtitle file
+	 */
+	protected abstract void parse(BufferedReader br, T sub, ParseOptions options) throws IOException;
+
+	/**
+	 * Parse the subtitle file from a buffer, usually a file read or mapped in memory. The
+	 * encoding is guessed first, then the buffer is decoded as it is read.
+	 * 
+	 * @param buffer: the bytes of the subtitle file
+	 * @param sub: the subtitle object to fill
+	 * @param options: the parse options
 	 * @throws IOException
 	 * @throws InvalidSubException if an error has occured when parsing the subtitle file
 	 */
-	protected abstract void parse(BufferedReader br, T sub) throws IOException;
+	protected void parse(ByteBuffer buffer, T sub, ParseOptions options) throws IOException {
+
+		parse(buffer, guessEncoding(buffer), sub, options);
+	}
+
+	/**
+	 * Parse the subtitle file from a buffer in a known encoding
+	 * 
+	 * @param buffer: the bytes of the subtitle file
+	 * @param charset: the encoding of the bytes
+	 * @param sub: the subtitle object to fill
+	 * @param options: the parse options
+	 * @throws IOException
+	 * @throws InvalidSubException if an error has occured when parsing the subtitle file
+	 */
+	protected void parse(ByteBuffer buffer, Charset charset, T sub, ParseOptions options) throws IOException {
+
+		Budget budget = newBudget(options);
+		budget.checkBytes(buffer.remaining());
+
+		try (BufferedReader br = newReader(new ByteBufferReader(buffer, charset), charset, options, budget)) {
+			skipBom(br);
+			parse(br, sub, options);
+		}
+	}
+
+	/**
+	 * Start the budget of a parse, from its limits and its cancellation token
+	 * 
+	 * @param options: the parse options
+	 * @return the budget
+	 */
+	protected static Budget newBudget(ParseOptions options) {
+
+		return Budget.start(options.getLimits(), options.getCancellationToken());
+	}
+
+	/**
+	 * Guess the encoding of a buffer, see <code>FileUtils.guessEncoding(ByteBuffer)</code>
+	 * 
+	 * @param buffer: the buffer, its position is not changed
+	 * @return the encoding
+	 */
+	protected static Charset guessEncoding(ByteBuffer buffer) {
+
+		return Charset.forName(FileUtils.guessEncoding(buffer));
+	}
+
+	/**
+	 * Open a buffered reader on a subtitle stream without loading the whole stream in
+	 * memory, see <code>FileUtils.openReader</code>
+	 * 
+	 * @param is: the input stream
+	 * @return the buffered reader, positioned after the byte order mark
+	 * @throws IOException
+	 */
+	protected static BufferedReader openReader(InputStream is) throws IOException {
+
+		BufferedReader br = new BufferedReader(FileUtils.openReader(is));
+		skipBom(br);
+
+		return br;
+	}
 
 	/**
 	 * Ignore blank spaces and return the first text line
@@ -94,6 +229,75 @@ public abstract class BaseParser<T extends TimedTextFile> implements SubtitlePar
 		return line;
 	}
 
+	/**
+	 * Buffer the decoded chars of a subtitle. A lenient parse tracks the line numbers and
+	 * the byte offsets, to report the lines it skips, and a limited parse counts the
+	 * lines against its budget.
+	 * 
+	 * @param reader: the decoded chars
+	 * @param charset: the encoding of the file
+	 * @param options: the parse options
+	 * @param budget: the budget of the parse
+	 * @return the buffered reader
+	 */
+	private static BufferedReader newReader(Reader reader, Charset charset, ParseOptions options, Budget budget) {
+
+		if (options.getDiagnostics() != null || budget.isLimited()) {
+			return new LineTrackingReader(reader, charset, budget);
+		}
+		return new BufferedReader(reader);
+	}
+
+	/**
+	 * Read a whole stream, the size is checked as the bytes are read so that an oversized
+	 * stream is rejected without being loaded
+	 * 
+	 * @param is: the input stream
+	 * @param budget: the budget of the parse
+	 * @return the bytes
+	 * @throws IOException
+	 */
+	static byte[] readAll(InputStream is, Budget budget) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(READ_CHUNK_SIZE);
+		byte[] chunk = new byte[READ_CHUNK_SIZE];
+		int read;
+		while ((read = is.read(chunk)) != -1) {
+			bytes.write(chunk, 0, read);
+			budget.checkBytes(bytes.size());
+			budget.checkpoint();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Read a file in a heap buffer
+	 * 
+	 * @param channel: the channel of the file
+	 * @param size: the size of the file
+	 * @return the bytes, from the position to the limit of the buffer
+	 * @throws IOException
+	 */
+	private static ByteBuffer read(FileChannel channel, int size) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+			// Read until the buffer is full
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Create an empty subtitle of the type handled by the parser
+	 * 
+	 * @return the subtitle
+	 */
+	private T newSubtitle() {
+
+		return this.subtitleFactory.get();
+	}
+
 	/**
 	 * Remove the byte order mark if exists
 	 * 
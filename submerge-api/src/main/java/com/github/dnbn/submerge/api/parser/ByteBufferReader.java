@@ -0,0 +1,107 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding the bytes of a buffer as they are read, without copying them. Malformed
+ * input is replaced, as with an <code>InputStreamReader</code>.
+ * 
+ * The buffer methods are called through <code>Buffer</code>, so that the class runs on
+ * Java 8 when compiled with a later JDK.
+ */
+class ByteBufferReader extends Reader {
+
+	/**
+	 * Number of chars decoded at once
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * The bytes to decode
+	 */
+	private final ByteBuffer buffer;
+
+	private final CharsetDecoder decoder;
+
+	/**
+	 * Chars decoded and not read yet, reused for each chunk
+	 */
+	private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+	/**
+	 * True once all the bytes are decoded
+	 */
+	private boolean decoded;
+
+	/**
+	 * True once the decoder is flushed
+	 */
+	private boolean flushed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param buffer: the bytes to decode, from its position to its limit
+	 * @param charset: the encoding of the bytes
+	 */
+	ByteBufferReader(ByteBuffer buffer, Charset charset) {
+
+		this.buffer = buffer;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		// Empty until the first read
+		((Buffer) this.chars).flip();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) {
+
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!this.chars.hasRemaining()) {
+			fill();
+			if (!this.chars.hasRemaining()) {
+				return -1;
+			}
+		}
+
+		int read = Math.min(len, this.chars.remaining());
+		this.chars.get(cbuf, off, read);
+		return read;
+	}
+
+	@Override
+	public void close() {
+
+		// Nothing to release, the buffer is owned by the caller
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Decode the next chunk of chars
+	 */
+	private void fill() {
+
+		((Buffer) this.chars).clear();
+
+		if (!this.decoded && this.decoder.decode(this.buffer, this.chars, true).isUnderflow()) {
+			this.decoded = true;
+		}
+		if (this.decoded && !this.flushed && this.decoder.flush(this.chars).isUnderflow()) {
+			this.flushed = true;
+		}
+
+		((Buffer) this.chars).flip();
+	}
+
+}
@@ -0,0 +1,388 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.dnbn.submerge.api.Budget;
+import com.github.dnbn.submerge.api.parser.exception.LimitExceededException;
+import com.github.dnbn.submerge.api.subtitle.common.LazyTextLines;
+
+/**
+ * Cursor over the lines of a buffer in UTF-8 or ASCII. Line breaks, digits and
+ * separators are single bytes in these encodings, so ids and timecodes can be read
+ * without decoding the line: the current line is a <code>CharSequence</code> of its
+ * bytes, only the text is decoded.
+ */
+final class ByteLines implements CharSequence {
+
+	/**
+	 * UTF-8 byte order mark
+	 */
+	private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+	/**
+	 * The bytes of the file
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * The encoding of the bytes
+	 */
+	private final Charset charset;
+
+	/**
+	 * Budget of the parse
+	 */
+	private final Budget budget;
+
+	/**
+	 * Index of the next line
+	 */
+	private int position;
+
+	/**
+	 * Index of the first byte of the current line
+	 */
+	private int start;
+
+	/**
+	 * Index after the last byte of the current line, line break excluded
+	 */
+	private int end;
+
+	/**
+	 * Buffer used to decode the text, reused for each line
+	 */
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Constructor, the byte order mark is skipped
+	 * 
+	 * @param buffer: the bytes, from its position to its limit
+	 * @param charset: UTF-8 or US-ASCII
+	 * @param budget: the budget of the parse
+	 */
+	ByteLines(ByteBuffer buffer, Charset charset, Budget budget) {
+
+		this.buffer = buffer;
+		this.charset = charset;
+		this.budget = budget;
+		this.position = buffer.position();
+
+		if (StandardCharsets.UTF_8.equals(charset) && startsWith(UTF8_BOM)) {
+			this.position += UTF8_BOM.length;
+		}
+		this.start = this.position;
+		this.end = this.position;
+	}
+
+	/**
+	 * Check if an encoding can be read by lines of bytes
+	 * 
+	 * @param charset: the encoding
+	 * @return true for UTF-8 and US-ASCII
+	 */
+	static boolean supports(Charset charset) {
+
+		return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset);
+	}
+
+	/**
+	 * Move to the next line. Lines end with \n, \r or \r\n, as with
+	 * <code>BufferedReader.readLine</code>.
+	 * 
+	 * @return false if there are no more lines
+	 * @throws LimitExceededException if the line exceeds the budget of the parse
+	 */
+	boolean next() {
+
+		int limit = this.buffer.limit();
+		if (this.position >= limit) {
+			return false;
+		}
+
+		int i = this.position;
+		byte b = 0;
+		while (i < limit && (b = this.buffer.get(i)) != '\n' && b != '\r') {
+			i++;
+		}
+
+		this.start = this.position;
+		this.end = i;
+
+		if (i < limit) {
+			i++;
+			if (b == '\r' && i < limit && this.buffer.get(i) == '\n') {
+				i++;
+			}
+		}
+		this.position = i;
+
+		this.budget.checkLine(charLength());
+		return true;
+	}
+
+	/**
+	 * Read the lines up to the next blank line or the end of the buffer
+	 * 
+	 * @param mode: what to keep of the lines
+	 * @return the lines, empty if the lines are skipped
+	 * @throws LimitExceededException if a line exceeds the budget of the parse
+	 */
+	List<String> nextText(TextMode mode) {
+
+		if (mode == TextMode.FULL) {
+			List<String> textLines = new ArrayList<>();
+			while (next() && !isBlank()) {
+				textLines.add(toString());
+			}
+			return textLines;
+		}
+
+		int from = -1;
+		int to = -1;
+		int count = 0;
+		while (next() && !isBlank()) {
+			if (count++ == 0) {
+				from = this.start;
+			}
+			to = this.end;
+		}
+
+		if (mode == TextMode.NONE || count == 0) {
+			return new ArrayList<>();
+		}
+		if (!this.buffer.hasArray()) {
+			// A mapped file can be changed or deleted while the subtitle is in use: only the
+			// bytes of the text are kept, on the heap
+			byte[] bytes = new byte[to - from];
+			ByteBuffer text = this.buffer.duplicate();
+			text.position(from);
+			text.get(bytes);
+			return new Text(ByteBuffer.wrap(bytes), this.charset, 0, bytes.length, count);
+		}
+		return new Text(this.buffer, this.charset, from, to, count);
+	}
+
+	/**
+	 * Check if the current line has only blank characters, same as
+	 * <code>line.trim().isEmpty()</code>
+	 * 
+	 * @return true if the line is blank
+	 */
+	boolean isBlank() {
+
+		for (int i = this.start; i < this.end; i++) {
+			if ((this.buffer.get(i) & 0xFF) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parse the current line as a positive integer, blank characters around the number
+	 * are ignored
+	 * 
+	 * @return the number, or -1 if the line is not made of 1 to 9 digits
+	 */
+	int parseDigits() {
+
+		int from = this.start;
+		int to = this.end;
+		while (from < to && (this.buffer.get(from) & 0xFF) <= ' ') {
+			from++;
+		}
+		while (to > from && (this.buffer.get(to - 1) & 0xFF) <= ' ') {
+			to--;
+		}
+
+		if (from == to || to - from > 9) {
+			return -1;
+		}
+
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			byte b = this.buffer.get(i);
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + b - '0';
+		}
+		return value;
+	}
+
+	@Override
+	public int length() {
+
+		return this.end - this.start;
+	}
+
+	@Override
+	public char charAt(int index) {
+
+		return (char) (this.buffer.get(this.start + index) & 0xFF);
+	}
+
+	@Override
+	public String subSequence(int begin, int end) {
+
+		return decode(this.start + begin, this.start + end);
+	}
+
+	/**
+	 * Decode the current line
+	 * 
+	 * @return the line
+	 */
+	@Override
+	public String toString() {
+
+		return decode(this.start, this.end);
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Get the number of chars of the current line. A char is at most one byte, so the
+	 * chars are only counted when the bytes exceed the maximum length.
+	 * 
+	 * @return the number of chars, or of bytes if they are within the maximum length
+	 */
+	private int charLength() {
+
+		int length = this.end - this.start;
+		if (length <= this.budget.getMaxLineLength()) {
+			return length;
+		}
+
+		int chars = 0;
+		for (int i = this.start; i < this.end; i++) {
+			// Continuation bytes do not start a char
+			if ((this.buffer.get(i) & 0xC0) != 0x80) {
+				chars++;
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * Decode a range of bytes
+	 * 
+	 * @param from: the first byte, inclusive
+	 * @param to: the last byte, exclusive
+	 * @return the decoded string
+	 */
+	private String decode(int from, int to) {
+
+		int length = to - from;
+		if (length > this.scratch.length) {
+			this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+		}
+
+		for (int i = 0; i < length; i++) {
+			this.scratch[i] = this.buffer.get(from + i);
+		}
+
+		return new String(this.scratch, 0, length, this.charset);
+	}
+
+	/**
+	 * Check if the buffer starts with some bytes
+	 * 
+	 * @param prefix: the bytes
+	 * @return true if the buffer starts with the bytes
+	 */
+	private boolean startsWith(byte[] prefix) {
+
+		if (this.buffer.remaining() < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (this.buffer.get(this.position + i) != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Text lines kept as a range of a heap buffer, split and decoded only when they are
+	 * read
+	 */
+	private static final class Text extends LazyTextLines {
+
+		private static final long serialVersionUID = -2783427311604860916L;
+
+		private final transient ByteBuffer buffer;
+
+		private final transient Charset charset;
+
+		/**
+		 * Index of the first byte of the first line
+		 */
+		private final int from;
+
+		/**
+		 * Index after the last byte of the last line, line break excluded
+		 */
+		private final int to;
+
+		private final int count;
+
+		Text(ByteBuffer buffer, Charset charset, int from, int to, int count) {
+
+			this.buffer = buffer;
+			this.charset = charset;
+			this.from = from;
+			this.to = to;
+			this.count = count;
+		}
+
+		@Override
+		protected int lineCount() {
+
+			return this.count;
+		}
+
+		@Override
+		protected String line(int index) {
+
+			int start = this.from;
+			for (int i = 0; i < index; i++) {
+				start = lineEnd(start);
+				// Skip \n, \r or \r\n
+				if (this.buffer.get(start++) == '\r' && start < this.to && this.buffer.get(start) == '\n') {
+					start++;
+				}
+			}
+
+			int end = lineEnd(start);
+			byte[] bytes = new byte[end - start];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = this.buffer.get(start + i);
+			}
+			return new String(bytes, this.charset);
+		}
+
+		/**
+		 * Find the end of a line
+		 * 
+		 * @param start: the index of the first byte of the line
+		 * @return the index of the line break, or the end of the range
+		 */
+		private int lineEnd(int start) {
+
+			int i = start;
+			byte b;
+			while (i < this.to && (b = this.buffer.get(i)) != '\n' && b != '\r') {
+				i++;
+			}
+			return i;
+		}
+	}
+
+}
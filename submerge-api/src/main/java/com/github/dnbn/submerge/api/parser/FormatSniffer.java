@@ -0,0 +1,145 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read the first bytes of a file as text, to recognize its format without guessing its
+ * encoding: the markers looked for are ASCII, so the bytes are read as ISO-8859-1 unless
+ * a byte order mark gives a wider encoding.
+ */
+final class FormatSniffer {
+
+	/**
+	 * Number of bytes read to recognize a format
+	 */
+	static final int SNIFF_SIZE = 1024;
+
+	/**
+	 * Header of WebVTT files
+	 */
+	private static final String WEBVTT = "WEBVTT";
+
+	/**
+	 * Get the first characters of a file
+	 * 
+	 * @param bytes: the first bytes of the file
+	 * @param length: the number of bytes
+	 * @return the characters, without byte order mark
+	 */
+	static String head(byte[] bytes, int length) {
+
+		length = Math.min(length, SNIFF_SIZE);
+
+		int b0 = length > 0 ? bytes[0] & 0xFF : -1;
+		int b1 = length > 1 ? bytes[1] & 0xFF : -1;
+		int b2 = length > 2 ? bytes[2] & 0xFF : -1;
+		int b3 = length > 3 ? bytes[3] & 0xFF : -1;
+
+		if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+			return decode(bytes, 3, length, StandardCharsets.ISO_8859_1);
+		}
+		if (b0 == 0xFF && b1 == 0xFE && b2 == 0x00 && b3 == 0x00) {
+			return decode(bytes, 4, length, Charset.forName("UTF-32LE"));
+		}
+		if (b0 == 0x00 && b1 == 0x00 && b2 == 0xFE && b3 == 0xFF) {
+			return decode(bytes, 4, length, Charset.forName("UTF-32BE"));
+		}
+		if (b0 == 0xFF && b1 == 0xFE) {
+			return decode(bytes, 2, length, StandardCharsets.UTF_16LE);
+		}
+		if (b0 == 0xFE && b1 == 0xFF) {
+			return decode(bytes, 2, length, StandardCharsets.UTF_16BE);
+		}
+		return decode(bytes, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Check if a file is in WebVTT format
+	 * 
+	 * @param head: the first characters of the file
+	 * @return true if the file starts with the WebVTT header
+	 */
+	static boolean isWebVTT(CharSequence head) {
+
+		if (head.length() < WEBVTT.length() || !WEBVTT.contentEquals(head.subSequence(0, WEBVTT.length()))) {
+			return false;
+		}
+		return head.length() == WEBVTT.length() || Character.isWhitespace(head.charAt(WEBVTT.length()));
+	}
+
+	/**
+	 * Skip the blank lines and the leading spaces
+	 * 
+	 * @param head: the characters
+	 * @param from: the first index
+	 * @return the index of the first character that is not a space
+	 */
+	static int skipBlank(CharSequence head, int from) {
+
+		int i = from;
+		while (i < head.length() && Character.isWhitespace(head.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Find the end of a line
+	 * 
+	 * @param head: the characters
+	 * @param from: an index in the line
+	 * @return the index of the line break, or the length if there is none
+	 */
+	static int lineEnd(CharSequence head, int from) {
+
+		int i = from;
+		while (i < head.length() && head.charAt(i) != '\n' && head.charAt(i) != '\r') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Find the start of the next line
+	 * 
+	 * @param head: the characters
+	 * @param end: the end of the current line
+	 * @return the index of the next line
+	 */
+	static int nextLine(CharSequence head, int end) {
+
+		if (end < head.length() && head.charAt(end) == '\r') {
+			end++;
+		}
+		if (end < head.length() && head.charAt(end) == '\n') {
+			end++;
+		}
+		return end;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Decode bytes
+	 * 
+	 * @param bytes: the bytes
+	 * @param from: the first byte, inclusive
+	 * @param to: the last byte, exclusive
+	 * @param charset: the encoding
+	 * @return the characters
+	 */
+	private static String decode(byte[] bytes, int from, int to, Charset charset) {
+
+		return new String(bytes, from, to - from, charset);
+	}
+
+	/**
+	 * Private constructor
+	 */
+	private FormatSniffer() {
+
+		throw new AssertionError();
+	}
+
+}
@@ -0,0 +1,385 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.dnbn.submerge.api.Budget;
+
+/**
+ * Buffered reader that knows the number and the byte offset of the last line read, so
+ * that a lenient parse can locate the lines it skips. The byte offsets are computed by
+ * measuring the decoded chars in the encoding of the file. The lines are also counted
+ * against the budget of the parse, a line that is too long is rejected before it is
+ * fully buffered.
+ * 
+ * The buffer of <code>BufferedReader</code> is not used: all the reading methods are
+ * implemented on a buffer of this class.
+ */
+class LineTrackingReader extends BufferedReader {
+
+	/**
+	 * Number of chars read at once
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The underlying reader
+	 */
+	private final Reader in;
+
+	/**
+	 * Number of bytes of a char, 0 for UTF-8 and -1 if the chars must be encoded to be
+	 * measured
+	 */
+	private final int bytesPerChar;
+
+	/**
+	 * Encoder measuring the chars of variable width encodings other than UTF-8
+	 */
+	private final CharsetEncoder encoder;
+
+	/**
+	 * Budget of the parse
+	 */
+	private final Budget budget;
+
+	private char[] buffer = new char[BUFFER_SIZE];
+
+	/**
+	 * Index of the next char to read
+	 */
+	private int position;
+
+	/**
+	 * Index after the last char in the buffer
+	 */
+	private int limit;
+
+	/**
+	 * Byte offset of the next char to read
+	 */
+	private long offset;
+
+	/**
+	 * Number of lines read
+	 */
+	private int lineNumber;
+
+	/**
+	 * Byte offset of the last line read
+	 */
+	private long lineOffset = -1;
+
+	/**
+	 * Index of the mark in the buffer, -1 if there is no valid mark
+	 */
+	private int markPosition = -1;
+
+	private int readAheadLimit;
+
+	private long markOffset;
+
+	private int markLineNumber;
+
+	private long markLineOffset;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param in: the reader of the decoded chars
+	 * @param charset: the encoding of the file
+	 * @param budget: the budget of the parse
+	 */
+	LineTrackingReader(Reader in, Charset charset, Budget budget) {
+
+		super(in, 1);
+		this.in = in;
+		this.budget = budget;
+
+		CharsetEncoder charsetEncoder = charset.canEncode() ? charset.newEncoder() : null;
+		if (StandardCharsets.UTF_8.equals(charset)) {
+			this.bytesPerChar = 0;
+		} else if (StandardCharsets.UTF_16LE.equals(charset) || StandardCharsets.UTF_16BE.equals(charset)) {
+			this.bytesPerChar = 2;
+		} else if (charsetEncoder == null || charsetEncoder.maxBytesPerChar() <= 1) {
+			this.bytesPerChar = 1;
+		} else {
+			this.bytesPerChar = -1;
+		}
+
+		this.encoder = this.bytesPerChar < 0 ? charsetEncoder.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE) : null;
+	}
+
+	@Override
+	public String readLine() throws IOException {
+
+		long start = this.offset;
+		StringBuilder sb = null;
+
+		while (this.position < this.limit || fill()) {
+
+			int end = this.position;
+			while (end < this.limit && this.buffer[end] != '\n' && this.buffer[end] != '\r') {
+				end++;
+			}
+
+			if (end == this.limit) {
+				// The line goes on in the next chunk
+				if (sb == null) {
+					sb = new StringBuilder(end - this.position + 80);
+				}
+				sb.append(this.buffer, this.position, end - this.position);
+				this.budget.checkLineLength(sb.length());
+				consume(end);
+				continue;
+			}
+
+			String line;
+			if (sb == null) {
+				line = new String(this.buffer, this.position, end - this.position);
+			} else {
+				line = sb.append(this.buffer, this.position, end - this.position).toString();
+			}
+			consume(end);
+
+			char terminator = this.buffer[end];
+			consume(end + 1);
+			if (terminator == '\r' && (this.position < this.limit || fill()) && this.buffer[this.position] == '\n') {
+				consume(this.position + 1);
+			}
+
+			return endLine(line, start);
+		}
+
+		return sb == null ? null : endLine(sb.toString(), start);
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		if (this.position >= this.limit && !fill()) {
+			return -1;
+		}
+		char c = this.buffer[this.position];
+		consume(this.position + 1);
+		return c;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+
+		if (len == 0) {
+			return 0;
+		}
+		if (this.position >= this.limit && !fill()) {
+			return -1;
+		}
+		int count = Math.min(len, this.limit - this.position);
+		System.arraycopy(this.buffer, this.position, cbuf, off, count);
+		consume(this.position + count);
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		if (n < 0) {
+			throw new IllegalArgumentException("skip value is negative");
+		}
+		long skipped = 0;
+		while (skipped < n && (this.position < this.limit || fill())) {
+			int count = (int) Math.min(n - skipped, this.limit - this.position);
+			consume(this.position + count);
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+
+		return this.position < this.limit || this.in.ready();
+	}
+
+	@Override
+	public boolean markSupported() {
+
+		return true;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+
+		if (readAheadLimit < 0) {
+			throw new IllegalArgumentException("Read-ahead limit < 0");
+		}
+
+		if (readAheadLimit > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, readAheadLimit);
+		}
+
+		this.markPosition = this.position;
+		this.readAheadLimit = readAheadLimit;
+		this.markOffset = this.offset;
+		this.markLineNumber = this.lineNumber;
+		this.markLineOffset = this.lineOffset;
+	}
+
+	@Override
+	public void reset() throws IOException {
+
+		if (this.markPosition < 0) {
+			throw new IOException("Mark invalid");
+		}
+
+		this.position = this.markPosition;
+		this.offset = this.markOffset;
+		this.lineNumber = this.markLineNumber;
+		this.lineOffset = this.markLineOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		this.in.close();
+	}
+
+	/**
+	 * Get the number of the last line read
+	 * 
+	 * @return the line number, starting at 1, 0 if no line was read
+	 */
+	int getLineNumber() {
+
+		return this.lineNumber;
+	}
+
+	/**
+	 * Get the byte offset of the last line read
+	 * 
+	 * @return the offset from the start of the file, -1 if no line was read
+	 */
+	long getLineOffset() {
+
+		return this.lineOffset;
+	}
+
+	/**
+	 * Get the budget of the parse reading from a reader
+	 * 
+	 * @param br: the reader
+	 * @return the budget, null if the reader does not track it
+	 */
+	static Budget budgetOf(BufferedReader br) {
+
+		return br instanceof LineTrackingReader ? ((LineTrackingReader) br).budget : null;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Read the next chars once the buffer is consumed, the chars after the mark are kept
+	 * within the read-ahead limit
+	 * 
+	 * @return false at the end of the stream
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+
+		if (this.markPosition >= 0 && this.limit - this.markPosition < this.readAheadLimit) {
+			int kept = this.limit - this.markPosition;
+			System.arraycopy(this.buffer, this.markPosition, this.buffer, 0, kept);
+			this.markPosition = 0;
+			this.position = kept;
+			this.limit = kept;
+		} else {
+			// No mark, or the read-ahead limit is reached: the mark is dropped
+			this.markPosition = -1;
+			this.position = 0;
+			this.limit = 0;
+		}
+
+		int read;
+		do {
+			read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+		} while (read == 0);
+
+		if (read < 0) {
+			return false;
+		}
+		this.limit += read;
+		return true;
+	}
+
+	/**
+	 * Move the position forward and count the bytes of the consumed chars
+	 * 
+	 * @param to: the new position
+	 */
+	private void consume(int to) {
+
+		this.offset += byteLength(this.position, to);
+		this.position = to;
+	}
+
+	/**
+	 * Count a line, against the budget too
+	 * 
+	 * @param line: the line
+	 * @param start: the byte offset of the line
+	 * @return the line
+	 */
+	private String endLine(String line, long start) {
+
+		this.budget.checkLine(line.length());
+		this.lineNumber++;
+		this.lineOffset = start;
+		return line;
+	}
+
+	/**
+	 * Get the number of bytes of chars of the buffer in the encoding of the file
+	 * 
+	 * @param from: the first char, inclusive
+	 * @param to: the last char, exclusive
+	 * @return the number of bytes
+	 */
+	private long byteLength(int from, int to) {
+
+		if (this.bytesPerChar > 0) {
+			return (long) (to - from) * this.bytesPerChar;
+		}
+
+		if (this.bytesPerChar < 0) {
+			try {
+				return this.encoder.encode(CharBuffer.wrap(this.buffer, from, to - from)).remaining();
+			} catch (CharacterCodingException e) {
+				return to - from;
+			}
+		}
+
+		long length = 0;
+		for (int i = from; i < to; i++) {
+			char c = this.buffer[i];
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800 || Character.isSurrogate(c)) {
+				// A surrogate pair is 4 bytes
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,359 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.github.dnbn.submerge.api.Budget;
+import com.github.dnbn.submerge.api.Limits;
+import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
+import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.common.LazyTextLines;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Cache of parsed subtitles, keyed by the content of the files: a file uploaded again is
+ * not decoded nor parsed again. The keys are the SHA-256 digest of the bytes, with the
+ * parser and the options that change the result.
+ * 
+ * <pre>
+ * ParseCache cache = new ParseCache(64 * 1024 * 1024);
+ * TimedTextFile sub = cache.parse(is, fileName, options);
+ * </pre>
+ * 
+ * The cached subtitles are never returned: each call returns a copy that the caller can
+ * modify. The least recently used subtitles are evicted once the estimated memory they
+ * retain exceeds the maximum weight. A lenient parse, or a parse storing its text in an
+ * arena, is not cached. The cache can be shared by several threads.
+ */
+public class ParseCache {
+
+	/**
+	 * Default maximum weight, in bytes
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 64 * 1024 * 1024;
+
+	/**
+	 * Estimated memory retained by a subtitle, a line and a text line, besides the chars
+	 */
+	private static final int FILE_WEIGHT = 256;
+
+	private static final int LINE_WEIGHT = 96;
+
+	private static final int TEXT_LINE_WEIGHT = 48;
+
+	/**
+	 * Digest of the bytes of the files
+	 */
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	/**
+	 * Maximum estimated memory retained by the cached subtitles
+	 */
+	private final long maxWeight;
+
+	/**
+	 * The entries, from the least recently used
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long weight;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	/**
+	 * Constructor, the cache retains at most <code>DEFAULT_MAX_WEIGHT</code> bytes
+	 */
+	public ParseCache() {
+		this(DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxWeight: the maximum estimated memory retained by the cached subtitles, in
+	 *            bytes
+	 */
+	public ParseCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Parse a subtitle from a stream, or copy the subtitle parsed from the same bytes. The
+	 * format is recognized from the content, or from the extension of the file name.
+	 * 
+	 * @param is: the input stream
+	 * @param fileName: the file name
+	 * @param options: the parse options
+	 * @return the subtitle, a copy that can be modified
+	 * @throws InvalidSubException if the subtitle is not valid
+	 * @throws InvalidFileException if the stream cannot be read
+	 */
+	public TimedTextFile parse(InputStream is, String fileName, ParseOptions options) {
+
+		try {
+			return parse(BaseParser.readAll(is, BaseParser.newBudget(options)), fileName, options);
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
+		}
+	}
+
+	/**
+	 * Parse a subtitle from its bytes, or copy the subtitle parsed from the same bytes.
+	 * The format is recognized from the content, or from the extension of the file name.
+	 * 
+	 * @param bytes: the bytes of the file
+	 * @param fileName: the file name
+	 * @param options: the parse options
+	 * @return the subtitle, a copy that can be modified
+	 * @throws InvalidSubException if the subtitle is not valid
+	 */
+	public TimedTextFile parse(byte[] bytes, String fileName, ParseOptions options) {
+
+		Budget budget = BaseParser.newBudget(options);
+		budget.checkBytes(bytes.length);
+
+		SubtitleParser parser = ParserFactory.getParser(new ByteArrayInputStream(bytes), fileName);
+		if (options.getDiagnostics() != null || options.getTextArena() != null) {
+			return parser.parse(new ByteArrayInputStream(bytes), fileName, options);
+		}
+
+		Key key = key(bytes, parser, options);
+		TimedTextFile cached = get(key);
+		if (cached == null) {
+			cached = parser.parse(new ByteArrayInputStream(bytes), fileName, options);
+			put(key, cached, bytes.length);
+		}
+
+		TimedTextFile sub = cached.copy();
+		sub.setFileName(fileName);
+		return sub;
+	}
+
+	/**
+	 * Remove all the subtitles, the counters are kept
+	 */
+	public synchronized void clear() {
+
+		this.entries.clear();
+		this.weight = 0;
+	}
+
+	/**
+	 * Get the number of cached subtitles
+	 * 
+	 * @return the number of subtitles
+	 */
+	public synchronized int size() {
+
+		return this.entries.size();
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Get a cached subtitle and mark it as the most recently used
+	 * 
+	 * @param key: the key
+	 * @return the subtitle, null if it is not cached
+	 */
+	private synchronized TimedTextFile get(Key key) {
+
+		Entry entry = this.entries.get(key);
+		if (entry == null) {
+			this.missCount++;
+			return null;
+		}
+		this.hitCount++;
+		return entry.sub;
+	}
+
+	/**
+	 * Cache a subtitle, then evict the least recently used subtitles over the maximum
+	 * weight. A subtitle heavier than the maximum weight is not cached.
+	 * 
+	 * @param key: the key
+	 * @param sub: the subtitle
+	 * @param fileSize: the size of the file, in bytes
+	 */
+	private void put(Key key, TimedTextFile sub, int fileSize) {
+
+		long subWeight = weigh(sub, fileSize);
+		if (subWeight > this.maxWeight) {
+			return;
+		}
+
+		synchronized (this) {
+			Entry previous = this.entries.put(key, new Entry(sub, subWeight));
+			if (previous != null) {
+				// Parsed by another thread meanwhile
+				this.weight -= previous.weight;
+			}
+			this.weight += subWeight;
+
+			Iterator<Entry> it = this.entries.values().iterator();
+			while (this.weight > this.maxWeight && it.hasNext()) {
+				this.weight -= it.next().weight;
+				it.remove();
+				this.evictionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Build the key of a file
+	 * 
+	 * @param bytes: the bytes of the file
+	 * @param parser: the parser of the file
+	 * @param options: the parse options
+	 * @return the key
+	 */
+	private static Key key(byte[] bytes, SubtitleParser parser, ParseOptions options) {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		Limits limits = options.getLimits();
+		return new Key(digest.digest(bytes), bytes.length, parser.getClass(), options.getTextMode(),
+				limits == null ? 0 : limits.getMaxLines(), limits == null ? 0 : limits.getMaxLineLength());
+	}
+
+	/**
+	 * Estimate the memory retained by a subtitle. Lazy text lines are not decoded: they
+	 * retain the file they were parsed from, as bytes or as decoded chars, counted once.
+	 * 
+	 * @param sub: the subtitle
+	 * @param fileSize: the size of the file, in bytes
+	 * @return the weight, in bytes
+	 */
+	private static long weigh(TimedTextFile sub, int fileSize) {
+
+		long weight = FILE_WEIGHT;
+		boolean lazy = false;
+		for (TimedLine line : sub.getTimedLines()) {
+			weight += LINE_WEIGHT;
+			List<String> textLines = line.getTextLines();
+			if (textLines instanceof LazyTextLines) {
+				lazy = true;
+				continue;
+			}
+			for (int i = 0; i < textLines.size(); i++) {
+				weight += TEXT_LINE_WEIGHT + 2L * textLines.get(i).length();
+			}
+		}
+		if (lazy) {
+			// At most 2 bytes by char once decoded
+			weight += 2L * fileSize;
+		}
+		return weight;
+	}
+
+	// ===================== getter and setter start =====================
+
+	public long getMaxWeight() {
+		return this.maxWeight;
+	}
+
+	public synchronized long getWeight() {
+		return this.weight;
+	}
+
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Content and parse of a file
+	 */
+	private static final class Key {
+
+		/**
+		 * Digest of the bytes
+		 */
+		private final byte[] digest;
+
+		private final int length;
+
+		private final Class<?> parser;
+
+		private final TextMode textMode;
+
+		private final int maxLines;
+
+		private final int maxLineLength;
+
+		Key(byte[] digest, int length, Class<?> parser, TextMode textMode, int maxLines, int maxLineLength) {
+
+			this.digest = digest;
+			this.length = length;
+			this.parser = parser;
+			this.textMode = textMode;
+			this.maxLines = maxLines;
+			this.maxLineLength = maxLineLength;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return Arrays.equals(this.digest, other.digest) && this.length == other.length
+					&& this.parser == other.parser && this.textMode == other.textMode
+					&& this.maxLines == other.maxLines && this.maxLineLength == other.maxLineLength;
+		}
+
+		@Override
+		public int hashCode() {
+
+			// The bytes of a digest are evenly spread
+			return (this.digest[0] & 0xFF) << 24 | (this.digest[1] & 0xFF) << 16 | (this.digest[2] & 0xFF) << 8
+					| this.digest[3] & 0xFF;
+		}
+	}
+
+	/**
+	 * Cached subtitle and its weight
+	 */
+	private static final class Entry {
+
+		private final TimedTextFile sub;
+
+		private final long weight;
+
+		Entry(TimedTextFile sub, long weight) {
+
+			this.sub = sub;
+			this.weight = weight;
+		}
+	}
+
+}
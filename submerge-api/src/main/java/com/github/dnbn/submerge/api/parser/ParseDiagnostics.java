@@ -0,0 +1,244 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.BufferedReader;
+import java.util.Arrays;
+
+import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+
+/**
+ * Problems found by a lenient parse. Each problem is a line number, a byte offset and a
+ * reason, kept in arrays: no exception nor message is built for a skipped line.
+ * 
+ * <pre>
+ * ParseDiagnostics diagnostics = new ParseDiagnostics();
+ * ParseOptions options = new ParseOptions();
+ * options.setDiagnostics(diagnostics);
+ * 
+ * SRTSub sub = new SRTParser().parse(file, options);
+ * for (int i = 0; i &lt; diagnostics.size(); i++) {
+ * 	System.out.println(diagnostics.getLine(i) + ": " + diagnostics.getReason(i));
+ * }
+ * </pre>
+ */
+public class ParseDiagnostics {
+
+	/**
+	 * Default number of problems after which the parse is aborted
+	 */
+	public static final int DEFAULT_MAX_ERRORS = 100;
+
+	/**
+	 * Initial capacity of the arrays
+	 */
+	private static final int DEFAULT_CAPACITY = 8;
+
+	private static final Reason[] REASONS = Reason.values();
+
+	/**
+	 * Number of problems after which the parse is aborted
+	 */
+	private final int maxErrors;
+
+	/**
+	 * Line number of each problem, starting at 1
+	 */
+	private int[] lines = new int[DEFAULT_CAPACITY];
+
+	/**
+	 * Byte offset of the start of the line of each problem
+	 */
+	private long[] offsets = new long[DEFAULT_CAPACITY];
+
+	/**
+	 * Reason of each problem, as an ordinal
+	 */
+	private byte[] reasons = new byte[DEFAULT_CAPACITY];
+
+	/**
+	 * Number of problems
+	 */
+	private int size;
+
+	/**
+	 * Constructor, the parse is aborted after <code>DEFAULT_MAX_ERRORS</code> problems
+	 */
+	public ParseDiagnostics() {
+		this(DEFAULT_MAX_ERRORS);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxErrors: the number of problems accepted, the parse is aborted with an
+	 *            <code>InvalidSubException</code> at the next one
+	 */
+	public ParseDiagnostics(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Record a problem
+	 * 
+	 * @param reason: the reason
+	 * @param line: the line number, starting at 1, -1 if unknown
+	 * @param offset: the byte offset of the line, -1 if unknown
+	 * @throws InvalidSubException if the number of problems exceeds the budget
+	 */
+	public void add(Reason reason, int line, long offset) {
+
+		if (this.size == this.lines.length) {
+			int capacity = this.size * 2;
+			this.lines = Arrays.copyOf(this.lines, capacity);
+			this.offsets = Arrays.copyOf(this.offsets, capacity);
+			this.reasons = Arrays.copyOf(this.reasons, capacity);
+		}
+
+		this.lines[this.size] = line;
+		this.offsets[this.size] = offset;
+		this.reasons[this.size] = (byte) reason.ordinal();
+		this.size++;
+
+		if (this.size > this.maxErrors) {
+			throw new InvalidSubException("Too many errors, parse aborted at line " + line + ": " + reason);
+		}
+	}
+
+	/**
+	 * Record a problem on the last line read by a reader
+	 * 
+	 * @param reason: the reason
+	 * @param br: the reader, the position is only known if it tracks lines
+	 * @throws InvalidSubException if the number of problems exceeds the budget
+	 */
+	void add(Reason reason, BufferedReader br) {
+
+		if (br instanceof LineTrackingReader) {
+			LineTrackingReader reader = (LineTrackingReader) br;
+			add(reason, reader.getLineNumber(), reader.getLineOffset());
+		} else {
+			add(reason, -1, -1);
+		}
+	}
+
+	/**
+	 * Get the number of problems
+	 * 
+	 * @return the number of problems
+	 */
+	public int size() {
+
+		return this.size;
+	}
+
+	/**
+	 * Check if no problem was found
+	 * 
+	 * @return true if there is no problem
+	 */
+	public boolean isEmpty() {
+
+		return this.size == 0;
+	}
+
+	/**
+	 * Get the line number of a problem
+	 * 
+	 * @param index: the index of the problem
+	 * @return the line number, starting at 1, -1 if unknown
+	 */
+	public int getLine(int index) {
+
+		checkIndex(index);
+		return this.lines[index];
+	}
+
+	/**
+	 * Get the byte offset of the line of a problem
+	 * 
+	 * @param index: the index of the problem
+	 * @return the offset from the start of the file, -1 if unknown
+	 */
+	public long getOffset(int index) {
+
+		checkIndex(index);
+		return this.offsets[index];
+	}
+
+	/**
+	 * Get the reason of a problem
+	 * 
+	 * @param index: the index of the problem
+	 * @return the reason
+	 */
+	public Reason getReason(int index) {
+
+		checkIndex(index);
+		return REASONS[this.reasons[index]];
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			sb.append("line ").append(this.lines[i]);
+			sb.append(" (offset ").append(this.offsets[i]).append("): ");
+			sb.append(REASONS[this.reasons[i]]).append('\n');
+		}
+		return sb.toString();
+	}
+
+	// ======================= private methods =======================
+
+	private void checkIndex(int index) {
+
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+		}
+	}
+
+	// ===================== getter and setter start =====================
+
+	public int getMaxErrors() {
+		return this.maxErrors;
+	}
+
+	/**
+	 * Reason of a problem. The skipped part ends at the next blank line, timecode line or
+	 * section header.
+	 */
+	public enum Reason {
+
+		/**
+		 * The id of a SRT line is missing or is not a number
+		 */
+		INVALID_ID,
+
+		/**
+		 * A timecode line or a time value is not valid
+		 */
+		INVALID_TIME,
+
+		/**
+		 * The first line of an ASS script is not "[Script Info]"
+		 */
+		MISSING_HEADER,
+
+		/**
+		 * A section does not start with a valid "Format:" line, the section is skipped
+		 */
+		INVALID_FORMAT,
+
+		/**
+		 * A style line does not match the format or has no name
+		 */
+		INVALID_STYLE,
+
+		/**
+		 * A dialogue line has fewer values than the format
+		 */
+		INVALID_EVENT
+
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.github.dnbn.submerge.api.parser;
+
+import com.github.dnbn.submerge.api.CancellationToken;
+import com.github.dnbn.submerge.api.Limits;
+import com.github.dnbn.submerge.api.subtitle.common.TextArena;
+
+/**
+ * Options of a subtitle parse
+ */
+public class ParseOptions {
+
+	/**
+	 * Parse large ASS events sections on several threads. The events are kept in the order
+	 * of the file.
+	 */
+	private boolean parallel;
+
+	/**
+	 * When set, the parse is lenient: a malformed block is recorded here and skipped, the
+	 * parse resumes at the next blank line, timecode line or section header. Null for a
+	 * strict parse that throws on the first malformed line.
+	 */
+	private ParseDiagnostics diagnostics;
+
+	/**
+	 * Limits of the size of the file and of the duration of the parse, null for no limit.
+	 * A parse over the limits throws a <code>LimitExceededException</code>.
+	 */
+	private Limits limits;
+
+	/**
+	 * Token to cancel the parse from another thread, can be null
+	 */
+	private CancellationToken cancellationToken;
+
+	/**
+	 * When set, the text lines are stored in this arena and their strings are created when
+	 * they are read, the repeated values are stored once. The arena can be shared by the
+	 * parses of a batch. Null to create a string for each text line.
+	 */
+	private TextArena textArena;
+
+	/**
+	 * What the parse keeps of the text lines, the text arena is only used with
+	 * <code>FULL</code>
+	 */
+	private TextMode textMode = TextMode.FULL;
+
+	// ===================== getter and setter start =====================
+
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public ParseDiagnostics getDiagnostics() {
+		return this.diagnostics;
+	}
+
+	public void setDiagnostics(ParseDiagnostics diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	public Limits getLimits() {
+		return this.limits;
+	}
+
+	public void setLimits(Limits limits) {
+		this.limits = limits;
+	}
+
+	public CancellationToken getCancellationToken() {
+		return this.cancellationToken;
+	}
+
+	public void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	public TextArena getTextArena() {
+		return this.textArena;
+	}
+
+	public void setTextArena(TextArena textArena) {
+		this.textArena = textArena;
+	}
+
+	public TextMode getTextMode() {
+		return this.textMode;
+	}
+
+	public void setTextMode(TextMode textMode) {
+		this.textMode = textMode;
+	}
+
+}
@@ -1,29 +1,195 @@
 package com.github.dnbn.submerge.api.parser;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.NotImplementedException;
 
+import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
+
+/**
+ * Registry of the subtitle formats, loaded once with <code>ServiceLoader</code>. The
+ * parsers are shared: they are stateless and can be used by several threads.
+ */
 public final class ParserFactory {
 
 	/**
 	 * Return the subtitle parser for the subtitle format matching the extension
 	 * 
 	 * @param extension the subtitle extention
-	 * @return the subtitle parser, null if no matching parser
+	 * @return the subtitle parser
+	 * @throws NotImplementedException if no format matches the extension
 	 */
 	public static SubtitleParser getParser(String extension) {
 
-		SubtitleParser parser = null;
-		String lowerExt = extension.toLowerCase();
-		
-		if ("ass".equals(lowerExt) || "ssa".equals(lowerExt)) {
-			parser = new ASSParser();
-		} else if ("srt".equalsIgnoreCase(lowerExt)) {
-			parser = new SRTParser();
-		} else {
+		SubtitleFormat format = getFormat(extension);
+		if (format == null) {
 			throw new NotImplementedException(extension + " format not supported");
 		}
-		
-		return parser;
+		return format.getParser();
+	}
+
+	/**
+	 * Return the subtitle parser for a file, from its content or from its extension if the
+	 * content is not recognized
+	 * 
+	 * @param file the subtitle file
+	 * @return the subtitle parser
+	 * @throws NotImplementedException if the format is not supported
+	 * @throws InvalidFileException if the file cannot be read
+	 */
+	public static SubtitleParser getParser(File file) {
+
+		try (InputStream is = new FileInputStream(file)) {
+			return getParser(readHead(is), file.getName());
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
+		}
+	}
+
+	/**
+	 * Return the subtitle parser for a stream, from its content or from the extension of
+	 * its file name if the content is not recognized. The stream is reset to its current
+	 * position.
+	 * 
+	 * @param is the input stream, that must support mark and reset
+	 * @param fileName the file name
+	 * @return the subtitle parser
+	 * @throws NotImplementedException if the format is not supported
+	 * @throws InvalidFileException if the stream cannot be read
+	 */
+	public static SubtitleParser getParser(InputStream is, String fileName) {
+
+		if (!is.markSupported()) {
+			throw new IllegalArgumentException("The stream must support mark and reset");
+		}
+
+		try {
+			is.mark(FormatSniffer.SNIFF_SIZE);
+			String head = readHead(is);
+			is.reset();
+			return getParser(head, fileName);
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
+		}
+	}
+
+	/**
+	 * Return the subtitle format matching the extension
+	 * 
+	 * @param extension the subtitle extension
+	 * @return the format, null if no format matches
+	 */
+	public static SubtitleFormat getFormat(String extension) {
+
+		String lowerExt = extension.toLowerCase();
+		for (SubtitleFormat format : getFormats()) {
+			if (format.hasExtension(lowerExt)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Recognize the format of a subtitle from its first bytes, whatever its extension
+	 * 
+	 * @param bytes the first bytes of the subtitle, one kilobyte is enough
+	 * @param length the number of bytes
+	 * @return the format, null if the content is not recognized
+	 * @throws NotImplementedException if the content is in a known but unsupported format
+	 */
+	public static SubtitleFormat detectFormat(byte[] bytes, int length) {
+
+		return detectFormat(FormatSniffer.head(bytes, length));
+	}
+
+	/**
+	 * Get the registered formats
+	 * 
+	 * @return the formats, in registration order
+	 */
+	public static List<SubtitleFormat> getFormats() {
+
+		return Registry.FORMATS;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Return the parser from the first characters of a file, or from its extension
+	 * 
+	 * @param head the first characters
+	 * @param fileName the file name
+	 * @return the parser
+	 */
+	private static SubtitleParser getParser(String head, String fileName) {
+
+		SubtitleFormat format = detectFormat(head);
+		if (format != null) {
+			return format.getParser();
+		}
+		return getParser(FilenameUtils.getExtension(fileName));
+	}
+
+	/**
+	 * Recognize a format from the first characters of a file
+	 * 
+	 * @param head the first characters
+	 * @return the format, null if not recognized
+	 */
+	private static SubtitleFormat detectFormat(String head) {
+
+		for (SubtitleFormat format : getFormats()) {
+			if (format.matches(head)) {
+				return format;
+			}
+		}
+		if (FormatSniffer.isWebVTT(head)) {
+			throw new NotImplementedException("WebVTT format not supported");
+		}
+		return null;
+	}
+
+	/**
+	 * Read the first characters of a stream
+	 * 
+	 * @param is the stream
+	 * @return the characters
+	 * @throws IOException
+	 */
+	private static String readHead(InputStream is) throws IOException {
+
+		byte[] bytes = new byte[FormatSniffer.SNIFF_SIZE];
+		int length = 0;
+		int read;
+		while (length < bytes.length && (read = is.read(bytes, length, bytes.length - length)) != -1) {
+			length += read;
+		}
+		return FormatSniffer.head(bytes, length);
+	}
+
+	/**
+	 * Formats loaded on first use
+	 */
+	private static final class Registry {
+
+		static final List<SubtitleFormat> FORMATS;
+
+		static {
+			List<SubtitleFormat> formats = new ArrayList<>();
+			for (SubtitleFormat format : ServiceLoader.load(SubtitleFormat.class, ParserFactory.class.getClassLoader())) {
+				formats.add(format);
+			}
+			FORMATS = Collections.unmodifiableList(formats);
+		}
 	}
 
 	/**
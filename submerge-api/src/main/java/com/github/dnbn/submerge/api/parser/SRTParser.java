@@ -2,33 +2,106 @@ package com.github.dnbn.submerge.api.parser;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.time.LocalTime;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.github.dnbn.submerge.api.Budget;
+import com.github.dnbn.submerge.api.parser.ParseDiagnostics.Reason;
+import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
 import com.github.dnbn.submerge.api.parser.exception.InvalidSRTSubException;
 import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.common.TextArena;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTTime;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
 
 /**
  * Parse SRT subtitles
  */
 public final class SRTParser extends BaseParser<SRTSub> {
 
+	/**
+	 * Separator of the start and end times
+	 */
+	private static final String ARROW = SRTTime.DELIMITER.trim();
+
+	/**
+	 * Returned by toId when the line is not an id
+	 */
+	private static final int NOT_AN_ID = Integer.MIN_VALUE;
+
+	/**
+	 * Constructor
+	 */
+	public SRTParser() {
+		super(SRTSub::new);
+	}
+
 	@Override
-	protected void parse(BufferedReader br, SRTSub sub) throws IOException, InvalidSubException {
+	protected void parse(BufferedReader br, SRTSub sub, ParseOptions options) throws IOException,
+			InvalidSubException {
 
-		boolean found = true;
-		while (found) {
-			SRTLine line = firstIn(br);
-			if (found = (line != null)) {
-				sub.add(line);
+		TextArena arena = textArena(options);
+		TextMode mode = options.getTextMode();
+		keepDuplicates(sub, mode);
+		ParseDiagnostics diagnostics = options.getDiagnostics();
+		if (diagnostics != null) {
+			SRTLine line;
+			int lastId = 0;
+			while ((line = firstIn(br, diagnostics, lastId, mode)) != null) {
+				sub.add(store(line, arena));
+				lastId = line.getId();
 			}
+			return;
+		}
+
+		SRTReader reader = new SRTReader(br, mode);
+
+		SRTLine line;
+		while ((line = reader.next()) != null) {
+			sub.add(store(line, arena));
+		}
+	}
+
+	@Override
+	protected void parse(ByteBuffer buffer, Charset charset, SRTSub sub, ParseOptions options) throws IOException,
+			InvalidSubException {
+
+		if (!ByteLines.supports(charset) || options.getDiagnostics() != null) {
+			// The lenient parse reads lines from a reader, to track their positions
+			super.parse(buffer, charset, sub, options);
+			return;
+		}
+
+		Budget budget = newBudget(options);
+		budget.checkBytes(buffer.remaining());
+
+		// Ids and timecodes are read from the bytes, only the text is decoded
+		ByteLines lines = new ByteLines(buffer, charset, budget);
+		TextArena arena = textArena(options);
+		SRTLine line;
+		TextMode mode = options.getTextMode();
+		keepDuplicates(sub, mode);
+		while ((line = firstIn(lines, mode)) != null) {
+			sub.add(store(line, arena));
+		}
+	}
+
+	@Override
+	public SRTReader reader(InputStream is) {
+
+		try {
+			return new SRTReader(openReader(is));
+		} catch (IOException e) {
+			throw new InvalidFileException(e);
 		}
 	}
 
@@ -44,11 +117,12 @@ public final class SRTParser extends BaseParser<SRTSub> {
 	 * </pre>
 	 * 
 	 * @param br
+	 * @param mode: what to keep of the text lines
 	 * @return SRTLine the line extracted, null if no SRTLine found
 	 * @throws IOException
 	 * @throws InvalidSRTSubException
 	 */
-	private static SRTLine firstIn(BufferedReader br) throws IOException, InvalidSRTSubException {
+	static SRTLine firstIn(BufferedReader br, TextMode mode) throws IOException, InvalidSRTSubException {
 
 		String idLine = readFirstTextLine(br);
 		String timeLine = br.readLine();
@@ -60,16 +134,170 @@ public final class SRTParser extends BaseParser<SRTSub> {
 		int id = parseId(idLine);
 		SRTTime time = parseTime(timeLine);
 
+		return new SRTLine(id, time, readText(br, mode));
+	}
+
+	/**
+	 * Extract the first valid SRTLine found in a buffered reader, skipping the malformed
+	 * blocks. After a malformed line, the parse resumes at the next blank line or timecode
+	 * line: a timecode line without a valid id gets the id of the previous line plus one.
+	 * 
+	 * @param br: the buffered reader
+	 * @param diagnostics: the problems found
+	 * @param lastId: the id of the previous SRTLine, 0 if none
+	 * @param mode: what to keep of the text lines
+	 * @return SRTLine the line extracted, null if no SRTLine found
+	 * @throws IOException
+	 * @throws InvalidSubException if there are too many problems
+	 */
+	static SRTLine firstIn(BufferedReader br, ParseDiagnostics diagnostics, int lastId, TextMode mode)
+			throws IOException {
+
+		String idLine = readFirstTextLine(br);
+		while (idLine != null) {
+
+			int id = toId(idLine);
+			SRTTime time;
+			String skipped;
+
+			if (id == NOT_AN_ID) {
+				diagnostics.add(Reason.INVALID_ID, br);
+				time = toTime(idLine);
+				skipped = idLine;
+			} else {
+				String timeLine = br.readLine();
+				if (timeLine == null) {
+					return null;
+				}
+				time = toTime(timeLine);
+				if (time == null) {
+					diagnostics.add(Reason.INVALID_TIME, br);
+					id = NOT_AN_ID;
+				}
+				skipped = timeLine;
+			}
+
+			// Resynchronize at the next blank line or timecode line
+			String testLine = skipped;
+			while (time == null && (testLine = br.readLine()) != null && !StringUtils.isBlank(testLine)) {
+				time = toTime(testLine);
+				if (time != null) {
+					id = toId(skipped);
+				}
+				skipped = testLine;
+			}
+
+			if (time == null) {
+				if (testLine == null) {
+					return null;
+				}
+				idLine = readFirstTextLine(br);
+				continue;
+			}
+
+			return new SRTLine(id == NOT_AN_ID ? lastId + 1 : id, time, readText(br, mode));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Extract the first SRTLine found in lines of bytes, same as
+	 * <code>firstIn(BufferedReader, TextMode)</code>
+	 * 
+	 * @param lines: the lines of bytes
+	 * @param mode: what to keep of the text lines
+	 * @return SRTLine the line extracted, null if no SRTLine found
+	 * @throws InvalidSRTSubException
+	 */
+	static SRTLine firstIn(ByteLines lines, TextMode mode) throws InvalidSRTSubException {
+
+		boolean found;
+		while ((found = lines.next()) && lines.isBlank()) {
+			// Ignore blank lines
+		}
+
+		if (!found) {
+			return null;
+		}
+
+		int id = lines.parseDigits();
+		String idLine = id < 0 ? lines.toString() : null;
+
+		if (!lines.next()) {
+			return null;
+		}
+
+		if (id < 0) {
+			id = parseId(idLine);
+		}
+		SRTTime time = parseTime(lines);
+
+		return new SRTLine(id, time, lines.nextText(mode));
+	}
+
+	/**
+	 * Read the text lines of a SRTLine, up to the next blank line
+	 * 
+	 * @param br: the buffered reader
+	 * @param mode: what to keep of the lines, the lines are kept as read unless they are
+	 *            skipped
+	 * @return the text lines, empty if they are skipped
+	 * @throws IOException
+	 */
+	private static List<String> readText(BufferedReader br, TextMode mode) throws IOException {
+
 		List<String> textLines = new ArrayList<>();
 		String testLine;
 		while ((testLine = br.readLine()) != null) {
 			if (StringUtils.isEmpty(testLine.trim())) {
 				break;
 			}
-			textLines.add(testLine);
+			if (mode != TextMode.NONE) {
+				textLines.add(testLine);
+			}
 		}
+		return textLines;
+	}
+
+	/**
+	 * Get the arena storing the text of a parse
+	 * 
+	 * @param options: the parse options
+	 * @return the arena, null if the text is not stored in an arena
+	 */
+	private static TextArena textArena(ParseOptions options) {
+
+		return options.getTextMode() == TextMode.FULL ? options.getTextArena() : null;
+	}
+
+	/**
+	 * Keep all the lines of a timing-only parse: without text, the lines that share the
+	 * same times compare equal
+	 * 
+	 * @param sub: the subtitle, before its lines are added
+	 * @param mode: what to keep of the text lines
+	 */
+	private static void keepDuplicates(SRTSub sub, TextMode mode) {
 
-		return new SRTLine(id, time, textLines);
+		if (mode == TextMode.NONE) {
+			sub.setLines(new TimedLineSet<>(true));
+		}
+	}
+
+	/**
+	 * Move the text of a line to a text arena
+	 * 
+	 * @param line: the line
+	 * @param arena: the arena, null to keep the text as it is
+	 * @return the line
+	 */
+	private static SRTLine store(SRTLine line, TextArena arena) {
+
+		if (arena != null) {
+			line.setTextLines(arena.add(line.getTextLines()));
+		}
+		return line;
 	}
 
 	/**
@@ -98,18 +326,19 @@ public final class SRTParser extends BaseParser<SRTSub> {
 	 * @return the SRTTime object
 	 * @throws InvalidSRTSubException
 	 */
-	private static SRTTime parseTime(String timeLine) throws InvalidSRTSubException {
+	private static SRTTime parseTime(CharSequence timeLine) throws InvalidSRTSubException {
 
-		SRTTime time = null;
-		String times[] = timeLine.split(SRTTime.DELIMITER.trim());
+		int delimiter = findDelimiter(timeLine);
+		int endBegin = delimiter + ARROW.length();
 
-		if (times.length != 2) {
+		if (delimiter < 0) {
 			throw new InvalidSRTSubException("Subtitle " + timeLine + " - invalid times : " + timeLine);
 		}
 
+		SRTTime time = null;
 		try {
-			LocalTime start = SRTTime.fromString(times[0]);
-			LocalTime end = SRTTime.fromString(times[1]);
+			long start = TimecodeUtils.parseMillis(timeLine, 0, delimiter);
+			long end = TimecodeUtils.parseMillis(timeLine, endBegin, timeLine.length());
 			time = new SRTTime(start, end);
 		} catch (DateTimeParseException e) {
 			throw new InvalidSRTSubException("Invalid time string : " + timeLine, e);
@@ -118,4 +347,104 @@ public final class SRTParser extends BaseParser<SRTSub> {
 		return time;
 	}
 
+	/**
+	 * Extract a subtitle id from string without throwing an exception, the same values as
+	 * <code>parseId</code> are accepted
+	 * 
+	 * @param textLine ex 1
+	 * @return the id, NOT_AN_ID if the line is not an int
+	 */
+	private static int toId(String textLine) {
+
+		String trimmed = textLine.trim();
+		int i = 0;
+		boolean negative = false;
+		if (!trimmed.isEmpty() && (trimmed.charAt(0) == '-' || trimmed.charAt(0) == '+')) {
+			negative = trimmed.charAt(0) == '-';
+			i++;
+		}
+		if (i == trimmed.length()) {
+			return NOT_AN_ID;
+		}
+
+		long id = 0;
+		for (; i < trimmed.length(); i++) {
+			char c = trimmed.charAt(i);
+			if (c < '0' || c > '9') {
+				return NOT_AN_ID;
+			}
+			id = id * 10 + (c - '0');
+			if (id > Integer.MAX_VALUE) {
+				return NOT_AN_ID;
+			}
+		}
+		return (int) (negative ? -id : id);
+	}
+
+	/**
+	 * Extract a subtitle time from string without throwing an exception
+	 * 
+	 * @param timeLine: ex 00:02:08,822 --> 00:02:11,574
+	 * @return the SRTTime object, null if the line is not a valid timecode line
+	 */
+	private static SRTTime toTime(CharSequence timeLine) {
+
+		int delimiter = findDelimiter(timeLine);
+		if (delimiter < 0) {
+			return null;
+		}
+
+		long start = TimecodeUtils.tryParseMillis(timeLine, 0, delimiter);
+		long end = TimecodeUtils.tryParseMillis(timeLine, delimiter + ARROW.length(), timeLine.length());
+		if (start < 0 || end < 0) {
+			return null;
+		}
+		return new SRTTime(start, end);
+	}
+
+	/**
+	 * Find the arrow between the start and the end times
+	 * 
+	 * @param timeLine: ex 00:02:08,822 --> 00:02:11,574
+	 * @return the index of the arrow, -1 if there is not exactly one arrow followed by a
+	 *         time
+	 */
+	private static int findDelimiter(CharSequence timeLine) {
+
+		int delimiter = indexOf(timeLine, ARROW, 0);
+		int endBegin = delimiter + ARROW.length();
+
+		if (delimiter < 0 || endBegin == timeLine.length() || indexOf(timeLine, ARROW, endBegin) >= 0) {
+			return -1;
+		}
+		return delimiter;
+	}
+
+	/**
+	 * Find a string in a char sequence
+	 * 
+	 * @param text: the char sequence
+	 * @param search: the string to find
+	 * @param from: the index to start from
+	 * @return the index of the string, -1 if not found
+	 */
+	private static int indexOf(CharSequence text, String search, int from) {
+
+		if (text instanceof String) {
+			return ((String) text).indexOf(search, from);
+		}
+
+		int last = text.length() - search.length();
+		for (int i = from; i <= last; i++) {
+			int j = 0;
+			while (j < search.length() && text.charAt(i + j) == search.charAt(j)) {
+				j++;
+			}
+			if (j == search.length()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 }
@@ -0,0 +1,58 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+import com.github.dnbn.submerge.api.parser.exception.InvalidSRTSubException;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
+
+/**
+ * Read SRT subtitles line by line
+ */
+public class SRTReader implements SubtitleReader<SRTLine> {
+
+	/**
+	 * The underlying reader
+	 */
+	private final BufferedReader br;
+
+	/**
+	 * What to keep of the text lines
+	 */
+	private final TextMode mode;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param br: the buffered reader, positioned at the beginning of the subtitle
+	 */
+	SRTReader(BufferedReader br) {
+
+		this(br, TextMode.FULL);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param br: the buffered reader, positioned at the beginning of the subtitle
+	 * @param mode: what to keep of the text lines
+	 */
+	SRTReader(BufferedReader br, TextMode mode) {
+
+		this.br = br;
+		this.mode = mode;
+	}
+
+	@Override
+	public SRTLine next() throws IOException, InvalidSRTSubException {
+
+		return SRTParser.firstIn(this.br, this.mode);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		this.br.close();
+	}
+
+}
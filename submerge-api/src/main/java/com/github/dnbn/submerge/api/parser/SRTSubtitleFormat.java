@@ -0,0 +1,69 @@
+package com.github.dnbn.submerge.api.parser;
+
+/**
+ * SubRip subtitle format: the first text line is a number, followed by a timecode line
+ * 
+ * <pre>
+ * 1
+ * 00:02:46,813 --&gt; 00:02:50,063
+ * </pre>
+ */
+public final class SRTSubtitleFormat implements SubtitleFormat {
+
+	/**
+	 * Separator of the start and end times
+	 */
+	private static final String ARROW = "-->";
+
+	/**
+	 * Parser, stateless
+	 */
+	private static final SRTParser PARSER = new SRTParser();
+
+	@Override
+	public String getName() {
+
+		return "srt";
+	}
+
+	@Override
+	public boolean hasExtension(String extension) {
+
+		return "srt".equals(extension);
+	}
+
+	@Override
+	public boolean matches(CharSequence head) {
+
+		// Id line: a number, as read by the parser
+		int start = FormatSniffer.skipBlank(head, 0);
+		int end = FormatSniffer.lineEnd(head, start);
+		String id = head.subSequence(start, end).toString().trim();
+		if (id.isEmpty()) {
+			return false;
+		}
+		int digits = id.charAt(0) == '+' || id.charAt(0) == '-' ? 1 : 0;
+		if (digits == id.length()) {
+			return false;
+		}
+		for (int i = digits; i < id.length(); i++) {
+			if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+				return false;
+			}
+		}
+
+		// Timecode line: starts with a digit and contains the arrow
+		start = FormatSniffer.nextLine(head, end);
+		end = FormatSniffer.lineEnd(head, start);
+		String time = head.subSequence(start, end).toString().trim();
+
+		return !time.isEmpty() && Character.isDigit(time.charAt(0)) && time.contains(ARROW);
+	}
+
+	@Override
+	public SubtitleParser getParser() {
+
+		return PARSER;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.github.dnbn.submerge.api.parser;
+
+/**
+ * A subtitle format supported by the parsers.
+ * 
+ * Formats are discovered with <code>java.util.ServiceLoader</code>: an implementation is
+ * registered by listing its class name in
+ * <code>META-INF/services/com.github.dnbn.submerge.api.parser.SubtitleFormat</code>. A
+ * format is loaded once and shared, its parser must be stateless.
+ */
+public interface SubtitleFormat {
+
+	/**
+	 * Get the name of the format, which is also its usual extension
+	 * 
+	 * @return the name, in lower case
+	 */
+	String getName();
+
+	/**
+	 * Check if files with an extension are usually in this format
+	 * 
+	 * @param extension: the extension, in lower case and without the dot
+	 * @return true if the extension belongs to this format
+	 */
+	boolean hasExtension(String extension);
+
+	/**
+	 * Check if the beginning of a file is in this format
+	 * 
+	 * @param head: the first characters of the file, without byte order mark
+	 * @return true if the content is in this format
+	 */
+	boolean matches(CharSequence head);
+
+	/**
+	 * Get the parser of the format
+	 * 
+	 * @return the parser, shared and thread-safe
+	 */
+	SubtitleParser getParser();
+}
@@ -5,12 +5,15 @@ import java.io.InputStream;
 
 import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
 import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 
 public interface SubtitleParser {
 
 	/**
-	 * Parse a subtitle file and return the corresponding subtitle object
+	 * Parse a subtitle file and return the corresponding subtitle object. A file over
+	 * 16 MiB is mapped in memory: it stays mapped until the mapping is garbage collected,
+	 * and on some systems it cannot be replaced nor truncated meanwhile.
 	 * 
 	 * @param file the subtitle file
 	 * @return the subtitle object
@@ -19,6 +22,18 @@ public interface SubtitleParser {
 	 */
 	TimedTextFile parse(File file);
 
+	/**
+	 * Parse a subtitle file and return the corresponding subtitle object, see
+	 * <code>parse(File)</code>
+	 * 
+	 * @param file the subtitle file
+	 * @param options the parse options
+	 * @return the subtitle object
+	 * @throws InvalidSubException if the subtitle is not valid
+	 * @throws InvalidFileException if the file is not valid
+	 */
+	TimedTextFile parse(File file, ParseOptions options);
+
 	/**
 	 * Parse a subtitle file from an inputstream and return the corresponding subtitle
 	 * object
@@ -30,4 +45,28 @@ public interface SubtitleParser {
 	 * @throws InvalidFileException if the file is not valid
 	 */
 	TimedTextFile parse(InputStream is, String fileName);
+
+	/**
+	 * Parse a subtitle file from an inputstream and return the corresponding subtitle
+	 * object
+	 * 
+	 * @param is the input stream
+	 * @param fileName the fileName
+	 * @param options the parse options
+	 * @return the subtitle object
+	 * @throws InvalidSubException if the subtitle is not valid
+	 * @throws InvalidFileException if the file is not valid
+	 */
+	TimedTextFile parse(InputStream is, String fileName, ParseOptions options);
+
+	/**
+	 * Open a reader returning the lines of a subtitle one at a time, without loading the
+	 * whole subtitle in memory
+	 * 
+	 * @param is the input stream
+	 * @return the subtitle reader
+	 * @throws InvalidSubException if the subtitle header is not valid
+	 * @throws InvalidFileException if the stream cannot be read
+	 */
+	SubtitleReader<? extends TimedLine> reader(InputStream is);
 }
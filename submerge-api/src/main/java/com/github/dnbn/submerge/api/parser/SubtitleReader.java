@@ -0,0 +1,28 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+
+/**
+ * Pull-style reader that returns the lines of a subtitle one at a time. Lines are never
+ * accumulated, so the memory used does not depend on the length of the subtitle.
+ * 
+ * Closing the reader closes the underlying stream.
+ *
+ * @param <T> the type of line returned
+ */
+public interface SubtitleReader<T extends TimedLine> extends Closeable {
+
+	/**
+	 * Read the next line of the subtitle
+	 * 
+	 * @return the next line, null if the end of the subtitle has been reached
+	 * @throws IOException
+	 * @throws InvalidSubException if the line is not valid
+	 */
+	T next() throws IOException;
+
+}
@@ -0,0 +1,29 @@
+package com.github.dnbn.submerge.api.parser;
+
+/**
+ * What a parse keeps of the text lines of a subtitle
+ */
+public enum TextMode {
+
+	/**
+	 * The text lines are decoded and stored when the subtitle is parsed
+	 */
+	FULL,
+
+	/**
+	 * The text lines keep ranges of the bytes or of the decoded lines of the file, they
+	 * are decoded and split only when they are read. SRT text is kept as bytes when the
+	 * file is in UTF-8 or ASCII and the parse is not lenient, otherwise the text is
+	 * decoded as with <code>FULL</code>. A large file parsed from a <code>File</code> is
+	 * mapped in memory only during the parse: the bytes of each text are then copied.
+	 */
+	LAZY,
+
+	/**
+	 * Timing only: the text lines are skipped and the parsed lines have no text. Lines
+	 * with the same times are then equal, they are all kept, see
+	 * <code>TimedLineSet.isKeepDuplicates</code>.
+	 */
+	NONE
+
+}
@@ -0,0 +1,51 @@
+package com.github.dnbn.submerge.api.parser;
+
+import java.util.Iterator;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Reader over the lines of a subtitle already in memory, so that it can be used wherever
+ * a streamed subtitle is expected
+ */
+public class TimedTextFileReader implements SubtitleReader<TimedLine> {
+
+	/**
+	 * The lines left to read
+	 */
+	private final Iterator<? extends TimedLine> lines;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param sub: the subtitle to read
+	 */
+	public TimedTextFileReader(TimedTextFile sub) {
+
+		this(sub.getTimedLines());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param lines: the lines to read
+	 */
+	public TimedTextFileReader(Iterable<? extends TimedLine> lines) {
+
+		this.lines = lines.iterator();
+	}
+
+	@Override
+	public TimedLine next() {
+
+		return this.lines.hasNext() ? this.lines.next() : null;
+	}
+
+	@Override
+	public void close() {
+
+		// Nothing to release
+	}
+
+}
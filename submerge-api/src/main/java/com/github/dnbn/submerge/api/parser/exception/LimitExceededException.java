@@ -0,0 +1,28 @@
+package com.github.dnbn.submerge.api.parser.exception;
+
+/**
+ * Thrown when a subtitle or an operation on it exceeds the configured limits
+ */
+public class LimitExceededException extends InvalidSubException {
+
+	private static final long serialVersionUID = -3262907340217622170L;
+
+	public LimitExceededException() {
+	}
+
+	public LimitExceededException(String arg0) {
+		super(arg0);
+	}
+
+	public LimitExceededException(Throwable arg0) {
+		super(arg0);
+	}
+
+	public LimitExceededException(String arg0, Throwable arg1) {
+		super(arg0, arg1);
+	}
+
+	public LimitExceededException(String arg0, Throwable arg1, boolean arg2, boolean arg3) {
+		super(arg0, arg1, arg2, arg3);
+	}
+}
@@ -1,14 +1,23 @@
 package com.github.dnbn.submerge.api.subtitle.ass;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang.SerializationUtils;
+
+import com.github.dnbn.submerge.api.codec.SerializedSubtitle;
 import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.writer.ASSWriter;
 
 /**
  * The class <code>ASSSub</code> represents a SubStation Alpha subtitle
@@ -71,37 +80,100 @@ public class ASSSub implements TimedTextFile {
 	 * Events for the script - all the subtitles, comments, pictures, sounds, movies and
 	 * commands
 	 */
-	private Set<Events> events = new TreeSet<>();
+	private Set<Events> events = new TimedLineSet<>();
+
+	@Override
+	public ASSSub copy() {
+
+		ASSSub copy = new ASSSub();
+		copy.filename = this.filename;
+		// The header is small, it is cloned
+		copy.scriptInfo = (ScriptInfo) SerializationUtils.clone(this.scriptInfo);
+		copy.style = new ArrayList<>(this.style.size());
+		this.style.forEach(s -> copy.style.add((V4Style) SerializationUtils.clone(s)));
+		copy.events = TimedLineSet.emptyLike(this.events);
+		this.events.forEach(e -> copy.events.add(e.copy()));
+		return copy;
+	}
 
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 
+		appendHeader(sb);
+
+		// [Events]
+		this.events.forEach(e -> {
+			e.appendTo(sb);
+			sb.append(NEW_LINE);
+		});
+
+		return sb.toString();
+	}
+
+	/**
+	 * Append everything that comes before the first event: the script info, the styles
+	 * and the events format line
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendHeader(StringBuilder sb) {
+
 		// [Script Info]
-		sb.append(SCRIPT_INFO).append(NEW_LINE).append(this.scriptInfo.toString());
+		sb.append(SCRIPT_INFO).append(NEW_LINE);
+		this.scriptInfo.appendTo(sb);
 		sb.append(NEW_LINE).append(NEW_LINE);
 
 		// [V4 Styles]
 		sb.append(V4_STYLES).append(NEW_LINE);
 		sb.append(FORMAT).append(SEP).append(V4Style.FORMAT_STRING).append(NEW_LINE);
-		this.style.forEach(s -> sb.append(s.toString()).append(NEW_LINE));
+		this.style.forEach(s -> {
+			s.appendTo(sb);
+			sb.append(NEW_LINE);
+		});
 		sb.append(NEW_LINE);
 
 		// [Events]
 		sb.append(EVENTS).append(NEW_LINE);
 		sb.append(FORMAT).append(SEP).append(Events.FORMAT_STRING).append(NEW_LINE);
-		this.events.forEach(e -> sb.append(e.toString()).append(NEW_LINE));
+	}
 
-		return sb.toString();
+	/**
+	 * Get the ass file as an UTF-8 input stream
+	 * 
+	 * @return the file
+	 */
+	public InputStream toInputStream() {
+		return toInputStream(StandardCharsets.UTF_8);
 	}
 
 	/**
 	 * Get the ass file as an input stream
 	 * 
+	 * @param charset: the charset used to encode the file
 	 * @return the file
 	 */
-	public InputStream toInputStream() {
-		return new ByteArrayInputStream(toString().getBytes());
+	public InputStream toInputStream(Charset charset) {
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ASSWriter writer = new ASSWriter(bos, charset)) {
+			writer.write(this);
+		} catch (IOException e) {
+			// Cannot happen when writing in memory
+			throw new UncheckedIOException(e);
+		}
+		return bos.toInputStream();
+	}
+
+	/**
+	 * Serialize the subtitle encoded, see <code>SerializedSubtitle</code>
+	 * 
+	 * @return the serialized form
+	 * @throws ObjectStreamException
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+
+		return new SerializedSubtitle(this);
 	}
 
 	// ===================== getter and setter start =====================
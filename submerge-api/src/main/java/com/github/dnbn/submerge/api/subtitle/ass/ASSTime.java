@@ -4,6 +4,7 @@ import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 
 import com.github.dnbn.submerge.api.subtitle.common.SubtitleTime;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
 
 /**
  * The class <code>ASSTime</code> represents a SubStation Alpha time : meaning the time at
@@ -34,6 +35,16 @@ public class ASSTime extends SubtitleTime {
 		super(start, end);
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param start: the start time in milliseconds
+	 * @param end: the end time in milliseconds
+	 */
+	public ASSTime(long start, long end) {
+		super(start, end);
+	}
+
 	/**
 	 * Constructor
 	 */
@@ -49,7 +60,9 @@ public class ASSTime extends SubtitleTime {
 	 */
 	public static String format(LocalTime time) {
 
-		return time.format(FORMATTER);
+		StringBuilder sb = new StringBuilder(10);
+		TimecodeUtils.appendASS(sb, TimecodeUtils.toMillis(time));
+		return sb.toString();
 	}
 
 	/**
@@ -62,6 +75,6 @@ public class ASSTime extends SubtitleTime {
 	 */
 	public static LocalTime fromString(String time) {
 
-		return LocalTime.parse(time.replace(',', '.'), FORMATTER);
+		return TimecodeUtils.toLocalTime(TimecodeUtils.parseMillis(time), time);
 	}
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 
 import com.github.dnbn.submerge.api.subtitle.common.SubtitleLine;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
 
 /**
  * Contain the subtitle text, their timings, and how it should be displayed. The fields
@@ -33,6 +34,21 @@ public class Events extends SubtitleLine<ASSTime> {
 	 */
 	public static final String FORMAT_STRING = "Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text";
 
+	/**
+	 * Index of the left margin, see <code>getRawMargin</code>
+	 */
+	public static final int MARGIN_L = 0;
+
+	/**
+	 * Index of the right margin
+	 */
+	public static final int MARGIN_R = 1;
+
+	/**
+	 * Index of the bottom margin
+	 */
+	public static final int MARGIN_V = 2;
+
 	/**
 	 * New line separator
 	 */
@@ -76,19 +92,25 @@ public class Events extends SubtitleLine<ASSTime> {
 	 * 4-figure Left Margin override. The values are in pixels. All zeroes means the
 	 * default margins defined by the style are used.
 	 */
-	private String marginL = "0000";
+	private int marginL;
 
 	/**
 	 * 4-figure Right Margin override. The values are in pixels. All zeroes means the
 	 * default margins defined by the style are used.
 	 */
-	private String marginR = "0000";
+	private int marginR;
 
 	/**
 	 * 4-figure Bottom Margin override. The values are in pixels. All zeroes means the
 	 * default margins defined by the style are used.
 	 */
-	private String marginV = "0000";
+	private int marginV;
+
+	/**
+	 * The margins as written in the script when one of them is not an integer (left,
+	 * right and bottom), null if they all are. A margin kept as written is 0 as an int.
+	 */
+	private String[] rawMargins;
 
 	/**
 	 * Transition Effect. This is either empty, or contains information for one of the
@@ -128,23 +150,152 @@ public class Events extends SubtitleLine<ASSTime> {
 		this.time = new ASSTime();
 	}
 
+	/**
+	 * Copy the event, the copy can be modified without changing this event
+	 * 
+	 * @return the copy
+	 */
+	public Events copy() {
+
+		Events copy = new Events(this.style, new ASSTime(this.time.getStartMillis(), this.time.getEndMillis()),
+				copyText(this.textLines));
+		copy.layer = this.layer;
+		copy.name = this.name;
+		copy.marginL = this.marginL;
+		copy.marginR = this.marginR;
+		copy.marginV = this.marginV;
+		copy.rawMargins = this.rawMargins == null ? null : this.rawMargins.clone();
+		copy.effect = this.effect;
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Append the dialogue line representing the event
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendTo(StringBuilder sb) {
 		sb.append(DIALOGUE);
 
 		sb.append(this.layer).append(SEP);
-		sb.append(ASSTime.format(this.time.getStart())).append(SEP);
-		sb.append(ASSTime.format(this.time.getEnd())).append(SEP);
+		TimecodeUtils.appendASS(sb, this.time.getStartMillis());
+		sb.append(SEP);
+		TimecodeUtils.appendASS(sb, this.time.getEndMillis());
+		sb.append(SEP);
 		sb.append(this.style).append(SEP);
 		sb.append(this.name).append(SEP);
-		sb.append(this.marginL).append(SEP);
-		sb.append(this.marginR).append(SEP);
-		sb.append(this.marginV).append(SEP);
+		appendMargin(sb, this.marginL, MARGIN_L);
+		sb.append(SEP);
+		appendMargin(sb, this.marginR, MARGIN_R);
+		sb.append(SEP);
+		appendMargin(sb, this.marginV, MARGIN_V);
+		sb.append(SEP);
 		sb.append(this.effect).append(SEP);
-		this.textLines.forEach(tl -> sb.append(tl.toString()).append(ESCAPED_RETURN));
 
-		return StringUtils.removeEnd(sb.toString(), ESCAPED_RETURN);
+		for (int i = 0; i < this.textLines.size(); i++) {
+			if (i > 0) {
+				sb.append(ESCAPED_RETURN);
+			}
+			sb.append(this.textLines.get(i));
+		}
+	}
+
+	/**
+	 * Get a margin kept as written in the script
+	 * 
+	 * @param index: the index of the margin
+	 * @return the margin as written, null if it is an integer
+	 */
+	public String getRawMargin(int index) {
+		return this.rawMargins == null ? null : this.rawMargins[index];
+	}
+
+	/**
+	 * Format a margin on 4 figures, or as written if it is not an integer
+	 * 
+	 * @param margin: the margin
+	 * @param index: the index of the margin
+	 * @return the formatted margin
+	 */
+	private String formatMargin(int margin, int index) {
+		StringBuilder sb = new StringBuilder(4);
+		appendMargin(sb, margin, index);
+		return sb.toString();
+	}
+
+	/**
+	 * Append a margin on 4 figures, or as written if it is not an integer
+	 * 
+	 * @param sb: the string builder
+	 * @param margin: the margin
+	 * @param index: the index of the margin
+	 */
+	private void appendMargin(StringBuilder sb, int margin, int index) {
+		String raw = getRawMargin(index);
+		if (raw != null) {
+			sb.append(raw);
+		} else {
+			appendMargin(sb, margin);
+		}
+	}
+
+	/**
+	 * Set a margin from its value in the script, a value that is not an integer is kept
+	 * as written
+	 * 
+	 * @param margin: the margin
+	 * @param index: the index of the margin
+	 * @return the margin as an int, 0 if it is kept as written
+	 */
+	private int parseMargin(String margin, int index) {
+		String trimmed = StringUtils.trim(margin);
+		try {
+			int value = Integer.parseInt(trimmed);
+			setRawMargin(index, null);
+			return value;
+		} catch (NumberFormatException e) {
+			setRawMargin(index, trimmed);
+			return 0;
+		}
+	}
+
+	/**
+	 * Keep a margin as written, or forget it
+	 * 
+	 * @param index: the index of the margin
+	 * @param raw: the margin as written, null to forget it
+	 */
+	private void setRawMargin(int index, String raw) {
+		if (raw != null && this.rawMargins == null) {
+			this.rawMargins = new String[3];
+		}
+		if (this.rawMargins != null) {
+			this.rawMargins[index] = raw;
+			if (raw == null && this.rawMargins[MARGIN_L] == null && this.rawMargins[MARGIN_R] == null
+					&& this.rawMargins[MARGIN_V] == null) {
+				this.rawMargins = null;
+			}
+		}
+	}
+
+	/**
+	 * Append a margin on 4 figures
+	 * 
+	 * @param sb: the string builder
+	 * @param margin: the margin
+	 */
+	private static void appendMargin(StringBuilder sb, int margin) {
+		for (int figures = 1000; figures > 1 && margin >= 0 && margin < figures; figures /= 10) {
+			sb.append('0');
+		}
+		sb.append(margin);
 	}
 
 	// ===================== getter and setter start =====================
@@ -173,28 +324,55 @@ public class Events extends SubtitleLine<ASSTime> {
 		this.name = name;
 	}
 
-	public String getMarginL() {
+	public int getMarginLValue() {
 		return this.marginL;
 	}
 
-	public void setMarginL(String marginL) {
+	public void setMarginLValue(int marginL) {
 		this.marginL = marginL;
+		setRawMargin(MARGIN_L, null);
 	}
 
-	public String getMarginR() {
+	public String getMarginL() {
+		return formatMargin(this.marginL, MARGIN_L);
+	}
+
+	public void setMarginL(String marginL) {
+		this.marginL = parseMargin(marginL, MARGIN_L);
+	}
+
+	public int getMarginRValue() {
 		return this.marginR;
 	}
 
-	public void setMarginR(String marginR) {
+	public void setMarginRValue(int marginR) {
 		this.marginR = marginR;
+		setRawMargin(MARGIN_R, null);
 	}
 
-	public String getMarginV() {
+	public String getMarginR() {
+		return formatMargin(this.marginR, MARGIN_R);
+	}
+
+	public void setMarginR(String marginR) {
+		this.marginR = parseMargin(marginR, MARGIN_R);
+	}
+
+	public int getMarginVValue() {
 		return this.marginV;
 	}
 
-	public void setMarginV(String marginV) {
+	public void setMarginVValue(int marginV) {
 		this.marginV = marginV;
+		setRawMargin(MARGIN_V, null);
+	}
+
+	public String getMarginV() {
+		return formatMargin(this.marginV, MARGIN_V);
+	}
+
+	public void setMarginV(String marginV) {
+		this.marginV = parseMargin(marginV, MARGIN_V);
 	}
 
 	public String getEffect() {
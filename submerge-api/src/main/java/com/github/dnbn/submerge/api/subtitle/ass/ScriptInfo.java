@@ -232,6 +232,16 @@ public class ScriptInfo implements Serializable {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Append the lines of the script info section, without the section header
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendTo(StringBuilder sb) {
 		appendNotNull(sb, TITLE, this.title);
 		appendNotNull(sb, ORIGINAL_SCRIPT, this.originalScript);
 		appendNotNull(sb, ORIGINAL_TRANSLATION, this.originalTranslation);
@@ -246,7 +256,6 @@ public class ScriptInfo implements Serializable {
 		appendPositive(sb, PLAY_RES_X, this.playResX);
 		appendPositive(sb, PLAY_DEPTH, this.playDepth);
 		sb.append(TIMER).append(SEP).append(timeFormatter.format(this.timer));
-		return sb.toString();
 	}
 
 	// ======================= private methods =======================
@@ -226,6 +226,16 @@ public class V4Style implements Serializable {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Append the style line representing the style
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendTo(StringBuilder sb) {
 		sb.append(STYLE);
 		sb.append(this.name).append(SEP);
 		sb.append(this.fontname).append(SEP);
@@ -250,7 +260,6 @@ public class V4Style implements Serializable {
 		sb.append(this.marginR).append(SEP);
 		sb.append(this.marginV).append(SEP);
 		sb.append(this.encoding);
-		return sb.toString();
 	}
 
 	// ===================== getter and setter start =====================
@@ -0,0 +1,155 @@
+package com.github.dnbn.submerge.api.subtitle.common;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Text lines whose strings are only created when they are read. The lines are copied to
+ * a plain list the first time they are modified, and serialized as a plain list.
+ */
+public abstract class LazyTextLines extends AbstractList<String> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 5187012370356237093L;
+
+	/**
+	 * Copy of the lines once they are modified, null before
+	 */
+	private List<String> copy;
+
+	/**
+	 * Get the number of lines before any modification
+	 * 
+	 * @return the number of lines
+	 */
+	protected abstract int lineCount();
+
+	/**
+	 * Create the string of a line before any modification
+	 * 
+	 * @param index: the index of the line, checked
+	 * @return the line
+	 */
+	protected abstract String line(int index);
+
+	@Override
+	public String get(int index) {
+
+		if (this.copy != null) {
+			return this.copy.get(index);
+		}
+		if (index < 0 || index >= lineCount()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + lineCount());
+		}
+		return line(index);
+	}
+
+	@Override
+	public int size() {
+
+		return this.copy != null ? this.copy.size() : lineCount();
+	}
+
+	@Override
+	public String set(int index, String element) {
+
+		return modifiable().set(index, element);
+	}
+
+	@Override
+	public void add(int index, String element) {
+
+		modifiable().add(index, element);
+		this.modCount++;
+	}
+
+	@Override
+	public String remove(int index) {
+
+		String removed = modifiable().remove(index);
+		this.modCount++;
+		return removed;
+	}
+
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+
+		modifiable().subList(fromIndex, toIndex).clear();
+		this.modCount++;
+	}
+
+	/**
+	 * Get an independent copy of the lines: both lists read the same unmodified source,
+	 * each one is copied to a plain list when it is modified
+	 * 
+	 * @return the copy
+	 */
+	public List<String> snapshot() {
+
+		if (this.copy != null) {
+			return new ArrayList<>(this.copy);
+		}
+		return new Snapshot(this instanceof Snapshot ? ((Snapshot) this).source : this);
+	}
+
+	/**
+	 * Serialize the lines as a plain list
+	 * 
+	 * @return the plain list
+	 * @throws ObjectStreamException
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+
+		return new ArrayList<>(this);
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Copy the lines to a plain list, once
+	 * 
+	 * @return the copy
+	 */
+	private List<String> modifiable() {
+
+		if (this.copy == null) {
+			List<String> lines = new ArrayList<>(lineCount() + 1);
+			for (int i = 0; i < lineCount(); i++) {
+				lines.add(line(i));
+			}
+			this.copy = lines;
+		}
+		return this.copy;
+	}
+
+	/**
+	 * Copy of lazy lines, reading the lines of the source before its modifications
+	 */
+	private static final class Snapshot extends LazyTextLines {
+
+		private static final long serialVersionUID = -2071465993412985016L;
+
+		private final transient LazyTextLines source;
+
+		Snapshot(LazyTextLines source) {
+
+			this.source = source;
+		}
+
+		@Override
+		protected int lineCount() {
+
+			return this.source.lineCount();
+		}
+
+		@Override
+		protected String line(int index) {
+
+			return this.source.line(index);
+		}
+	}
+
+}
@@ -76,14 +76,88 @@ public class SubtitleLine<T extends TimedObject> implements TimedLine {
 
 		int compare = this.time.compareTo(o.getTime());
 		if (compare == 0) {
-			String thisText = String.join(",", this.textLines);
-			String otherText = String.join(",", o.getTextLines());
-			compare = thisText.compareTo(otherText);
+			compare = compareText(this.textLines, o.getTextLines());
 		}
 
 		return compare;
 	}
 
+	/**
+	 * Compare two texts as if their lines were joined with commas, without joining them
+	 * 
+	 * @param lines: the lines of a text
+	 * @param otherLines: the lines of the other text
+	 * @return the same result as
+	 *         <code>String.join(",", lines).compareTo(String.join(",", otherLines))</code>
+	 */
+	public static int compareText(List<String> lines, List<String> otherLines) {
+
+		int lineCount = lines.size();
+		int otherLineCount = otherLines.size();
+		int line = 0;
+		int otherLine = 0;
+		int index = 0;
+		int otherIndex = 0;
+		// Read once per line, the lines of a lazy text are created when they are read
+		String text = lineCount > 0 ? lines.get(0) : null;
+		String otherText = otherLineCount > 0 ? otherLines.get(0) : null;
+
+		while (line < lineCount && otherLine < otherLineCount) {
+
+			// The comma is the char after the end of a line, if there is a next line
+			char c = index < text.length() ? text.charAt(index) : ',';
+			char otherC = otherIndex < otherText.length() ? otherText.charAt(otherIndex) : ',';
+
+			if (index == text.length() && line == lineCount - 1
+					|| otherIndex == otherText.length() && otherLine == otherLineCount - 1) {
+				break;
+			}
+			if (c != otherC) {
+				return c - otherC;
+			}
+
+			if (index++ == text.length() && ++line < lineCount) {
+				text = lines.get(line);
+				index = 0;
+			}
+			if (otherIndex++ == otherText.length() && ++otherLine < otherLineCount) {
+				otherText = otherLines.get(otherLine);
+				otherIndex = 0;
+			}
+		}
+
+		return joinedLength(lines) - joinedLength(otherLines);
+	}
+
+	/**
+	 * Copy text lines, lazy lines are shared until they are modified
+	 * 
+	 * @param textLines: the text lines
+	 * @return the copy, that can be modified without changing the lines
+	 */
+	public static List<String> copyText(List<String> textLines) {
+
+		if (textLines instanceof LazyTextLines) {
+			return ((LazyTextLines) textLines).snapshot();
+		}
+		return new ArrayList<>(textLines);
+	}
+
+	/**
+	 * Get the length of lines joined with commas
+	 * 
+	 * @param lines: the lines
+	 * @return the joined length
+	 */
+	private static int joinedLength(List<String> lines) {
+
+		int length = lines.isEmpty() ? 0 : lines.size() - 1;
+		for (String line : lines) {
+			length += line.length();
+		}
+		return length;
+	}
+
 	// ===================== getter and setter start =====================
 
 	@Override
@@ -2,27 +2,34 @@ package com.github.dnbn.submerge.api.subtitle.common;
 
 import java.time.LocalTime;
 
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
+
 public class SubtitleTime implements TimedObject {
 
 	private static final long serialVersionUID = -2283115927128309201L;
 
 	/**
-	 * Start Time of the Event, in 0:00:00:00 format ie. Hrs:Mins:Secs:hundredths. This is
-	 * the time elapsed during script playback at which the text will appear onscreen.
+	 * Start Time of the Event, in milliseconds. This is the time elapsed during script
+	 * playback at which the text will appear onscreen.
 	 */
-	protected LocalTime start;
+	protected long start;
 
 	/**
-	 * End Time of the Event, in 0:00:00:00 format ie. Hrs:Mins:Secs:hundredths. This is
-	 * the time elapsed during script playback at which the text will disappear offscreen.
+	 * End Time of the Event, in milliseconds. This is the time elapsed during script
+	 * playback at which the text will disappear offscreen.
 	 */
-	protected LocalTime end;
+	protected long end;
 
 	public SubtitleTime() {
 	}
 
 	public SubtitleTime(LocalTime start, LocalTime end) {
 
+		this(TimecodeUtils.toMillis(start), TimecodeUtils.toMillis(end));
+	}
+
+	public SubtitleTime(long start, long end) {
+
 		super();
 		this.start = start;
 		this.end = end;
@@ -51,9 +58,9 @@ public class SubtitleTime implements TimedObject {
 	@Override
 	public int compareTo(TimedObject other) {
 
-		int compare = this.start.compareTo(other.getStart());
+		int compare = Long.compare(this.start, other.getStartMillis());
 		if (compare == 0) {
-			compare = this.end.compareTo(other.getEnd());
+			compare = Long.compare(this.end, other.getEndMillis());
 		}
 		return compare;
 	}
@@ -61,22 +68,22 @@ public class SubtitleTime implements TimedObject {
 	// ===================== getter and setter start =====================
 
 	@Override
-	public LocalTime getStart() {
+	public long getStartMillis() {
 		return this.start;
 	}
 
 	@Override
-	public void setStart(LocalTime start) {
+	public void setStartMillis(long start) {
 		this.start = start;
 	}
 
 	@Override
-	public LocalTime getEnd() {
+	public long getEndMillis() {
 		return this.end;
 	}
 
 	@Override
-	public void setEnd(LocalTime end) {
+	public void setEndMillis(long end) {
 		this.end = end;
 	}
 }
@@ -0,0 +1,332 @@
+package com.github.dnbn.submerge.api.subtitle.common;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared storage for the text of parsed subtitles. The chars of the text lines are
+ * copied to large pages and the lines only keep offsets in them, the strings are created
+ * when the lines are read. Short values that repeat, such as "♪", "(laughs)" or speaker
+ * names, are stored once through a bounded deduplication table.
+ * 
+ * <pre>
+ * TextArena arena = new TextArena();
+ * ParseOptions options = new ParseOptions();
+ * options.setTextArena(arena);
+ * 
+ * for (File file : season) {
+ * 	subtitles.add(ParserFactory.getParser(file).parse(file, options));
+ * }
+ * </pre>
+ * 
+ * An arena can be shared by several parses, on several threads. It is never emptied:
+ * it lives as long as the subtitles whose text it holds.
+ */
+public final class TextArena {
+
+	/**
+	 * Number of chars of a page, a longer value has its own page
+	 */
+	private static final int PAGE_SIZE = 1 << 16;
+
+	/**
+	 * Maximum length of a deduplicated value
+	 */
+	private static final int MAX_DEDUP_LENGTH = 64;
+
+	/**
+	 * Number of slots of the deduplication tables, a value replaces the one in its slot
+	 */
+	private static final int DEDUP_TABLE_SIZE = 1 << 12;
+
+	/**
+	 * Initial capacity of the arrays
+	 */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private char[][] pages = new char[8][];
+
+	private int pageCount;
+
+	/**
+	 * Number of chars used in the last page
+	 */
+	private int pageUsed = PAGE_SIZE;
+
+	/**
+	 * Page, offset in the page and length of each value
+	 */
+	private int[] valuePages = new int[DEFAULT_CAPACITY];
+
+	private int[] valueOffsets = new int[DEFAULT_CAPACITY];
+
+	private int[] valueLengths = new int[DEFAULT_CAPACITY];
+
+	private int valueCount;
+
+	/**
+	 * Value of each text line, the lines of a subtitle line are consecutive
+	 */
+	private int[] lineValues = new int[DEFAULT_CAPACITY];
+
+	private int lineCount;
+
+	/**
+	 * Deduplicated values, as value index plus one, by hash
+	 */
+	private final int[] dedupValues = new int[DEDUP_TABLE_SIZE];
+
+	/**
+	 * Deduplicated strings, by hash
+	 */
+	private final String[] dedupStrings = new String[DEDUP_TABLE_SIZE];
+
+	/**
+	 * Store text lines
+	 * 
+	 * @param textLines: the text lines
+	 * @return the stored lines, the strings are created when they are read
+	 */
+	public synchronized List<String> add(List<String> textLines) {
+
+		int first = this.lineCount;
+		for (String textLine : textLines) {
+			addLine(textLine, 0, textLine.length());
+		}
+		return new Lines(this, first, textLines.size());
+	}
+
+	/**
+	 * Store text lines that are slices of a text
+	 * 
+	 * @param text: the text holding the lines
+	 * @param bounds: the index of the first char and the index after the last char of each
+	 *            line, in pairs
+	 * @param count: the number of lines
+	 * @return the stored lines, the strings are created when they are read
+	 */
+	public synchronized List<String> add(String text, int[] bounds, int count) {
+
+		int first = this.lineCount;
+		for (int i = 0; i < count; i++) {
+			addLine(text, bounds[2 * i], bounds[2 * i + 1]);
+		}
+		return new Lines(this, first, count);
+	}
+
+	/**
+	 * Get a shared string equal to a slice of a text, for the values that repeat on many
+	 * lines such as style or speaker names. Unlike the text lines, the string is kept.
+	 * 
+	 * @param text: the text holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the string, the same instance as a previous equal value if it is still in
+	 *         the table
+	 */
+	public synchronized String intern(String text, int begin, int end) {
+
+		int length = end - begin;
+		if (length > MAX_DEDUP_LENGTH) {
+			return text.substring(begin, end);
+		}
+
+		int slot = slot(hash(text, begin, end));
+		String found = this.dedupStrings[slot];
+		if (found != null && found.length() == length && found.regionMatches(0, text, begin, length)) {
+			return found;
+		}
+
+		String value = text.substring(begin, end);
+		this.dedupStrings[slot] = value;
+		return value;
+	}
+
+	/**
+	 * Get the number of values stored, equal values that were deduplicated count once
+	 * 
+	 * @return the number of values
+	 */
+	public synchronized int valueCount() {
+
+		return this.valueCount;
+	}
+
+	/**
+	 * Get the number of chars stored
+	 * 
+	 * @return the number of chars
+	 */
+	public synchronized long charCount() {
+
+		long count = 0;
+		for (int i = 0; i < this.valueCount; i++) {
+			count += this.valueLengths[i];
+		}
+		return count;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Store a text line
+	 * 
+	 * @param text: the text holding the line
+	 * @param begin: the index of the first char of the line
+	 * @param end: the index after the last char of the line
+	 */
+	private void addLine(String text, int begin, int end) {
+
+		if (this.lineCount == this.lineValues.length) {
+			this.lineValues = Arrays.copyOf(this.lineValues, this.lineCount * 2);
+		}
+		this.lineValues[this.lineCount++] = addValue(text, begin, end);
+	}
+
+	/**
+	 * Store a value, or find an equal value in the deduplication table
+	 * 
+	 * @param text: the text holding the value
+	 * @param begin: the index of the first char of the value
+	 * @param end: the index after the last char of the value
+	 * @return the index of the value
+	 */
+	private int addValue(String text, int begin, int end) {
+
+		int length = end - begin;
+		int slot = -1;
+		if (length <= MAX_DEDUP_LENGTH) {
+			slot = slot(hash(text, begin, end));
+			int found = this.dedupValues[slot] - 1;
+			if (found >= 0 && equals(found, text, begin, end)) {
+				return found;
+			}
+		}
+
+		// An empty value needs a page too, the first value may be empty
+		if (this.pageCount == 0 || length > PAGE_SIZE - this.pageUsed) {
+			newPage(Math.max(length, PAGE_SIZE));
+		}
+		int page = this.pageCount - 1;
+		text.getChars(begin, end, this.pages[page], this.pageUsed);
+
+		if (this.valueCount == this.valueLengths.length) {
+			int capacity = this.valueCount * 2;
+			this.valuePages = Arrays.copyOf(this.valuePages, capacity);
+			this.valueOffsets = Arrays.copyOf(this.valueOffsets, capacity);
+			this.valueLengths = Arrays.copyOf(this.valueLengths, capacity);
+		}
+
+		int value = this.valueCount++;
+		this.valuePages[value] = page;
+		this.valueOffsets[value] = this.pageUsed;
+		this.valueLengths[value] = length;
+		this.pageUsed += length;
+
+		if (slot >= 0) {
+			this.dedupValues[slot] = value + 1;
+		}
+		return value;
+	}
+
+	/**
+	 * Start a new page, the rest of the last page is left unused
+	 * 
+	 * @param size: the number of chars of the page
+	 */
+	private void newPage(int size) {
+
+		if (this.pageCount == this.pages.length) {
+			this.pages = Arrays.copyOf(this.pages, this.pageCount * 2);
+		}
+		this.pages[this.pageCount++] = new char[size];
+		this.pageUsed = 0;
+	}
+
+	/**
+	 * Check if a stored value is equal to a slice of a text
+	 * 
+	 * @param value: the index of the value
+	 * @param text: the text
+	 * @param begin: the index of the first char of the slice
+	 * @param end: the index after the last char of the slice
+	 * @return true if the chars are equal
+	 */
+	private boolean equals(int value, String text, int begin, int end) {
+
+		if (this.valueLengths[value] != end - begin) {
+			return false;
+		}
+		char[] page = this.pages[this.valuePages[value]];
+		int offset = this.valueOffsets[value] - begin;
+		for (int i = begin; i < end; i++) {
+			if (page[offset + i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Create the string of a text line
+	 * 
+	 * @param line: the index of the line
+	 * @return the line
+	 */
+	private synchronized String line(int line) {
+
+		int value = this.lineValues[line];
+		return new String(this.pages[this.valuePages[value]], this.valueOffsets[value], this.valueLengths[value]);
+	}
+
+	private static int hash(String text, int begin, int end) {
+
+		int hash = 0;
+		for (int i = begin; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	private static int slot(int hash) {
+
+		return (hash ^ hash >>> 16) & DEDUP_TABLE_SIZE - 1;
+	}
+
+	/**
+	 * Text lines of a subtitle line, stored in an arena
+	 */
+	private static final class Lines extends LazyTextLines {
+
+		private static final long serialVersionUID = -6412364786120557458L;
+
+		private final transient TextArena arena;
+
+		/**
+		 * Index of the first line in the arena
+		 */
+		private final int first;
+
+		private final int count;
+
+		Lines(TextArena arena, int first, int count) {
+
+			this.arena = arena;
+			this.first = first;
+			this.count = count;
+		}
+
+		@Override
+		protected int lineCount() {
+
+			return this.count;
+		}
+
+		@Override
+		protected String line(int index) {
+
+			return this.arena.line(this.first + index);
+		}
+	}
+
+}
@@ -0,0 +1,369 @@
+package com.github.dnbn.submerge.api.subtitle.common;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Set of timed lines sorted in their natural order, backed by an array.
+ * 
+ * Lines are usually added in ascending order (when parsing a file): they are then
+ * appended at the end of the array. Lines added out of order are appended as well, and
+ * the array is sorted only once, the next time the set is read. As with a
+ * <code>TreeSet</code>, lines that compare equal are kept once: the first one added wins.
+ * A set created to keep the duplicates keeps them all instead, in the order they were
+ * added: lines without text (parsed in <code>TextMode.NONE</code>) compare equal when
+ * they share the same times.
+ * 
+ * @param <T> the type of line
+ */
+public class TimedLineSet<T extends TimedLine> extends AbstractSet<T> implements Serializable {
+
+	/**
+	 * Serial
+	 */
+	private static final long serialVersionUID = 4377826460419452512L;
+
+	/**
+	 * Default capacity
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The lines, only the first <code>size</code> elements are used
+	 */
+	private TimedLine[] elements;
+
+	/**
+	 * Number of lines
+	 */
+	private int size;
+
+	/**
+	 * True if the lines are sorted and without duplicates
+	 */
+	private boolean sorted = true;
+
+	/**
+	 * True if the lines that compare equal are all kept
+	 */
+	private boolean keepDuplicates;
+
+	/**
+	 * Structural modification counter, used by the iterators
+	 */
+	private transient int modCount;
+
+	/**
+	 * Constructor
+	 */
+	public TimedLineSet() {
+		this.elements = new TimedLine[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param keepDuplicates: true to keep all the lines that compare equal
+	 */
+	public TimedLineSet(boolean keepDuplicates) {
+		this();
+		this.keepDuplicates = keepDuplicates;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param lines: the initial lines
+	 */
+	public TimedLineSet(Collection<? extends T> lines) {
+		this.elements = new TimedLine[Math.max(DEFAULT_CAPACITY, lines.size())];
+		addAll(lines);
+	}
+
+	@Override
+	public boolean add(T line) {
+
+		if (line == null) {
+			throw new NullPointerException();
+		}
+
+		if (this.size > 0 && this.sorted) {
+			int compare = line.compareTo(this.elements[this.size - 1]);
+			if (compare == 0 && !this.keepDuplicates) {
+				return false;
+			}
+			this.sorted = compare >= 0;
+		}
+
+		if (this.size == this.elements.length) {
+			this.elements = Arrays.copyOf(this.elements, this.size + (this.size >> 1) + 1);
+		}
+		this.elements[this.size++] = line;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		if (this.keepDuplicates) {
+			index = sameAs(o, index);
+		}
+		removeAt(index);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+
+		Arrays.fill(this.elements, 0, this.size, null);
+		this.size = 0;
+		this.sorted = true;
+		this.modCount++;
+	}
+
+	@Override
+	public int size() {
+
+		ensureSorted();
+		return this.size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+
+		ensureSorted();
+		return new Itr();
+	}
+
+	/**
+	 * Get a line by its position
+	 * 
+	 * @param index: the position in the sorted set
+	 * @return the line
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+
+		ensureSorted();
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+		}
+		return (T) this.elements[index];
+	}
+
+	/**
+	 * Check if the lines that compare equal are all kept
+	 * 
+	 * @return true if the duplicates are kept
+	 */
+	public boolean isKeepDuplicates() {
+
+		return this.keepDuplicates;
+	}
+
+	/**
+	 * Create an empty set keeping the duplicates as a set of lines does, to build a new
+	 * version of a subtitle
+	 * 
+	 * @param lines: the lines of the subtitle
+	 * @return the empty set
+	 */
+	public static <T extends TimedLine> TimedLineSet<T> emptyLike(Collection<?> lines) {
+
+		return new TimedLineSet<>(lines instanceof TimedLineSet && ((TimedLineSet<?>) lines).keepDuplicates);
+	}
+
+	/**
+	 * Get a read-only list view of the sorted lines, without copying them
+	 * 
+	 * @return the list view
+	 */
+	public List<T> asList() {
+
+		return new ListView();
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Sort the lines and remove the duplicates unless they are kept, if lines have been
+	 * added out of order
+	 */
+	private void ensureSorted() {
+
+		if (this.sorted) {
+			return;
+		}
+
+		// Stable sort: among equal lines, the first added comes first and is kept
+		Arrays.sort(this.elements, 0, this.size);
+		this.sorted = true;
+		this.modCount++;
+		if (this.keepDuplicates) {
+			return;
+		}
+
+		int kept = 1;
+		for (int i = 1; i < this.size; i++) {
+			if (this.elements[i].compareTo(this.elements[kept - 1]) != 0) {
+				this.elements[kept++] = this.elements[i];
+			}
+		}
+		Arrays.fill(this.elements, kept, this.size, null);
+		this.size = kept;
+	}
+
+	/**
+	 * Find the position of a line
+	 * 
+	 * @param o: the line
+	 * @return the position, negative if not found
+	 */
+	private int indexOf(Object o) {
+
+		if (!(o instanceof TimedLine)) {
+			return -1;
+		}
+
+		ensureSorted();
+		return Arrays.binarySearch(this.elements, 0, this.size, o);
+	}
+
+	/**
+	 * Find the position of a line among the lines that compare equal to it, the line
+	 * itself if it is in the set
+	 * 
+	 * @param o: the line
+	 * @param index: the position of a line equal to it
+	 * @return the position of the line itself, <code>index</code> if it is not found
+	 */
+	private int sameAs(Object o, int index) {
+
+		for (int i = index; i >= 0 && this.elements[i].compareTo(this.elements[index]) == 0; i--) {
+			if (this.elements[i] == o) {
+				return i;
+			}
+		}
+		for (int i = index + 1; i < this.size && this.elements[i].compareTo(this.elements[index]) == 0; i++) {
+			if (this.elements[i] == o) {
+				return i;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Remove the line at a position
+	 * 
+	 * @param index: the position
+	 */
+	private void removeAt(int index) {
+
+		System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+		this.elements[--this.size] = null;
+		this.modCount++;
+	}
+
+	/**
+	 * Write the lines sorted, so that the serialized set has no duplicates unless they are
+	 * kept
+	 * 
+	 * @param out: the stream
+	 * @throws IOException
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+
+		ensureSorted();
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * Iterator over the sorted lines
+	 */
+	private class Itr implements Iterator<T> {
+
+		private int cursor;
+
+		private int last = -1;
+
+		private int expectedModCount = TimedLineSet.this.modCount;
+
+		@Override
+		public boolean hasNext() {
+
+			return this.cursor < TimedLineSet.this.size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next() {
+
+			checkForComodification();
+			if (this.cursor >= TimedLineSet.this.size) {
+				throw new NoSuchElementException();
+			}
+			this.last = this.cursor++;
+			return (T) TimedLineSet.this.elements[this.last];
+		}
+
+		@Override
+		public void remove() {
+
+			if (this.last < 0) {
+				throw new IllegalStateException();
+			}
+			checkForComodification();
+			removeAt(this.last);
+			this.cursor = this.last;
+			this.last = -1;
+			this.expectedModCount = TimedLineSet.this.modCount;
+		}
+
+		private void checkForComodification() {
+
+			if (TimedLineSet.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	/**
+	 * Read-only list view of the sorted lines
+	 */
+	private class ListView extends AbstractList<T> implements RandomAccess {
+
+		@Override
+		public T get(int index) {
+
+			return TimedLineSet.this.get(index);
+		}
+
+		@Override
+		public int size() {
+
+			return TimedLineSet.this.size();
+		}
+	}
+
+}
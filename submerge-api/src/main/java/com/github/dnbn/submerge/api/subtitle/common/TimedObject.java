@@ -1,37 +1,80 @@
 package com.github.dnbn.submerge.api.subtitle.common;
 
 import java.io.Serializable;
+import java.time.DateTimeException;
 import java.time.LocalTime;
 import java.util.Comparator;
 
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
+
 /**
  * 
  * Simple object that contains timed start ant end
  */
+@SuppressWarnings("serial")
 public interface TimedObject extends Serializable, Comparable<TimedObject>, Comparator<TimedObject> {
 
+	/**
+	 * Return the time elapsed during script playback at which the text will appear
+	 * onscreen.
+	 * 
+	 * @return start time in milliseconds
+	 */
+	long getStartMillis();
+
+	/**
+	 * Return the time elapsed during script playback at which the text will disappear
+	 * offscreen.
+	 * 
+	 * @return end time in milliseconds
+	 */
+	long getEndMillis();
+
+	/**
+	 * Set the time elapsed during script playback at which the text will appear onscreen.
+	 * 
+	 * @param start time in milliseconds
+	 */
+	void setStartMillis(long start);
+
+	/**
+	 * Set the time elapsed during script playback at which the text will disappear
+	 * offscreen.
+	 * 
+	 * @param end time in milliseconds
+	 */
+	void setEndMillis(long end);
+
 	/**
 	 * Return the time elapsed during script playback at which the text will appear
 	 * onscreen.
 	 * 
 	 * @return start time
+	 * @throws DateTimeException if the time is beyond 24 hours
 	 */
-	LocalTime getStart();
+	default LocalTime getStart() {
+		return TimecodeUtils.toLocalTime(getStartMillis());
+	}
 
 	/**
 	 * Return the time elapsed during script playback at which the text will disappear
 	 * offscreen.
 	 * 
 	 * @return end time
+	 * @throws DateTimeException if the time is beyond 24 hours
 	 */
-	LocalTime getEnd();
+	default LocalTime getEnd() {
+		return TimecodeUtils.toLocalTime(getEndMillis());
+	}
 
 	/**
 	 * Set the time elapsed during script playback at which the text will appear onscreen.
 	 * 
 	 * @param start time
 	 */
-	void setStart(LocalTime start);
+	default void setStart(LocalTime start) {
+		setStartMillis(TimecodeUtils.toMillis(start));
+	}
 
 	/**
 	 * Set the time elapsed during script playback at which the text will disappear
@@ -39,5 +82,7 @@ public interface TimedObject extends Serializable, Comparable<TimedObject>, Comp
 	 * 
 	 * @param end time
 	 */
-	void setEnd(LocalTime end);
-}
\ No newline at end of file
+	default void setEnd(LocalTime end) {
+		setEndMillis(TimecodeUtils.toMillis(end));
+	}
+}
@@ -3,9 +3,12 @@ package com.github.dnbn.submerge.api.subtitle.common;
 import java.io.Serializable;
 import java.util.Set;
 
+import org.apache.commons.lang.SerializationUtils;
+
 /**
  * Object that represents a text file containing timed lines
  */
+@SuppressWarnings("serial")
 public interface TimedTextFile extends Serializable {
 
 	/**
@@ -29,4 +32,15 @@ public interface TimedTextFile extends Serializable {
 	 */
 	Set<? extends TimedLine> getTimedLines();
 
+	/**
+	 * Copy the subtitle, the copy can be modified without changing this subtitle. The
+	 * default implementation goes through serialization.
+	 * 
+	 * @return the copy
+	 */
+	default TimedTextFile copy() {
+
+		return (TimedTextFile) SerializationUtils.clone(this);
+	}
+
 }
\ No newline at end of file
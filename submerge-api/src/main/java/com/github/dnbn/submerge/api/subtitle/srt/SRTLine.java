@@ -23,14 +23,39 @@ public class SRTLine extends SubtitleLine<SRTTime> {
 		this.textLines = textLines;
 	}
 
+	/**
+	 * Copy the line, the copy can be modified without changing this line
+	 * 
+	 * @return the copy
+	 */
+	public SRTLine copy() {
+
+		return new SRTLine(this.id, new SRTTime(this.time.getStartMillis(), this.time.getEndMillis()),
+				copyText(this.textLines));
+	}
+
 	@Override
 	public String toString() {
 		
 		StringBuilder sb = new StringBuilder();
+		appendTo(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Append the SRT representation of the line, followed by a blank line
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendTo(StringBuilder sb) {
+
 		sb.append(this.id).append(NEW_LINE);
-		sb.append(this.time).append(NEW_LINE);
-		this.textLines.forEach(textLine -> sb.append(textLine).append(NEW_LINE));
-		return sb.append(NEW_LINE).toString();
+		this.time.appendTo(sb);
+		sb.append(NEW_LINE);
+		for (String textLine : this.textLines) {
+			sb.append(textLine).append(NEW_LINE);
+		}
+		sb.append(NEW_LINE);
 	}
 
 	// ===================== getter and setter start =====================
@@ -1,9 +1,11 @@
 package com.github.dnbn.submerge.api.subtitle.srt;
 
+import java.io.ObjectStreamException;
 import java.util.Set;
-import java.util.TreeSet;
 
+import com.github.dnbn.submerge.api.codec.SerializedSubtitle;
 import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
+import com.github.dnbn.submerge.api.subtitle.common.TimedLineSet;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 
 /**
@@ -15,7 +17,7 @@ public class SRTSub implements TimedTextFile {
 	private static final long serialVersionUID = -2909833999376537734L;
 
 	private String fileName;
-	private Set<SRTLine> lines = new TreeSet<>();
+	private Set<SRTLine> lines = new TimedLineSet<>();
 
 	// ======================== Public methods ==========================
 
@@ -29,14 +31,35 @@ public class SRTSub implements TimedTextFile {
 		this.lines.remove(line);
 	}
 
+	@Override
+	public SRTSub copy() {
+
+		SRTSub copy = new SRTSub();
+		copy.fileName = this.fileName;
+		copy.lines = TimedLineSet.emptyLike(this.lines);
+		this.lines.forEach(line -> copy.add(line.copy()));
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		
 		StringBuilder sb = new StringBuilder();
-		this.lines.forEach(srtLine -> sb.append(srtLine));
+		this.lines.forEach(srtLine -> srtLine.appendTo(sb));
 		return sb.toString();
 	}
 
+	/**
+	 * Serialize the subtitle encoded, see <code>SerializedSubtitle</code>
+	 * 
+	 * @return the serialized form
+	 * @throws ObjectStreamException
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+
+		return new SerializedSubtitle(this);
+	}
+
 	// ===================== getter and setter start =====================
 
 	public Set<SRTLine> getLines() {
@@ -2,9 +2,9 @@ package com.github.dnbn.submerge.api.subtitle.srt;
 
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoField;
 
 import com.github.dnbn.submerge.api.subtitle.common.SubtitleTime;
+import com.github.dnbn.submerge.api.utils.TimecodeUtils;
 
 public class SRTTime extends SubtitleTime {
 
@@ -12,7 +12,6 @@ public class SRTTime extends SubtitleTime {
 
 	public static DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(SRTTime.PATTERN);
 	public static final String PATTERN = "HH:mm:ss,SSS";
-	private static final String TS_PATTERN = "%02d:%02d:%02d,%03d";
 	public static final String DELIMITER = " --> ";
 
 	public SRTTime() {
@@ -24,16 +23,31 @@ public class SRTTime extends SubtitleTime {
 		super(start, end);
 	}
 
+	public SRTTime(long start, long end) {
+
+		super(start, end);
+	}
+
 	@Override
 	public String toString() {
 
 		StringBuilder sb = new StringBuilder();
-		sb.append(format(this.start));
-		sb.append(DELIMITER);
-		sb.append(format(this.end));
+		appendTo(sb);
 		return sb.toString();
 	}
 
+	/**
+	 * Append the SRT representation of the time. Ex: 00:02:08,822 --> 00:02:11,574
+	 * 
+	 * @param sb: the string builder
+	 */
+	public void appendTo(StringBuilder sb) {
+
+		TimecodeUtils.appendSRT(sb, this.start);
+		sb.append(DELIMITER);
+		TimecodeUtils.appendSRT(sb, this.end);
+	}
+
 	/**
 	 * Convert a <code>LocalTime</code> to string
 	 * 
@@ -42,12 +56,9 @@ public class SRTTime extends SubtitleTime {
 	 */
 	public static String format(LocalTime time) {
 
-		int hr = time.get(ChronoField.HOUR_OF_DAY);
-		int min = time.get(ChronoField.MINUTE_OF_HOUR);
-		int sec = time.get(ChronoField.SECOND_OF_MINUTE);
-		int ms = time.get(ChronoField.MILLI_OF_SECOND);
-
-		return String.format(TS_PATTERN, hr, min, sec, ms);
+		StringBuilder sb = new StringBuilder(12);
+		TimecodeUtils.appendSRT(sb, TimecodeUtils.toMillis(time));
+		return sb.toString();
 	}
 
 	/**
@@ -60,6 +71,6 @@ public class SRTTime extends SubtitleTime {
 	 */
 	public static LocalTime fromString(String times) {
 
-		return LocalTime.parse(times.replace('.', ',').trim(), FORMATTER);
+		return TimecodeUtils.toLocalTime(TimecodeUtils.parseMillis(times), times);
 	}
 }
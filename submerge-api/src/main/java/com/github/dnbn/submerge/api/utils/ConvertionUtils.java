@@ -3,8 +3,6 @@ package com.github.dnbn.submerge.api.utils;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
-
 import com.github.dnbn.submerge.api.subtitle.ass.ASSTime;
 import com.github.dnbn.submerge.api.subtitle.ass.Events;
 import com.github.dnbn.submerge.api.subtitle.ass.V4Style;
@@ -12,16 +10,10 @@ import com.github.dnbn.submerge.api.subtitle.common.TimedLine;
 import com.github.dnbn.submerge.api.subtitle.common.TimedObject;
 import com.github.dnbn.submerge.api.subtitle.config.Font;
 import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
+import com.github.dnbn.submerge.api.utils.TextTokens.Syntax;
 
 public class ConvertionUtils {
 
-	private static final String RGX_XML_TAG = "<[^>]+>";
-	private static final String RGX_ASS_FORMATTING = "\\{[^\\}]*\\}";
-	private static final String SRT_ITALIC_CLOSE = "\\</i\\>";
-	private static final String SRT_ITALIC_OPEN = "\\<i\\>";
-	private static final String ASS_ITALIC_CLOSE = "\\{\\\\i0\\}";
-	private static final String ASS_ITALIC_OPEN = "\\{\\\\i1\\}";
-
 	/**
 	 * Create an <code>Events</code> object from a timed line
 	 * 
@@ -37,7 +29,7 @@ public class ConvertionUtils {
 			newLine.add(toASSString(text));
 		}
 		TimedObject timeLine = line.getTime();
-		ASSTime time = new ASSTime(timeLine.getStart(), timeLine.getEnd());
+		ASSTime time = new ASSTime(timeLine.getStartMillis(), timeLine.getEndMillis());
 
 		return new Events(style, time, newLine);
 	}
@@ -63,31 +55,26 @@ public class ConvertionUtils {
 	}
 
 	/**
-	 * Format a text line to be srt compliant
+	 * Format a text line to be srt compliant: the italic tags are converted, the other ASS
+	 * override blocks are removed
 	 * 
 	 * @param textLine the text line
 	 * @return the formatted text line
 	 */
 	public static String toSRTString(String textLine) {
 
-		String formatted = textLine.replaceAll(ASS_ITALIC_OPEN, SRT_ITALIC_OPEN);
-		formatted = formatted.replaceAll(ASS_ITALIC_CLOSE, SRT_ITALIC_CLOSE);
-		formatted = formatted.replaceAll(RGX_ASS_FORMATTING, StringUtils.EMPTY);
-
-		return formatted;
+		return TextTokens.of(textLine, Syntax.ASS).toString(Syntax.SRT);
 	}
 
 	/**
-	 * Format a text line to be ass compliant
+	 * Format a text line to be ass compliant: the italic tags are converted, the other
+	 * HTML tags are removed
 	 * 
 	 * @param textLine the text line
-	 * @return
+	 * @return the formatted text line
 	 */
 	public static String toASSString(String textLine) {
 
-		String formatted = textLine.replaceAll(SRT_ITALIC_OPEN, ASS_ITALIC_OPEN);
-		formatted = formatted.replaceAll(SRT_ITALIC_CLOSE, ASS_ITALIC_CLOSE);
-
-		return formatted.replaceAll(RGX_XML_TAG, StringUtils.EMPTY);
+		return TextTokens.of(textLine, Syntax.SRT).toString(Syntax.ASS);
 	}
 }
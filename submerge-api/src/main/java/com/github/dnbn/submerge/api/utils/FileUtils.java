@@ -1,11 +1,15 @@
 package com.github.dnbn.submerge.api.utils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
-import org.apache.commons.io.IOUtils;
 import org.mozilla.universalchardet.UniversalDetector;
 
 import com.ibm.icu.text.CharsetDetector;
@@ -13,6 +17,18 @@ import com.ibm.icu.text.CharsetMatch;
 
 public class FileUtils {
 
+	/**
+	 * Maximum number of bytes used to detect an encoding
+	 */
+	public static final int DETECTION_SAMPLE_SIZE = 64 * 1024;
+
+	/**
+	 * Number of bytes given to the detector at once, so that it can stop early
+	 */
+	private static final int DETECTION_CHUNK_SIZE = 4096;
+
+	private static final String UTF_8 = "UTF-8";
+
 	/**
 	 * Detect charset encoding of a file
 	 * 
@@ -27,14 +43,34 @@ public class FileUtils {
 	}
 
 	/**
-	 * Detect charset encoding of an input stream
+	 * Detect charset encoding of an input stream. A plain ASCII text is read until its
+	 * first other byte, then at most <code>DETECTION_SAMPLE_SIZE</code> bytes are read.
 	 * 
 	 * @param file: the InputStream to detect encoding from
 	 * @return the charset encoding
 	 * @throws IOException
 	 */
 	public static String guessEncoding(InputStream is) throws IOException {
-		return guessEncoding(IOUtils.toByteArray(is));
+
+		byte[] sample = new byte[DETECTION_SAMPLE_SIZE];
+		int length = read(is, sample, 0);
+		String encoding = fromByteOrderMark(sample, length);
+		if (encoding != null) {
+			return encoding;
+		}
+
+		int from = skipPlainText(sample, 0, length);
+		while (from == length && length == sample.length) {
+			length = read(is, sample, 0);
+			from = skipPlainText(sample, 0, length);
+		}
+		if (from > 0 && length == sample.length) {
+			// The sample starts at the first byte that is not plain ASCII text
+			System.arraycopy(sample, from, sample, 0, length - from);
+			length = read(is, sample, length - from);
+			from = 0;
+		}
+		return detect(sample, from, length, length == sample.length);
 	}
 
 	/**
@@ -44,26 +80,376 @@ public class FileUtils {
 	 * @return the charset encoding
 	 */
 	public static String guessEncoding(byte[] bytes) {
-		UniversalDetector detector = new UniversalDetector(null);
 
-		detector.handleData(bytes, 0, bytes.length);
-		detector.dataEnd();
+		return guessEncoding(bytes, bytes.length);
+	}
+
+	/**
+	 * Detect charset encoding of the first bytes of an array, the whole content to
+	 * detect the encoding of:
+	 * 
+	 * <ul>
+	 * <li>a byte order mark, or a content that is plain ASCII text, settles the encoding
+	 * without any detector</li>
+	 * <li>otherwise at most <code>DETECTION_SAMPLE_SIZE</code> bytes are looked at, from
+	 * the first byte that is not plain ASCII text: bytes that are valid UTF-8 settle the
+	 * encoding, a sample cut before the end of the content must hold at least one
+	 * multi-byte sequence</li>
+	 * <li>otherwise juniversalchardet is fed until it is sure of its result</li>
+	 * <li>ICU4J is only loaded when juniversalchardet fails</li>
+	 * </ul>
+	 * 
+	 * @param bytes: the byte array to detect encoding from
+	 * @param length: the number of bytes to use
+	 * @return the charset encoding
+	 */
+	public static String guessEncoding(byte[] bytes, int length) {
+
+		String encoding = fromByteOrderMark(bytes, length);
+		if (encoding != null) {
+			return encoding;
+		}
+
+		int from = skipPlainText(bytes, 0, length);
+		int to = (int) Math.min(length, (long) from + DETECTION_SAMPLE_SIZE);
+		return detect(bytes, from, to, to < length);
+	}
+
+	/**
+	 * Detect charset encoding of the remaining bytes of a buffer, as
+	 * <code>guessEncoding(byte[], int)</code>
+	 * 
+	 * @param buffer: the buffer, its position is not changed
+	 * @return the charset encoding
+	 */
+	public static String guessEncoding(ByteBuffer buffer) {
+
+		byte[] head = new byte[Math.min(buffer.remaining(), 4)];
+		buffer.duplicate().get(head);
+		String encoding = fromByteOrderMark(head, head.length);
+		if (encoding != null) {
+			return encoding;
+		}
+
+		int from = buffer.position();
+		while (from < buffer.limit() && isPlainText(buffer.get(from))) {
+			from++;
+		}
+		byte[] sample = new byte[Math.min(buffer.limit() - from, DETECTION_SAMPLE_SIZE)];
+		ByteBuffer remaining = buffer.duplicate();
+		remaining.position(from);
+		remaining.get(sample);
+		return detect(sample, 0, sample.length, remaining.hasRemaining());
+	}
+
+	/**
+	 * Open a reader decoding a stream in its guessed encoding, without loading the whole
+	 * stream in memory. When the first <code>DETECTION_SAMPLE_SIZE</code> bytes are plain
+	 * ASCII text, the encoding is detected when the first other byte is read.
+	 * 
+	 * @param is: the input stream
+	 * @return the reader, the byte order mark is not skipped
+	 * @throws IOException
+	 */
+	public static Reader openReader(InputStream is) throws IOException {
+
+		BufferedInputStream bis = new BufferedInputStream(is, DETECTION_SAMPLE_SIZE);
+		bis.mark(DETECTION_SAMPLE_SIZE);
+		byte[] sample = new byte[DETECTION_SAMPLE_SIZE];
+		int length = read(bis, sample, 0);
+		bis.reset();
+
+		String encoding = fromByteOrderMark(sample, length);
+		if (encoding != null) {
+			return new InputStreamReader(bis, encoding);
+		}
+
+		int from = skipPlainText(sample, 0, length);
+		if (from == length && length == sample.length) {
+			return new PlainTextReader(bis);
+		}
+		return new InputStreamReader(bis, detect(sample, from, length, length == sample.length));
+	}
 
+	// ======================= private methods =======================
+
+	/**
+	 * Detect the encoding of a sample that starts at the first byte that is not plain
+	 * ASCII text
+	 * 
+	 * @param bytes: the bytes
+	 * @param from: the first byte of the sample, inclusive
+	 * @param to: the last byte of the sample, exclusive
+	 * @param truncated: true if the sample is the beginning of a longer content
+	 * @return the charset encoding
+	 */
+	private static String detect(byte[] bytes, int from, int to, boolean truncated) {
+
+		if (isUTF8(bytes, from, to, truncated)) {
+			return UTF_8;
+		}
+
+		UniversalDetector detector = new UniversalDetector(null);
+		for (int offset = from; offset < to && !detector.isDone(); offset += DETECTION_CHUNK_SIZE) {
+			detector.handleData(bytes, offset, Math.min(DETECTION_CHUNK_SIZE, to - offset));
+		}
+		detector.dataEnd();
 		String encoding = detector.getDetectedCharset();
-		detector.reset();
 
 		if (encoding == null || "MACCYRILLIC".equals(encoding)) {
 			// juniversalchardet incorrectly detects windows-1256 as MACCYRILLIC
 			// If encoding is MACCYRILLIC or null, we use ICU4J
-			CharsetMatch detected = new CharsetDetector().setText(bytes).detect();
-			if (detected != null) {
-				encoding = detected.getName();
+			encoding = IcuDetector.detect(bytes, from, to);
+		}
+
+		return encoding;
+	}
+
+	/**
+	 * Check if a byte is plain ASCII text, decoded the same in all the encodings but
+	 * UTF-16 and UTF-32
+	 * 
+	 * @param b: the byte
+	 * @return true if the byte is neither NUL nor over 0x7F
+	 */
+	private static boolean isPlainText(byte b) {
+
+		return b > 0;
+	}
+
+	/**
+	 * Find the first byte that is not plain ASCII text
+	 * 
+	 * @param bytes: the bytes
+	 * @param from: the first byte, inclusive
+	 * @param to: the last byte, exclusive
+	 * @return the position of the byte, <code>to</code> if all the bytes are plain text
+	 */
+	private static int skipPlainText(byte[] bytes, int from, int to) {
+
+		int i = from;
+		while (i < to && isPlainText(bytes[i])) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Read a stream until an array is full
+	 * 
+	 * @param is: the input stream
+	 * @param bytes: the array
+	 * @param from: the position of the first byte read
+	 * @return the number of bytes in the array, less than its length at the end of the
+	 *         stream
+	 * @throws IOException
+	 */
+	private static int read(InputStream is, byte[] bytes, int from) throws IOException {
+
+		int length = from;
+		int read;
+		while (length < bytes.length && (read = is.read(bytes, length, bytes.length - length)) != -1) {
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Get the encoding given by a byte order mark
+	 * 
+	 * @param bytes: the bytes
+	 * @param length: the number of bytes
+	 * @return the encoding, null if there is no byte order mark
+	 */
+	private static String fromByteOrderMark(byte[] bytes, int length) {
+
+		int b0 = length > 0 ? bytes[0] & 0xFF : -1;
+		int b1 = length > 1 ? bytes[1] & 0xFF : -1;
+		int b2 = length > 2 ? bytes[2] & 0xFF : -1;
+		int b3 = length > 3 ? bytes[3] & 0xFF : -1;
+
+		if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+			return UTF_8;
+		}
+		if (b0 == 0xFF && b1 == 0xFE && b2 == 0x00 && b3 == 0x00) {
+			return "UTF-32LE";
+		}
+		if (b0 == 0x00 && b1 == 0x00 && b2 == 0xFE && b3 == 0xFF) {
+			return "UTF-32BE";
+		}
+		if (b0 == 0xFF && b1 == 0xFE) {
+			return "UTF-16LE";
+		}
+		if (b0 == 0xFE && b1 == 0xFF) {
+			return "UTF-16BE";
+		}
+		return null;
+	}
+
+	/**
+	 * Check if bytes are valid UTF-8, without overlong forms nor surrogates. Other
+	 * encodings very rarely produce valid multi-byte sequences by chance, but the bytes
+	 * that follow plain ASCII text may be in any encoding.
+	 * 
+	 * @param bytes: the bytes
+	 * @param from: the first byte, inclusive
+	 * @param to: the last byte, exclusive
+	 * @param truncated: true if the bytes are the beginning of a longer content, a
+	 *            sequence cut at the end is then accepted but at least one multi-byte
+	 *            sequence is required
+	 * @return true if the bytes are valid UTF-8
+	 */
+	private static boolean isUTF8(byte[] bytes, int from, int to, boolean truncated) {
+
+		boolean multiByte = false;
+		int i = from;
+		while (i < to) {
+			int b = bytes[i] & 0xFF;
+			if (b < 0x80) {
+				if (b == 0 && i + 1 < to && bytes[i + 1] != 0) {
+					// Probably UTF-16 or UTF-32 without byte order mark
+					return false;
+				}
+				i++;
+				continue;
+			}
+
+			int continuations;
+			int min;
+			if (b >= 0xC2 && b <= 0xDF) {
+				continuations = 1;
+				min = 0x80;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				continuations = 2;
+				min = 0x800;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				continuations = 3;
+				min = 0x10000;
 			} else {
-				encoding = "UTF-8";
+				return false;
 			}
+
+			if (i + continuations >= to) {
+				return truncated && areContinuations(bytes, i + 1, to);
+			}
+			if (!areContinuations(bytes, i + 1, i + 1 + continuations)) {
+				return false;
+			}
+
+			int code = b & (0x3F >> continuations);
+			for (int c = 1; c <= continuations; c++) {
+				code = code << 6 | bytes[i + c] & 0x3F;
+			}
+			if (code < min || code > 0x10FFFF || code >= 0xD800 && code <= 0xDFFF) {
+				return false;
+			}
+			multiByte = true;
+			i += continuations + 1;
 		}
+		return multiByte || !truncated;
+	}
 
-		return encoding;
+	/**
+	 * Check if bytes are all UTF-8 continuation bytes
+	 * 
+	 * @param bytes: the bytes
+	 * @param from: the first byte, inclusive
+	 * @param to: the last byte, exclusive
+	 * @return true if all the bytes are continuation bytes
+	 */
+	private static boolean areContinuations(byte[] bytes, int from, int to) {
+
+		for (int i = from; i < to; i++) {
+			if ((bytes[i] & 0xC0) != 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reader of a stream whose first bytes are plain ASCII text: the text is decoded as
+	 * ASCII until the first other byte, the encoding is then detected from this byte
+	 */
+	private static final class PlainTextReader extends Reader {
+
+		private final BufferedInputStream in;
+
+		private final byte[] bytes = new byte[DETECTION_CHUNK_SIZE];
+
+		/**
+		 * The reader of the bytes that follow the plain text, null until they are reached
+		 */
+		private Reader decoder;
+
+		PlainTextReader(BufferedInputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+
+			if (this.decoder != null) {
+				return this.decoder.read(cbuf, off, len);
+			}
+			if (len == 0) {
+				return 0;
+			}
+
+			this.in.mark(DETECTION_CHUNK_SIZE);
+			int read = this.in.read(this.bytes, 0, Math.min(len, this.bytes.length));
+			if (read == -1) {
+				return -1;
+			}
+
+			int plain = skipPlainText(this.bytes, 0, read);
+			for (int i = 0; i < plain; i++) {
+				cbuf[off + i] = (char) this.bytes[i];
+			}
+			if (plain == read) {
+				return plain;
+			}
+
+			// The sample starts at the first byte that is not plain text
+			this.in.reset();
+			for (long skipped = 0; skipped < plain;) {
+				skipped += this.in.skip(plain - skipped);
+			}
+			this.in.mark(DETECTION_SAMPLE_SIZE);
+			byte[] sample = new byte[DETECTION_SAMPLE_SIZE];
+			int length = FileUtils.read(this.in, sample, 0);
+			this.in.reset();
+			this.decoder = new InputStreamReader(this.in, detect(sample, 0, length, length == sample.length));
+
+			return plain > 0 ? plain : this.decoder.read(cbuf, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			this.in.close();
+		}
+	}
+
+	/**
+	 * Detection with ICU4J, in its own class so that ICU4J is only loaded when it is used
+	 */
+	private static final class IcuDetector {
+
+		/**
+		 * Detect the encoding of bytes
+		 * 
+		 * @param bytes: the bytes
+		 * @param from: the first byte, inclusive
+		 * @param to: the last byte, exclusive
+		 * @return the encoding, UTF-8 if ICU4J cannot tell
+		 */
+		static String detect(byte[] bytes, int from, int to) {
+
+			byte[] sample = from == 0 && to == bytes.length ? bytes : Arrays.copyOfRange(bytes, from, to);
+			CharsetMatch detected = new CharsetDetector().setText(sample).detect();
+			return detected != null ? detected.getName() : UTF_8;
+		}
 	}
 
 }
@@ -0,0 +1,408 @@
+package com.github.dnbn.submerge.api.utils;
+
+import java.util.Arrays;
+
+/**
+ * Tokens of a subtitle text line, found in one pass: plain text, italic tags and other
+ * formatting tags. The tokens are ranges of the line, kept in arrays.
+ * 
+ * <pre>
+ * TextTokens tokens = TextTokens.of("{\\i1}Hello{\\b1} world", Syntax.ASS);
+ * for (int i = 0; i &lt; tokens.size(); i++) {
+ * 	System.out.println(tokens.getType(i) + ": " + tokens.getText(i));
+ * }
+ * </pre>
+ * 
+ * A tag is an ASS override block <code>{...}</code> for the ASS syntax, and an HTML tag
+ * <code>&lt;...&gt;</code> for the SRT syntax. An italic tag is never part of another tag:
+ * a tag ends at the first closing character that does not close an italic tag, and an
+ * opening character without end is plain text.
+ */
+public final class TextTokens {
+
+	/**
+	 * Initial capacity of the arrays
+	 */
+	private static final int DEFAULT_CAPACITY = 4;
+
+	private static final Type[] TYPES = Type.values();
+
+	/**
+	 * The text line
+	 */
+	private final String source;
+
+	private final Syntax syntax;
+
+	/**
+	 * Type of each token, as an ordinal
+	 */
+	private byte[] types = new byte[DEFAULT_CAPACITY];
+
+	/**
+	 * Index of the first char of each token
+	 */
+	private int[] starts = new int[DEFAULT_CAPACITY];
+
+	/**
+	 * Index after the last char of each token
+	 */
+	private int[] ends = new int[DEFAULT_CAPACITY];
+
+	/**
+	 * Number of tokens
+	 */
+	private int size;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source: the text line
+	 * @param syntax: the syntax of the tags
+	 */
+	private TextTokens(String source, Syntax syntax) {
+
+		this.source = source;
+		this.syntax = syntax;
+	}
+
+	/**
+	 * Split a text line into tokens
+	 * 
+	 * @param textLine: the text line
+	 * @param syntax: the syntax of the tags of the line
+	 * @return the tokens
+	 */
+	public static TextTokens of(String textLine, Syntax syntax) {
+
+		TextTokens tokens = new TextTokens(textLine, syntax);
+		tokens.tokenize();
+		return tokens;
+	}
+
+	/**
+	 * Check if the line has no tag at all
+	 * 
+	 * @return true if the line is only plain text
+	 */
+	public boolean isPlainText() {
+
+		return this.size == 0 || this.size == 1 && this.types[0] == Type.TEXT.ordinal();
+	}
+
+	/**
+	 * Get the number of tokens
+	 * 
+	 * @return the number of tokens
+	 */
+	public int size() {
+
+		return this.size;
+	}
+
+	/**
+	 * Get the type of a token
+	 * 
+	 * @param index: the index of the token
+	 * @return the type
+	 */
+	public Type getType(int index) {
+
+		checkIndex(index);
+		return TYPES[this.types[index]];
+	}
+
+	/**
+	 * Get the index of the first char of a token in the line
+	 * 
+	 * @param index: the index of the token
+	 * @return the index in the line, inclusive
+	 */
+	public int getStart(int index) {
+
+		checkIndex(index);
+		return this.starts[index];
+	}
+
+	/**
+	 * Get the index after the last char of a token in the line
+	 * 
+	 * @param index: the index of the token
+	 * @return the index in the line, exclusive
+	 */
+	public int getEnd(int index) {
+
+		checkIndex(index);
+		return this.ends[index];
+	}
+
+	/**
+	 * Get the chars of a token
+	 * 
+	 * @param index: the index of the token
+	 * @return the chars of the token, tag delimiters included
+	 */
+	public String getText(int index) {
+
+		checkIndex(index);
+		return this.source.substring(this.starts[index], this.ends[index]);
+	}
+
+	/**
+	 * Append the line to a builder in a syntax: the plain text is kept, the italic tags
+	 * are written in the target syntax, the other tags are kept if they already are in the
+	 * target syntax and removed otherwise
+	 * 
+	 * @param sb: the builder
+	 * @param target: the syntax to write
+	 * @return the builder
+	 */
+	public StringBuilder appendTo(StringBuilder sb, Syntax target) {
+
+		for (int i = 0; i < this.size; i++) {
+			switch (TYPES[this.types[i]]) {
+			case ITALIC_OPEN:
+				sb.append(target.italicOpen);
+				break;
+			case ITALIC_CLOSE:
+				sb.append(target.italicClose);
+				break;
+			case TAG:
+				if (target == this.syntax) {
+					sb.append(this.source, this.starts[i], this.ends[i]);
+				}
+				break;
+			default:
+				sb.append(this.source, this.starts[i], this.ends[i]);
+			}
+		}
+		return sb;
+	}
+
+	/**
+	 * Write the line in a syntax, see <code>appendTo</code>
+	 * 
+	 * @param target: the syntax to write
+	 * @return the line, the same instance if it has no tag
+	 */
+	public String toString(Syntax target) {
+
+		if (isPlainText()) {
+			return this.source;
+		}
+		return appendTo(new StringBuilder(this.source.length() + 8), target).toString();
+	}
+
+	@Override
+	public String toString() {
+
+		return this.source;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Split the line into tokens, consecutive plain text chars are a single token
+	 */
+	private void tokenize() {
+
+		String text = this.source;
+		int length = text.length();
+
+		// Once a tag is found without end, no later tag can have one
+		boolean unclosed = false;
+		int textStart = 0;
+		int i = 0;
+
+		while ((i = text.indexOf(this.syntax.tagOpen, i)) >= 0) {
+
+			int italic = italicAt(i);
+			int end;
+			Type type;
+			if (italic != 0) {
+				type = italic > 0 ? Type.ITALIC_OPEN : Type.ITALIC_CLOSE;
+				end = i + this.syntax.italicLength(italic);
+			} else {
+				end = unclosed ? 0 : tagEnd(i);
+				if (end <= 0) {
+					// Plain text
+					unclosed |= end == 0;
+					i++;
+					continue;
+				}
+				type = Type.TAG;
+			}
+
+			if (textStart < i) {
+				add(Type.TEXT, textStart, i);
+			}
+			add(type, i, end);
+			i = end;
+			textStart = end;
+		}
+
+		if (textStart < length) {
+			add(Type.TEXT, textStart, length);
+		}
+	}
+
+	/**
+	 * Check if an italic tag starts at an index
+	 * 
+	 * @param index: the index in the line
+	 * @return 1 for an opening tag, -1 for a closing tag, 0 otherwise
+	 */
+	private int italicAt(int index) {
+
+		if (this.source.startsWith(this.syntax.italicOpen, index)) {
+			return 1;
+		}
+		if (this.source.startsWith(this.syntax.italicClose, index)) {
+			return -1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Find the end of a tag, at the first closing char that does not close an italic tag
+	 * 
+	 * @param start: the index of the opening char of the tag
+	 * @return the index after the closing char, 0 if there is no closing char and -1 if the
+	 *         tag is empty when the syntax does not allow it
+	 */
+	private int tagEnd(int start) {
+
+		String text = this.source;
+		int i = start + 1;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (c == this.syntax.tagOpen) {
+				int italic = italicAt(i);
+				if (italic != 0) {
+					i += this.syntax.italicLength(italic);
+					continue;
+				}
+			} else if (c == this.syntax.tagClose) {
+				return i == start + 1 && !this.syntax.allowsEmptyTag ? -1 : i + 1;
+			}
+			i++;
+		}
+		return 0;
+	}
+
+	/**
+	 * Add a token
+	 * 
+	 * @param type: the type
+	 * @param start: the index of the first char
+	 * @param end: the index after the last char
+	 */
+	private void add(Type type, int start, int end) {
+
+		if (this.size == this.types.length) {
+			int capacity = this.size * 2;
+			this.types = Arrays.copyOf(this.types, capacity);
+			this.starts = Arrays.copyOf(this.starts, capacity);
+			this.ends = Arrays.copyOf(this.ends, capacity);
+		}
+
+		this.types[this.size] = (byte) type.ordinal();
+		this.starts[this.size] = start;
+		this.ends[this.size] = end;
+		this.size++;
+	}
+
+	private void checkIndex(int index) {
+
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+		}
+	}
+
+	// ===================== getter and setter start =====================
+
+	public String getSource() {
+		return this.source;
+	}
+
+	public Syntax getSyntax() {
+		return this.syntax;
+	}
+
+	/**
+	 * Syntax of the tags of a text line
+	 */
+	public enum Syntax {
+
+		/**
+		 * ASS override blocks, <code>{\i1}</code> and <code>{\i0}</code> for italic
+		 */
+		ASS('{', '}', "{\\i1}", "{\\i0}", true),
+
+		/**
+		 * HTML tags, <code>&lt;i&gt;</code> and <code>&lt;/i&gt;</code> for italic
+		 */
+		SRT('<', '>', "<i>", "</i>", false);
+
+		private final char tagOpen;
+
+		private final char tagClose;
+
+		private final String italicOpen;
+
+		private final String italicClose;
+
+		/**
+		 * Whether a tag can have nothing between its delimiters
+		 */
+		private final boolean allowsEmptyTag;
+
+		Syntax(char tagOpen, char tagClose, String italicOpen, String italicClose, boolean allowsEmptyTag) {
+
+			this.tagOpen = tagOpen;
+			this.tagClose = tagClose;
+			this.italicOpen = italicOpen;
+			this.italicClose = italicClose;
+			this.allowsEmptyTag = allowsEmptyTag;
+		}
+
+		/**
+		 * Get the length of an italic tag
+		 * 
+		 * @param italic: 1 for the opening tag, -1 for the closing tag
+		 * @return the number of chars
+		 */
+		private int italicLength(int italic) {
+
+			return italic > 0 ? this.italicOpen.length() : this.italicClose.length();
+		}
+	}
+
+	/**
+	 * Type of a token
+	 */
+	public enum Type {
+
+		/**
+		 * Plain text
+		 */
+		TEXT,
+
+		/**
+		 * Tag starting italic text
+		 */
+		ITALIC_OPEN,
+
+		/**
+		 * Tag ending italic text
+		 */
+		ITALIC_CLOSE,
+
+		/**
+		 * Any other tag
+		 */
+		TAG
+
+	}
+
+}
@@ -0,0 +1,302 @@
+package com.github.dnbn.submerge.api.utils;
+
+import java.time.DateTimeException;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parse and format subtitle timecodes as milliseconds, without going through
+ * <code>DateTimeFormatter</code>
+ */
+public final class TimecodeUtils {
+
+	/**
+	 * Nanoseconds in a millisecond
+	 */
+	public static final long NANOS_PER_MILLI = 1_000_000;
+
+	/**
+	 * Milliseconds in a second
+	 */
+	private static final long MILLIS_PER_SECOND = 1000;
+
+	/**
+	 * Milliseconds in a minute
+	 */
+	private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+
+	/**
+	 * Milliseconds in an hour
+	 */
+	private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+	/**
+	 * Milliseconds in a day, the upper bound of a <code>LocalTime</code>
+	 */
+	private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	/**
+	 * Maximum number of digits of the hours
+	 */
+	private static final int MAX_HOUR_DIGITS = 9;
+
+	private TimecodeUtils() {
+	}
+
+	/**
+	 * Parse a timecode. Both the ASS (<code>H:MM:SS.cc</code>) and the SRT
+	 * (<code>HH:MM:SS,mmm</code>) layouts are accepted: the hours can have one or more
+	 * digits, the fraction of second can be separated by a dot or a comma and have one to
+	 * three digits, or be missing. Blank characters around the timecode are ignored.
+	 * 
+	 * @param text: the text holding the timecode
+	 * @param begin: the index of the first char of the timecode
+	 * @param end: the index after the last char of the timecode
+	 * @return the time in milliseconds
+	 * @throws DateTimeParseException if the timecode is not valid
+	 */
+	public static long parseMillis(CharSequence text, int begin, int end) {
+
+		long millis = scan(text, begin, end);
+		if (millis < 0) {
+			throw invalid(text, begin, end, (int) (-millis - 1));
+		}
+		return millis;
+	}
+
+	/**
+	 * Parse a timecode without throwing an exception when it is not valid, for callers
+	 * that expect invalid timecodes
+	 * 
+	 * @param text: the text holding the timecode
+	 * @param begin: the index of the first char of the timecode
+	 * @param end: the index after the last char of the timecode
+	 * @return the time in milliseconds, -1 if the timecode is not valid
+	 * @see #parseMillis(CharSequence, int, int)
+	 */
+	public static long tryParseMillis(CharSequence text, int begin, int end) {
+
+		return Math.max(scan(text, begin, end), -1);
+	}
+
+	/**
+	 * Parse a timecode
+	 * 
+	 * @param text: the timecode
+	 * @return the time in milliseconds
+	 * @throws DateTimeParseException if the timecode is not valid
+	 * @see #parseMillis(CharSequence, int, int)
+	 */
+	public static long parseMillis(CharSequence text) {
+
+		return parseMillis(text, 0, text.length());
+	}
+
+	/**
+	 * Append a timecode in the SRT layout <code>HH:MM:SS,mmm</code>
+	 * 
+	 * @param sb: the string builder
+	 * @param millis: the time in milliseconds
+	 */
+	public static void appendSRT(StringBuilder sb, long millis) {
+
+		appendHours(sb, millis, 2);
+		appendDigits(sb, (int) (millis % MILLIS_PER_SECOND), 3, ',');
+	}
+
+	/**
+	 * Append a timecode in the ASS layout <code>H:MM:SS.cc</code>, the milliseconds are
+	 * truncated to hundredths
+	 * 
+	 * @param sb: the string builder
+	 * @param millis: the time in milliseconds
+	 */
+	public static void appendASS(StringBuilder sb, long millis) {
+
+		appendHours(sb, millis, 1);
+		appendDigits(sb, (int) (millis % MILLIS_PER_SECOND) / 10, 2, '.');
+	}
+
+	/**
+	 * Convert milliseconds to <code>LocalTime</code>
+	 * 
+	 * @param millis: the time in milliseconds
+	 * @param text: the parsed text, for the error message
+	 * @return the local time
+	 * @throws DateTimeParseException if the time is not in a day
+	 */
+	public static LocalTime toLocalTime(long millis, CharSequence text) {
+
+		if (millis < 0 || millis >= MILLIS_PER_DAY) {
+			throw new DateTimeParseException("Text '" + text + "' is out of the day", text, 0);
+		}
+		return LocalTime.ofNanoOfDay(millis * NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Convert milliseconds to <code>LocalTime</code>
+	 * 
+	 * @param millis: the time in milliseconds
+	 * @return the local time
+	 * @throws DateTimeException if the time is beyond 24 hours
+	 */
+	public static LocalTime toLocalTime(long millis) {
+
+		if (millis < 0 || millis >= MILLIS_PER_DAY) {
+			throw new DateTimeException("Time out of the day: " + millis + "ms");
+		}
+		return LocalTime.ofNanoOfDay(millis * NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Convert a <code>LocalTime</code> to milliseconds, sub-millisecond precision is
+	 * truncated
+	 * 
+	 * @param time: the local time
+	 * @return the time in milliseconds
+	 */
+	public static long toMillis(LocalTime time) {
+
+		return time.toNanoOfDay() / NANOS_PER_MILLI;
+	}
+
+	// ======================= private methods =======================
+
+	/**
+	 * Append the hours, minutes and seconds: H:MM:SS
+	 * 
+	 * @param sb: the string builder
+	 * @param millis: the time in milliseconds
+	 * @param hourDigits: the minimum number of digits of the hours
+	 */
+	private static void appendHours(StringBuilder sb, long millis, int hourDigits) {
+
+		long hours = millis / MILLIS_PER_HOUR;
+		if (hours < 10 && hourDigits == 2) {
+			sb.append('0');
+		}
+		sb.append(hours);
+		appendDigits(sb, (int) (millis / MILLIS_PER_MINUTE % 60), 2, ':');
+		appendDigits(sb, (int) (millis / MILLIS_PER_SECOND % 60), 2, ':');
+	}
+
+	/**
+	 * Append a separator followed by a zero-padded number
+	 * 
+	 * @param sb: the string builder
+	 * @param value: the number
+	 * @param width: the number of digits
+	 * @param sep: the separator
+	 */
+	private static void appendDigits(StringBuilder sb, int value, int width, char sep) {
+
+		sb.append(sep);
+		for (int divisor = width == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+			sb.append((char) ('0' + value / divisor % 10));
+		}
+	}
+
+	/**
+	 * Parse a timecode
+	 * 
+	 * @param text: the text holding the timecode
+	 * @param begin: the index of the first char of the timecode
+	 * @param end: the index after the last char of the timecode
+	 * @return the time in milliseconds, or <code>-(index + 1)</code> where index is the
+	 *         position of the first invalid char
+	 */
+	private static long scan(CharSequence text, int begin, int end) {
+
+		while (begin < end && text.charAt(begin) <= ' ') {
+			begin++;
+		}
+		while (end > begin && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		int i = begin;
+		long hours = 0;
+		while (i < end && isDigit(text.charAt(i)) && i - begin < MAX_HOUR_DIGITS) {
+			hours = hours * 10 + (text.charAt(i++) - '0');
+		}
+
+		if (i == begin || i + 6 > end || text.charAt(i) != ':' || text.charAt(i + 3) != ':') {
+			return -(i + 1);
+		}
+
+		int minutes = twoDigits(text, i + 1);
+		int seconds = twoDigits(text, i + 4);
+		if (minutes < 0 || seconds < 0) {
+			return -(i + 1 + (minutes < 0 ? 0 : 3) + 1);
+		}
+		if (minutes > 59 || seconds > 59) {
+			return -(i + 1 + 1);
+		}
+		i += 6;
+
+		int millis = 0;
+		if (i < end) {
+			char sep = text.charAt(i);
+			int digits = end - i - 1;
+			if ((sep != '.' && sep != ',') || digits < 1 || digits > 3) {
+				return -(i + 1);
+			}
+			for (int d = 0; d < 3; d++) {
+				millis *= 10;
+				if (d < digits) {
+					char c = text.charAt(i + 1 + d);
+					if (!isDigit(c)) {
+						return -(i + 1 + d + 1);
+					}
+					millis += c - '0';
+				}
+			}
+		}
+
+		return hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE + seconds * MILLIS_PER_SECOND + millis;
+	}
+
+	/**
+	 * Parse two digits
+	 * 
+	 * @param text: the text holding the timecode
+	 * @param i: the index of the first digit
+	 * @return the value, -1 if the chars are not digits
+	 */
+	private static int twoDigits(CharSequence text, int i) {
+
+		char tens = text.charAt(i);
+		char units = text.charAt(i + 1);
+		if (!isDigit(tens) || !isDigit(units)) {
+			return -1;
+		}
+		return (tens - '0') * 10 + units - '0';
+	}
+
+	private static boolean isDigit(char c) {
+
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Create the exception thrown for an invalid timecode
+	 * 
+	 * @param text: the text holding the timecode
+	 * @param begin: the index of the first char of the timecode
+	 * @param end: the index after the last char of the timecode
+	 * @param index: the index of the error
+	 * @return the exception
+	 */
+	private static DateTimeParseException invalid(CharSequence text, int begin, int end, int index) {
+
+		while (begin < end && text.charAt(begin) <= ' ') {
+			begin++;
+		}
+		while (end > begin && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		String timecode = text.subSequence(begin, end).toString();
+		return new DateTimeParseException("Text '" + timecode + "' is not a valid timecode", timecode, index - begin);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.github.dnbn.submerge.api.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.subtitle.ass.Events;
+
+/**
+ * Write SSA/ASS subtitles. The header must be written before the events.
+ */
+public class ASSWriter extends BaseWriter<ASSSub> {
+
+	/**
+	 * Line separator
+	 */
+	private static final char NEW_LINE = '\n';
+
+	/**
+	 * Constructor
+	 * 
+	 * @param os: the output stream
+	 * @param charset: the charset used to encode the subtitle
+	 */
+	public ASSWriter(OutputStream os, Charset charset) {
+
+		super(os, charset);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out: the writer
+	 */
+	public ASSWriter(Writer out) {
+
+		super(out);
+	}
+
+	@Override
+	public void write(ASSSub sub) throws IOException {
+
+		writeHeader(sub);
+		for (Events event : sub.getEvents()) {
+			writeEvent(event);
+		}
+	}
+
+	/**
+	 * Write the script info, the styles and the events format line of a subtitle. Its
+	 * events are not written.
+	 * 
+	 * @param header: the subtitle to take the header from
+	 * @throws IOException
+	 */
+	public void writeHeader(ASSSub header) throws IOException {
+
+		header.appendHeader(this.buffer);
+		drainIfFull();
+	}
+
+	/**
+	 * Write a dialogue line
+	 * 
+	 * @param event: the event to write
+	 * @throws IOException
+	 */
+	public void writeEvent(Events event) throws IOException {
+
+		event.appendTo(this.buffer);
+		this.buffer.append(NEW_LINE);
+		drainIfFull();
+	}
+
+}
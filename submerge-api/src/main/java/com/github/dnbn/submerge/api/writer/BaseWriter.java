@@ -0,0 +1,104 @@
+package com.github.dnbn.submerge.api.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+public abstract class BaseWriter<T extends TimedTextFile> implements SubtitleWriter<T> {
+
+	/**
+	 * Number of chars buffered before being written to the stream
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The underlying writer
+	 */
+	private final Writer out;
+
+	/**
+	 * Reusable buffer in which the lines are formatted
+	 */
+	protected final StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+
+	/**
+	 * Reusable array used to copy the buffer to the writer
+	 */
+	private char[] chars = new char[BUFFER_SIZE];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param os: the output stream
+	 * @param charset: the charset used to encode the subtitle
+	 */
+	protected BaseWriter(OutputStream os, Charset charset) {
+
+		this(new OutputStreamWriter(os, charset));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out: the writer
+	 */
+	protected BaseWriter(Writer out) {
+
+		this.out = out;
+	}
+
+	@Override
+	public void flush() throws IOException {
+
+		drain();
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			drain();
+		} finally {
+			this.out.close();
+		}
+	}
+
+	/**
+	 * Write the buffer to the stream once it is full. Must be called after each line
+	 * appended to the buffer.
+	 * 
+	 * @throws IOException
+	 */
+	protected void drainIfFull() throws IOException {
+
+		if (this.buffer.length() >= BUFFER_SIZE) {
+			drain();
+		}
+	}
+
+	/**
+	 * Write the whole buffer to the stream and empty it
+	 * 
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+
+		int length = this.buffer.length();
+		if (length == 0) {
+			return;
+		}
+
+		if (this.chars.length < length) {
+			this.chars = new char[length];
+		}
+		this.buffer.getChars(0, length, this.chars, 0);
+		this.out.write(this.chars, 0, length);
+		this.buffer.setLength(0);
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.github.dnbn.submerge.api.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.github.dnbn.submerge.api.subtitle.srt.SRTLine;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+
+/**
+ * Write SRT subtitles
+ */
+public class SRTWriter extends BaseWriter<SRTSub> {
+
+	/**
+	 * Constructor
+	 * 
+	 * @param os: the output stream
+	 * @param charset: the charset used to encode the subtitle
+	 */
+	public SRTWriter(OutputStream os, Charset charset) {
+
+		super(os, charset);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out: the writer
+	 */
+	public SRTWriter(Writer out) {
+
+		super(out);
+	}
+
+	@Override
+	public void write(SRTSub sub) throws IOException {
+
+		for (SRTLine line : sub.getLines()) {
+			writeLine(line);
+		}
+	}
+
+	/**
+	 * Write a subtitle line
+	 * 
+	 * @param line: the line to write
+	 * @throws IOException
+	 */
+	public void writeLine(SRTLine line) throws IOException {
+
+		line.appendTo(this.buffer);
+		drainIfFull();
+	}
+
+}
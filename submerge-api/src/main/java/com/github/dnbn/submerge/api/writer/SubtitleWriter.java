@@ -0,0 +1,26 @@
+package com.github.dnbn.submerge.api.writer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+
+/**
+ * Write subtitles to a stream, line by line, without building the whole file in memory.
+ * 
+ * Closing the writer closes the underlying stream.
+ *
+ * @param <T> the type of subtitle written
+ */
+public interface SubtitleWriter<T extends TimedTextFile> extends Closeable, Flushable {
+
+	/**
+	 * Write a complete subtitle
+	 * 
+	 * @param sub: the subtitle to write
+	 * @throws IOException
+	 */
+	void write(T sub) throws IOException;
+
+}
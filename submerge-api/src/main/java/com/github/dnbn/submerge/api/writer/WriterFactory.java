@@ -0,0 +1,47 @@
+package com.github.dnbn.submerge.api.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.apache.commons.lang.NotImplementedException;
+
+import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
+import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+
+public final class WriterFactory {
+
+	/**
+	 * Write a subtitle with the writer matching its format. The stream is flushed but not
+	 * closed.
+	 * 
+	 * @param sub: the subtitle to write
+	 * @param os: the output stream
+	 * @param charset: the charset used to encode the subtitle
+	 * @throws IOException
+	 */
+	public static void write(TimedTextFile sub, OutputStream os, Charset charset) throws IOException {
+
+		if (sub instanceof ASSSub) {
+			ASSWriter writer = new ASSWriter(os, charset);
+			writer.write((ASSSub) sub);
+			writer.flush();
+		} else if (sub instanceof SRTSub) {
+			SRTWriter writer = new SRTWriter(os, charset);
+			writer.write((SRTSub) sub);
+			writer.flush();
+		} else {
+			throw new NotImplementedException(sub.getClass().getSimpleName() + " format not supported");
+		}
+	}
+
+	/**
+	 * Private constructor
+	 */
+	private WriterFactory() {
+
+		throw new AssertionError();
+	}
+
+}
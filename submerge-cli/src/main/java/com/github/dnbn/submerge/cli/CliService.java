@@ -1,9 +1,14 @@
 package com.github.dnbn.submerge.cli;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
@@ -12,6 +17,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
 
 import com.github.dnbn.submerge.api.SubmergeAPI;
+import com.github.dnbn.submerge.api.SubtitlePipeline;
 import com.github.dnbn.submerge.api.parser.ParserFactory;
 import com.github.dnbn.submerge.api.parser.SubtitleParser;
 import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
@@ -20,6 +26,8 @@ import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
+import com.github.dnbn.submerge.api.writer.ASSWriter;
+import com.github.dnbn.submerge.api.writer.WriterFactory;
 import com.github.dnbn.submerge.cli.configuration.ConfigurationLoader;
 import com.github.dnbn.submerge.cli.configuration.user.AdjustTimecodes;
 import com.github.dnbn.submerge.cli.configuration.user.DualAssConfig;
@@ -43,13 +51,13 @@ public class CliService {
 		validFiles(file);
 		String ext = FilenameUtils.getExtension(file.getName());
 
-		SubtitleParser parser = ParserFactory.getParser(ext);
+		SubtitleParser parser = ParserFactory.getParser(file);
 
 		TimedTextFile ttf = parser.parse(file);
 		SRTSub srt = this.api.toSRT(ttf);
 
 		String finalName = getFinalFilename(outputFilename, file, ext, "srt");
-		FileUtils.writeStringToFile(new File(finalName), srt.toString());
+		write(srt, new File(finalName));
 	}
 
 	/**
@@ -66,7 +74,7 @@ public class CliService {
 		validFiles(file);
 		String ext = FilenameUtils.getExtension(file.getName());
 
-		SubtitleParser parser = ParserFactory.getParser(ext);
+		SubtitleParser parser = ParserFactory.getParser(file);
 		TimedTextFile ttf = parser.parse(file);
 
 		SubtitleConfig config = ConfigurationLoader.loadUserConfiguration().getSimpleAssConfig();
@@ -77,7 +85,7 @@ public class CliService {
 		ASSSub ass = this.api.toASS(subConfig);
 
 		String finalName = getFinalFilename(outputFilename, file, ext, "ass");
-		FileUtils.writeStringToFile(new File(finalName), ass.toString());
+		write(ass, new File(finalName));
 	}
 
 	/**
@@ -116,31 +124,16 @@ public class CliService {
 
 		validFiles(topFile, botFile);
 
-		String extOne = FilenameUtils.getExtension(topFile.getName());
-		String extTwo = FilenameUtils.getExtension(botFile.getName());
-
-		TimedTextFile subOne = ParserFactory.getParser(extOne).parse(topFile);
-		TimedTextFile subTwo = ParserFactory.getParser(extTwo).parse(botFile);
+		TimedTextFile subOne = ParserFactory.getParser(topFile).parse(topFile);
+		TimedTextFile subTwo = ParserFactory.getParser(botFile).parse(botFile);
 
 		DualAssConfig config = ConfigurationLoader.loadUserConfiguration().getDualAssConfig();
 
-		// Clean ASS formatting
-		if (config.isCleanSubtitles()) {
-			subOne = this.api.toSRT(subOne);
-			subTwo = this.api.toSRT(subTwo);
-		}
-
-		// Disallow multi-lines
-		if (config.isMergeIntoOneLine()) {
-			this.api.mergeTextLines(subOne);
-			this.api.mergeTextLines(subTwo);
-		}
+		subOne = prepare(subOne, config, null);
 
 		// Adjust timecodes
 		AdjustTimecodes adjustmentConfig = config.getAdjustTimecodes();
-		if (adjustmentConfig.getValue()) {
-			this.api.adjustTimecodes(subTwo, subOne, adjustmentConfig.getTolerance());
-		}
+		subTwo = prepare(subTwo, config, adjustmentConfig.getValue() ? subOne : null);
 
 		SimpleSubConfig subConfigOne = createSimpleSubConfig(subOne, config.getOne());
 		SimpleSubConfig subConfigTwo = createSimpleSubConfig(subTwo, config.getTwo());
@@ -158,8 +151,6 @@ public class CliService {
 			}
 		}
 
-		ASSSub ass = this.api.mergeToAss(subConfigOne, subConfigTwo);
-
 		String finalName = outputFilename;
 		if (StringUtils.isEmpty(finalName)) {
 			finalName = config.getFilename();
@@ -178,7 +169,9 @@ public class CliService {
 		StrSubstitutor substitutor = new StrSubstitutor(substitutes);
 		finalName = substitutor.replace(finalName);
 
-		FileUtils.writeStringToFile(new File(finalName + ".ass", "UTF-8"), ass.toString());
+		try (ASSWriter writer = new ASSWriter(new FileOutputStream(finalName + ".ass"), StandardCharsets.UTF_8)) {
+			this.api.mergeToAss(writer, subConfigOne, subConfigTwo);
+		}
 	}
 
 	/**
@@ -198,14 +191,15 @@ public class CliService {
 		validFiles(file);
 
 		String ext = FilenameUtils.getExtension(file.getName());
-		TimedTextFile sub = ParserFactory.getParser(ext).parse(file);
+		TimedTextFile sub = StringUtils.isEmpty(outputFilename) ? parseToOverwrite(file)
+				: ParserFactory.getParser(file).parse(file);
 
-		this.api.convertFramerate(sub, source, destination);
+		SubtitlePipeline pipeline = this.api.pipeline(sub).convertFramerate(source, destination);
 
 		if (StringUtils.isEmpty(outputFilename)) {
-			FileUtils.writeStringToFile(file, sub.toString(), "UTF-8");
+			write(pipeline, file);
 		} else {
-			FileUtils.writeStringToFile(new File(outputFilename + "." + ext), sub.toString(), "UTF-8");
+			write(pipeline, new File(outputFilename + "." + ext));
 		}
 	}
 
@@ -219,18 +213,90 @@ public class CliService {
 	 */
 	public void removeLastLines(File file) throws IOException, InvalidSubException, InvalidFileException {
 
-		String extension = FilenameUtils.getExtension(file.getName());
-		TimedTextFile timedTextFile = ParserFactory.getParser(extension).parse(file);
+		TimedTextFile timedTextFile = parseToOverwrite(file);
 
-		timedTextFile.getTimedLines().forEach(line -> {
+		SubtitlePipeline pipeline = this.api.pipeline(timedTextFile).mapText(textLines -> {
 
-			List<String> textLines = line.getTextLines();
 			if (textLines.size() > 1) {
-				textLines.remove(textLines.size() - 1);
+				return new ArrayList<>(textLines.subList(0, textLines.size() - 1));
 			}
+			return textLines;
 		});
 
-		FileUtils.writeStringToFile(file, timedTextFile.toString());
+		write(pipeline, file);
+	}
+
+	/**
+	 * Prepare a subtitle to merge in a single pass over its lines
+	 * 
+	 * @param sub the subtitle
+	 * @param config the merge configuration
+	 * @param reference the subtitle to adjust the timecodes to, null to keep them
+	 * @return the prepared subtitle
+	 */
+	private TimedTextFile prepare(TimedTextFile sub, DualAssConfig config, TimedTextFile reference) {
+
+		SubtitlePipeline pipeline = this.api.pipeline(sub);
+
+		// Clean ASS formatting
+		if (config.isCleanSubtitles()) {
+			pipeline.cleanText();
+		}
+
+		// Disallow multi-lines
+		if (config.isMergeIntoOneLine()) {
+			pipeline.oneLine();
+		}
+
+		if (reference != null) {
+			pipeline.align(reference, config.getAdjustTimecodes().getTolerance());
+		}
+
+		return config.isCleanSubtitles() ? pipeline.toSRT() : pipeline.toSubtitle();
+	}
+
+	/**
+	 * Parse a subtitle file that is then written over. It is read from a stream: a large
+	 * file parsed from a <code>File</code> is mapped in memory, and on some systems a
+	 * mapped file cannot be truncated until the mapping is garbage collected.
+	 * 
+	 * @param file the subtitle file
+	 * @return the subtitle
+	 * @throws IOException
+	 */
+	private static TimedTextFile parseToOverwrite(File file) throws IOException {
+
+		try (InputStream is = new FileInputStream(file)) {
+			return ParserFactory.getParser(file).parse(is, file.getName());
+		}
+	}
+
+	/**
+	 * Write a subtitle on disk, encoded in UTF-8
+	 * 
+	 * @param sub the subtitle to write
+	 * @param file the destination file
+	 * @throws IOException
+	 */
+	private static void write(TimedTextFile sub, File file) throws IOException {
+
+		try (OutputStream os = new FileOutputStream(file)) {
+			WriterFactory.write(sub, os, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Write the result of a pipeline on disk, encoded in UTF-8
+	 * 
+	 * @param pipeline the pipeline to run
+	 * @param file the destination file
+	 * @throws IOException
+	 */
+	private static void write(SubtitlePipeline pipeline, File file) throws IOException {
+
+		try (OutputStream os = new FileOutputStream(file)) {
+			pipeline.writeTo(os, StandardCharsets.UTF_8);
+		}
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package com.github.dnbn.submerge.web.pages.bean;
 
+import java.io.InputStream;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -11,11 +12,95 @@ import javax.faces.context.FacesContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.github.dnbn.submerge.api.Limits;
+import com.github.dnbn.submerge.api.SubmergeAPI;
+import com.github.dnbn.submerge.api.parser.ParseCache;
+import com.github.dnbn.submerge.api.parser.ParseOptions;
+import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.web.constant.AppConstants;
 import com.github.dnbn.submerge.web.constant.Pages;
 
 public abstract class AbstractManagedBean {
 
+	/**
+	 * Maximum size of an uploaded subtitle, the size limit of the upload components can
+	 * be bypassed by the client
+	 */
+	private static final long UPLOAD_MAX_BYTES = 10 * 1024 * 1024;
+
+	/**
+	 * Maximum number of lines of an uploaded subtitle
+	 */
+	private static final int UPLOAD_MAX_LINES = 500_000;
+
+	/**
+	 * Maximum length of a line of an uploaded subtitle
+	 */
+	private static final int UPLOAD_MAX_LINE_LENGTH = 10_000;
+
+	/**
+	 * Maximum duration of a parse or a merge, in milliseconds
+	 */
+	private static final long OPERATION_TIMEOUT = 10_000;
+
+	/**
+	 * Maximum memory retained by the cache of the uploaded subtitles, in bytes
+	 */
+	private static final long UPLOAD_CACHE_WEIGHT = 64 * 1024 * 1024;
+
+	/**
+	 * Cache of the uploaded subtitles, shared by all the users: the same popular subtitles
+	 * are often uploaded again
+	 */
+	private static final ParseCache UPLOAD_CACHE = new ParseCache(UPLOAD_CACHE_WEIGHT);
+
+	/**
+	 * Get the options to parse an uploaded subtitle, within the limits of the server
+	 * 
+	 * @return the parse options
+	 */
+	protected static ParseOptions getUploadParseOptions() {
+
+		Limits limits = new Limits();
+		limits.setMaxBytes(UPLOAD_MAX_BYTES);
+		limits.setMaxLines(UPLOAD_MAX_LINES);
+		limits.setMaxLineLength(UPLOAD_MAX_LINE_LENGTH);
+		limits.setTimeout(OPERATION_TIMEOUT);
+
+		ParseOptions options = new ParseOptions();
+		options.setLimits(limits);
+		return options;
+	}
+
+	/**
+	 * Parse an uploaded subtitle within the limits of the server, or copy it from the
+	 * cache if the same file was already uploaded. The format is recognized from the
+	 * content, the file name may be wrong.
+	 * 
+	 * @param is: the uploaded file
+	 * @param fileName: the file name
+	 * @return the subtitle, that can be modified
+	 */
+	protected static TimedTextFile parseUpload(InputStream is, String fileName) {
+
+		return UPLOAD_CACHE.parse(is, fileName, getUploadParseOptions());
+	}
+
+	/**
+	 * Get the API to transform the uploaded subtitles, within the time limit of the server
+	 * 
+	 * @return the API
+	 */
+	protected static SubmergeAPI newSubmergeAPI() {
+
+		Limits limits = new Limits();
+		limits.setTimeout(OPERATION_TIMEOUT);
+
+		SubmergeAPI api = new SubmergeAPI();
+		api.setLimits(limits);
+		return api;
+	}
+
 	/**
 	 * Get the default redirection
 	 * 
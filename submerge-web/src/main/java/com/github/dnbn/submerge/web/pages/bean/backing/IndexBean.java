@@ -1,18 +1,24 @@
 package com.github.dnbn.submerge.web.pages.bean.backing;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
 
 import javax.annotation.PostConstruct;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.text.StrSubstitutor;
 import org.primefaces.event.FileUploadEvent;
@@ -23,12 +29,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import com.github.dnbn.submerge.api.MergeCache;
 import com.github.dnbn.submerge.api.SubmergeAPI;
-import com.github.dnbn.submerge.api.parser.ParserFactory;
-import com.github.dnbn.submerge.api.parser.SubtitleParser;
 import com.github.dnbn.submerge.api.parser.exception.InvalidFileException;
 import com.github.dnbn.submerge.api.parser.exception.InvalidSubException;
-import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
+import com.github.dnbn.submerge.api.parser.exception.LimitExceededException;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
 import com.github.dnbn.submerge.web.constant.SupportedLocales;
@@ -93,17 +98,16 @@ public class IndexBean extends AbstractManagedBean implements Serializable {
 
 			UploadedFile uploadedFile = event.getFile();
 			String filename = FilenameUtils.getName(uploadedFile.getFileName());
-			String extension = FilenameUtils.getExtension(uploadedFile.getFileName());
-			SubtitleParser parser = ParserFactory.getParser(extension);
 
 			replaceSub(componentId, null);
 
-			TimedTextFile sub = parser.parse(uploadedFile.getInputstream(), filename);
-			replaceSub(componentId, sub);
+			try (InputStream is = uploadedFile.getInputstream()) {
+				replaceSub(componentId, parseUpload(is, filename));
+			}
 
 			msg = new FacesMessage(FacesMessage.SEVERITY_INFO, null, filename);
 
-		} catch (InvalidSubException | InvalidFileException e) {
+		} catch (InvalidSubException | InvalidFileException | NotImplementedException e) {
 			msg = new FacesMessage(FacesMessage.SEVERITY_ERROR, bundle.getString("sub.invalid"), e.getMessage());
 		} catch (IOException e) {
 			msg = new FacesMessage(FacesMessage.SEVERITY_ERROR, bundle.getString("error.unexpected"), null);
@@ -112,9 +116,11 @@ public class IndexBean extends AbstractManagedBean implements Serializable {
 	}
 
 	/**
-	 * Merge 2 srt input files into one .ass returned as StreamedContent
+	 * Merge 2 srt input files into one .ass returned as StreamedContent. A merge that
+	 * exceeds the limits of the page is aborted, an error message is then added.
 	 * 
-	 * @return the merged ass subtitle
+	 * @return the merged ass subtitle, null if there is nothing to merge or if the merge
+	 *         is aborted
 	 */
 	public StreamedContent getGeneratedFile() {
 
@@ -122,51 +128,25 @@ public class IndexBean extends AbstractManagedBean implements Serializable {
 		TimedTextFile subTwo = this.userConfig.getSecondSubtitle();
 
 		StreamedContent sc = null;
+		FacesMessage msg = null;
 
 		if (subOne != null && subTwo != null) {
-
-			SubmergeAPI api = new SubmergeAPI();
-
-			// Clean ASS formatting
-			if (this.userConfig.isClean()) {
-				subOne = api.toSRT(subOne);
-				subTwo = api.toSRT(subTwo);
-			}
-
-			// Disallow multi-lines
-			if (this.userConfig.isOneLine()) {
-				api.mergeTextLines(subOne);
-				api.mergeTextLines(subTwo);
-			}
-
-			// Adjust timecodes
-			if (this.userConfig.isAdjustTimecodes()) {
-				api.adjustTimecodes(subTwo, subOne, 850);
-			}
-
-			SimpleSubConfig one = ProfileUtils.createSubConfig(subOne, this.userConfig.getProfileOne(), "One");
-			SimpleSubConfig two = ProfileUtils.createSubConfig(subTwo, this.userConfig.getProfileTwo(), "Two");
-
-			// If both subs have the same position, add margin to the first one
-			if (this.userConfig.isAvoidSwitch() && one.getAlignment() == two.getAlignment()) {
-				one.setVerticalMargin(40);
-				if (two.getFontconfig().getSize() > 12) {
-					one.setVerticalMargin(45);
-					two.setVerticalMargin(5);
-				}
-				if (this.userConfig.isOneLine()) {
-					one.setVerticalMargin(35);
-					two.setVerticalMargin(10);
-				}
+			try {
+				sc = merge(subOne, subTwo);
+			} catch (LimitExceededException | CancellationException e) {
+				ResourceBundle bundle = getBundleMessages();
+				msg = new FacesMessage(FacesMessage.SEVERITY_ERROR, bundle.getString("error.aborted"), e.getMessage());
+			} catch (InvalidSubException e) {
+				ResourceBundle bundle = getBundleMessages();
+				msg = new FacesMessage(FacesMessage.SEVERITY_ERROR, bundle.getString("sub.invalid"), e.getMessage());
 			}
-			ASSSub sub = api.mergeToAss(one, two);
-
-			sc = new DefaultStreamedContent(sub.toInputStream(), "text/plain", getFileName() + ".ass");
-			this.histoService.trace(one, two, this.userConfig);
 		}
 
 		saveUserState();
 		updateFilesMessages(true);
+		if (msg != null) {
+			FacesContext.getCurrentInstance().addMessage("index-form:uploadOne", msg);
+		}
 		return sc;
 	}
 
@@ -199,6 +179,59 @@ public class IndexBean extends AbstractManagedBean implements Serializable {
 
 	// ===================== private methods start =====================
 
+	/**
+	 * Merge the 2 subtitles with the options of the user
+	 * 
+	 * @param subOne: the first subtitle
+	 * @param subTwo: the second subtitle
+	 * @return the merged ass subtitle
+	 * @throws InvalidSubException if the merge exceeds the limits of the page, see
+	 *             <code>LimitExceededException</code>
+	 * @throws CancellationException if the merge is cancelled
+	 */
+	private StreamedContent merge(TimedTextFile subOne, TimedTextFile subTwo) {
+
+		SubmergeAPI api = newSubmergeAPI();
+		MergeCache cache = this.userConfig.getMergeCache();
+
+		// Clean ASS formatting and disallow multi-lines
+		subOne = cache.prepare(api, subOne, this.userConfig.isClean(), this.userConfig.isOneLine());
+		subTwo = cache.prepare(api, subTwo, this.userConfig.isClean(), this.userConfig.isOneLine());
+
+		// Adjust timecodes
+		if (this.userConfig.isAdjustTimecodes()) {
+			subTwo = cache.adjust(api, subTwo, subOne, 850);
+		}
+
+		SimpleSubConfig one = ProfileUtils.createSubConfig(subOne, this.userConfig.getProfileOne(), "One");
+		SimpleSubConfig two = ProfileUtils.createSubConfig(subTwo, this.userConfig.getProfileTwo(), "Two");
+
+		// If both subs have the same position, add margin to the first one
+		if (this.userConfig.isAvoidSwitch() && one.getAlignment() == two.getAlignment()) {
+			one.setVerticalMargin(40);
+			if (two.getFontconfig().getSize() > 12) {
+				one.setVerticalMargin(45);
+				two.setVerticalMargin(5);
+			}
+			if (this.userConfig.isOneLine()) {
+				one.setVerticalMargin(35);
+				two.setVerticalMargin(10);
+			}
+		}
+		// Only the header is written again if the subtitles did not change
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			cache.mergeToAss(api, bos, StandardCharsets.UTF_8, one, two);
+		} catch (IOException e) {
+			// Cannot happen when writing in memory
+			throw new UncheckedIOException(e);
+		}
+
+		StreamedContent sc = new DefaultStreamedContent(bos.toInputStream(), "text/plain", getFileName() + ".ass");
+		this.histoService.trace(one, two, this.userConfig);
+		return sc;
+	}
+
 	/**
 	 * Get the final filename of the generated .ass subtitle
 	 * 
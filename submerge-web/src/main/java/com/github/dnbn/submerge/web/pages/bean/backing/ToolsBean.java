@@ -7,6 +7,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,12 +25,12 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.github.dnbn.submerge.api.SubmergeAPI;
-import com.github.dnbn.submerge.api.parser.ParserFactory;
 import com.github.dnbn.submerge.api.subtitle.ass.ASSSub;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.api.subtitle.config.SimpleSubConfig;
 import com.github.dnbn.submerge.api.subtitle.srt.SRTSub;
 import com.github.dnbn.submerge.api.utils.FileUtils;
+import com.github.dnbn.submerge.api.writer.WriterFactory;
 import com.github.dnbn.submerge.web.model.SubtitleProfileBO;
 import com.github.dnbn.submerge.web.pages.bean.AbstractManagedBean;
 import com.github.dnbn.submerge.web.pages.bean.model.UserBean;
@@ -76,17 +77,17 @@ public class ToolsBean extends AbstractManagedBean implements Serializable {
 			String filename = FilenameUtils.getName(fullName);
 			String extension = FilenameUtils.getExtension(fullName);
 
-			TimedTextFile ttf = ParserFactory.getParser(extension).parse(this.uploadedFile.getInputstream(), filename);
+			TimedTextFile ttf = parseUpload(this.uploadedFile.getInputstream(), filename);
 			SubtitleProfileBO profile = this.userConfig.getProfileSimple();
 
 			SimpleSubConfig subInput = ProfileUtils.createSubConfig(ttf, profile, "Default");
 
-			SubmergeAPI convert = new SubmergeAPI();
+			SubmergeAPI convert = newSubmergeAPI();
 			ASSSub ass = convert.toASS(subInput);
 
 			String destFileName = StringUtils.removeEnd(filename, extension) + ".ass";
 
-			writeString(destFileName, ass.toString());
+			writeSubtitle(destFileName, ass);
 
 			saveUserState();
 
@@ -115,12 +116,12 @@ public class ToolsBean extends AbstractManagedBean implements Serializable {
 			String filename = FilenameUtils.getName(fullName);
 			String extension = FilenameUtils.getExtension(fullName);
 
-			TimedTextFile ttf = ParserFactory.getParser(extension).parse(this.uploadedFile.getInputstream(), filename);
-			SRTSub srtSub = new SubmergeAPI().toSRT(ttf);
+			TimedTextFile ttf = parseUpload(this.uploadedFile.getInputstream(), filename);
+			SRTSub srtSub = newSubmergeAPI().toSRT(ttf);
 
 			String destFileName = StringUtils.removeEnd(filename, extension) + ".srt";
 
-			writeString(destFileName, srtSub.toString());
+			writeSubtitle(destFileName, srtSub);
 
 			saveUserState();
 
@@ -198,12 +199,11 @@ public class ToolsBean extends AbstractManagedBean implements Serializable {
 			}
 
 			String filename = FilenameUtils.getName(fullName);
-			String extension = FilenameUtils.getExtension(fullName);
 
-			TimedTextFile ttf = ParserFactory.getParser(extension).parse(this.uploadedFile.getInputstream(), filename);
-			new SubmergeAPI().convertFramerate(ttf, this.sourceFramerate, this.destinationFramerate);
+			TimedTextFile ttf = parseUpload(this.uploadedFile.getInputstream(), filename);
+			newSubmergeAPI().convertFramerate(ttf, this.sourceFramerate, this.destinationFramerate);
 
-			writeString(fullName, ttf.toString());
+			writeSubtitle(fullName, ttf);
 
 			logger.log(Level.FINE, "File : " + filename + " framerate change from " + this.sourceFramerate + " to "
 					+ this.destinationFramerate);
@@ -267,17 +267,43 @@ public class ToolsBean extends AbstractManagedBean implements Serializable {
 	 */
 	private void writeString(String filename, String message) throws IOException, UnsupportedEncodingException {
 
-		FacesContext facesContext = FacesContext.getCurrentInstance();
+		OutputStream output = startResponse(filename);
+		output.write(message.getBytes("UTF-8"));
+
+		FacesContext.getCurrentInstance().responseComplete();
+	}
+
+	/**
+	 * Write a subtitle as a response, encoded in UTF-8
+	 * 
+	 * @param filename the filename
+	 * @param sub the subtitle to write
+	 * @throws IOException
+	 */
+	private void writeSubtitle(String filename, TimedTextFile sub) throws IOException {
+
+		OutputStream output = startResponse(filename);
+		WriterFactory.write(sub, output, StandardCharsets.UTF_8);
+
+		FacesContext.getCurrentInstance().responseComplete();
+	}
+
+	/**
+	 * Reset the response and set the headers of an attachment
+	 * 
+	 * @param filename the filename
+	 * @return the response output stream
+	 * @throws IOException
+	 */
+	private OutputStream startResponse(String filename) throws IOException {
+
 		ExternalContext externalContext = getExternalContext();
 
 		externalContext.responseReset();
 		externalContext.setResponseContentType(this.uploadedFile.getContentType());
 		externalContext.setResponseHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
 
-		OutputStream output = externalContext.getResponseOutputStream();
-		output.write(message.getBytes("UTF-8"));
-
-		facesContext.responseComplete();
+		return externalContext.getResponseOutputStream();
 	}
 
 	// ======================== GETTER and SETTER methods ==========================
@@ -2,11 +2,11 @@ package com.github.dnbn.submerge.web.pages.bean.model;
 
 import java.io.Serializable;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import com.github.dnbn.submerge.api.MergeCache;
 import com.github.dnbn.submerge.api.subtitle.common.TimedTextFile;
 import com.github.dnbn.submerge.web.model.SubtitleProfileBO;
 import com.github.dnbn.submerge.web.pages.bean.model.proxy.SubConfig;
@@ -24,9 +24,19 @@ public class UserSubConfigBean implements Serializable {
 	@Autowired
 	private SubConfig subConfig;
 
+	/**
+	 * The uploaded subtitles. They are shared with the merges and must not be modified in
+	 * place, <code>SubmergeAPI</code> returns new versions of them.
+	 */
 	private TimedTextFile firstSubtitle;
 	private TimedTextFile secondSubtitle;
 
+	/**
+	 * The stages of the last merges, so that a merge with other styles does not prepare
+	 * the subtitles again. Not serialized, it is rebuilt by the next merge.
+	 */
+	private transient MergeCache mergeCache;
+
 	// ========================= delegates start =========================
 
 	public SubtitleProfileBO getProfileOne() {
@@ -83,8 +93,15 @@ public class UserSubConfigBean implements Serializable {
 
 	// ===================== getter and setter start =====================
 
+	public synchronized MergeCache getMergeCache() {
+		if (this.mergeCache == null) {
+			this.mergeCache = new MergeCache();
+		}
+		return this.mergeCache;
+	}
+
 	public TimedTextFile getFirstSubtitle() {
-		return (TimedTextFile) SerializationUtils.clone(this.firstSubtitle);
+		return this.firstSubtitle;
 	}
 
 	public void setFirstSubtitle(TimedTextFile subtitleOne) {
@@ -92,7 +109,7 @@ public class UserSubConfigBean implements Serializable {
 	}
 
 	public TimedTextFile getSecondSubtitle() {
-		return (TimedTextFile) SerializationUtils.clone(this.secondSubtitle);
+		return this.secondSubtitle;
 	}
 
 	public void setSecondSubtitle(TimedTextFile subtitleTwo) {